@@ -0,0 +1,488 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;     // Entry bytes as an image stream
+import java.io.ByteArrayOutputStream;    // Encoded entry
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;             // Entries in flight, in archive order
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;              // Needed up front for STORED zip entries
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;   // Never spills entries to temp files
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+ArchiveProcessor Class - Filters the images inside a ZIP or TAR archive
+
+Entries are streamed from the input archive (ZipInputStream or
+TarArchive.Reader) straight into memory and from there into the decoder;
+results are written to the output archive in the same order. Nothing is
+extracted to disk and no temporary files are written.
+
+Reading the archive is sequential, but each entry is decoded, filtered and
+encoded on a worker thread, so while one entry is being read the ones
+before it are being processed. At most 2 x threads entries are in flight
+at once, which bounds memory however big the archive is.
+
+Entries that are not images, or that no decoder understands, are copied
+through unchanged, as are images the filter did not change. Images keep
+their own name and format inside the output archive.
+
+Animated GIFs and multi-page TIFFs are filtered frame by frame through
+MultiFrameProcessor, in memory like every other entry, so none of their
+frames are lost. If no writer for the format can write a sequence the
+entry is copied through unfiltered.
+
+Supported archives: .zip, .tar, .tar.gz and .tgz (input and output may
+be different kinds).
+ */
+public class ArchiveProcessor {
+
+    private final int threads;
+    private final FilterOptions filterOptions;
+    private final OutputOptions outputOptions;
+
+    // Statistics for the last process() call
+    private int imageCount;
+    private int changedCount;
+    private int copiedCount;
+
+    /*
+    One archive entry with its contents
+     */
+    private static final class Item {
+        final String name;
+        final boolean directory;
+        final long modified;
+        byte[] data;
+        boolean image;      // Decoded as an image
+        boolean changed;    // Filtered data differs from the input
+
+        Item(String name, boolean directory, long modified, byte[] data) {
+            this.name = name;
+            this.directory = directory;
+            this.modified = modified;
+            this.data = data;
+        }
+    }
+
+    /*
+    Reads items from either kind of archive
+     */
+    private interface ItemReader extends Closeable {
+        Item next() throws IOException;
+    }
+
+    /*
+    Writes items to either kind of archive
+     */
+    private interface ItemWriter extends Closeable {
+        void write(Item item) throws IOException;
+    }
+
+    /*
+    Constructor
+
+    @param threads Number of entries processed at the same time
+
+    @param filterOptions Filter settings
+
+    @param outputOptions Encoder settings for changed images
+     */
+    public ArchiveProcessor(int threads, FilterOptions filterOptions, OutputOptions outputOptions) {
+        this.threads = Math.max(1, threads);
+        this.filterOptions = filterOptions;
+        this.outputOptions = outputOptions;
+    }
+
+    /*
+    Checks whether a path names an archive this class can read or write
+
+    @param path File path
+
+    @return true for .zip, .tar, .tar.gz and .tgz
+     */
+    public static boolean isArchivePath(String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".zip") || lower.endsWith(".tar") || lower.endsWith(".tar.gz")
+                || lower.endsWith(".tgz");
+    }
+
+    /*
+    Filters every image in one archive into another
+
+    @param input Archive to read
+
+    @param output Archive to write (replaced if it exists)
+
+    @throws IOException if either archive cannot be read or written
+     */
+    public void process(Path input, Path output) throws IOException {
+        imageCount = 0;
+        changedCount = 0;
+        copiedCount = 0;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Item>> inFlight = new ArrayDeque<>();
+        int maxInFlight = threads * 2;
+        try (ItemReader reader = openReader(input); ItemWriter writer = openWriter(output)) {
+            Item item;
+            while ((item = reader.next()) != null) {
+                final Item current = item;
+                inFlight.addLast(pool.submit(new Callable<Item>() {
+                    @Override
+                    public Item call() {
+                        try {
+                            return filterItem(current);
+                        } catch (IOException | RuntimeException e) {
+                            // One damaged image should not fail the whole archive
+                            System.err.println("Copied " + current.name + " unfiltered: " + e.getMessage());
+                            current.image = false;
+                            return current;
+                        }
+                    }
+                }));
+                // Keep memory bounded: write the oldest entry before reading more
+                if (inFlight.size() >= maxInFlight) {
+                    writeResult(writer, inFlight.removeFirst());
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                writeResult(writer, inFlight.removeFirst());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+    Gets the number of images found by the last process() call
+
+    @return Image entry count
+     */
+    public int getImageCount() {
+        return imageCount;
+    }
+
+    /*
+    Gets the number of images the last process() call changed
+
+    @return Changed image count
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    /*
+    Gets the number of entries the last process() call copied without filtering
+
+    @return Non-image and undecodable entry count
+     */
+    public int getCopiedCount() {
+        return copiedCount;
+    }
+
+    /*
+    Decodes, filters and re-encodes one entry (runs on a worker)
+
+    @param item Entry read from the input archive
+
+    @return The same item, with its data replaced if the filter changed it
+     */
+    private Item filterItem(Item item) throws IOException {
+        if (item.directory || !looksLikeImage(item.name)) {
+            return item;
+        }
+
+        ImagePool pool = ImagePool.getShared();
+        MedianFilterEngine engine = MedianFilterEngine.getShared();
+        BufferedImage source;
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(item.data))) {
+            if (MultiFrameProcessor.isMultiFrame(in)) {
+                return filterFrames(item);
+            }
+            in.seek(0);
+            source = pool.decode(in);
+        }
+        if (source == null) {
+            return item; // Not something ImageIO can decode, copy it through
+        }
+        item.image = true;
+
+        BufferedImage cleaned = ImagePool.isPoolableType(source.getType())
+                ? pool.acquire(source.getWidth(), source.getHeight(), source.getType())
+                : engine.createDestination(source);
+        try {
+            FilterResult result = engine.applyAll(source, cleaned, filterOptions);
+            if (!result.isChanged()) {
+                return item; // Original bytes, no extra compression loss
+            }
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(item.data.length);
+            if (ImageWriters.write(cleaned, formatOf(item.name), encoded, outputOptions)) {
+                item.data = encoded.toByteArray();
+                item.changed = true;
+            }
+            return item;
+        } finally {
+            pool.release(source);
+            pool.release(cleaned);
+        }
+    }
+
+    /*
+    Filters every frame of an animated or multi-page entry (runs on a worker)
+
+    @param item Entry whose data holds more than one frame
+
+    @return The same item, with its data replaced if the filter changed any frame
+     */
+    private Item filterFrames(Item item) throws IOException {
+        String format = formatOf(item.name);
+        if (!MultiFrameProcessor.canWriteSequence(format)) {
+            System.err.println("Copied " + item.name + " unfiltered: no writer keeps all of its frames");
+            return item; // Counted as copied
+        }
+        item.image = true;
+
+        // One frame at a time: the archive already keeps every worker busy
+        MultiFrameProcessor frames = new MultiFrameProcessor(1, 2, filterOptions, outputOptions);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(item.data.length);
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(item.data));
+             ImageOutputStream out = new MemoryCacheImageOutputStream(encoded)) {
+            frames.process(in, out, format);
+        }
+        if (frames.getChangedFrames() > 0) {
+            item.data = encoded.toByteArray();
+            item.changed = true;
+        }
+        return item;
+    }
+
+    /*
+    Waits for an entry to be processed and writes it
+
+    @param writer Output archive
+
+    @param future Pending result of filterItem()
+     */
+    private void writeResult(ItemWriter writer, Future<Item> future) throws IOException {
+        Item item;
+        try {
+            item = future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Processing an entry failed: " + cause, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing the archive", e);
+        }
+
+        writer.write(item);
+        if (item.image) {
+            imageCount++;
+            if (item.changed) {
+                changedCount++;
+            }
+        } else if (!item.directory) {
+            copiedCount++;
+        }
+    }
+
+    /*
+    Opens the input archive
+
+    @param input Archive path
+
+    @return Reader for its entries
+     */
+    private static ItemReader openReader(Path input) throws IOException {
+        String lower = input.getFileName().toString().toLowerCase(Locale.ROOT);
+        InputStream in = new BufferedInputStream(Files.newInputStream(input), 64 * 1024);
+        if (lower.endsWith(".zip")) {
+            final ZipInputStream zip = new ZipInputStream(in);
+            return new ItemReader() {
+                @Override
+                public Item next() throws IOException {
+                    ZipEntry entry = zip.getNextEntry();
+                    if (entry == null) {
+                        return null;
+                    }
+                    byte[] data = entry.isDirectory() ? new byte[0] : readAll(zip, entry.getSize());
+                    return new Item(entry.getName(), entry.isDirectory(), entry.getTime(), data);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    zip.close();
+                }
+            };
+        }
+
+        if (lower.endsWith(".gz") || lower.endsWith(".tgz")) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        final TarArchive.Reader tar = new TarArchive.Reader(in);
+        return new ItemReader() {
+            @Override
+            public Item next() throws IOException {
+                TarArchive.Entry entry = tar.next();
+                if (entry == null) {
+                    return null;
+                }
+                byte[] data = entry.isDirectory() ? new byte[0] : tar.readData();
+                return new Item(entry.getName(), entry.isDirectory(), entry.getModified(), data);
+            }
+
+            @Override
+            public void close() throws IOException {
+                tar.close();
+            }
+        };
+    }
+
+    /*
+    Creates the output archive
+
+    @param output Archive path
+
+    @return Writer for its entries
+     */
+    private static ItemWriter openWriter(Path output) throws IOException {
+        String lower = output.getFileName().toString().toLowerCase(Locale.ROOT);
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 64 * 1024);
+        if (lower.endsWith(".zip")) {
+            final ZipOutputStream zip = new ZipOutputStream(out);
+            return new ItemWriter() {
+                @Override
+                public void write(Item item) throws IOException {
+                    ZipEntry entry = new ZipEntry(item.name);
+                    entry.setTime(item.modified);
+                    if (!item.directory && isCompressedFormat(item.name)) {
+                        // Deflating JPEG/PNG/GIF data gains nothing and costs time
+                        CRC32 crc = new CRC32();
+                        crc.update(item.data);
+                        entry.setMethod(ZipEntry.STORED);
+                        entry.setSize(item.data.length);
+                        entry.setCompressedSize(item.data.length);
+                        entry.setCrc(crc.getValue());
+                    }
+                    zip.putNextEntry(entry);
+                    zip.write(item.data);
+                    zip.closeEntry();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    zip.close();
+                }
+            };
+        }
+
+        if (lower.endsWith(".gz") || lower.endsWith(".tgz")) {
+            out = new GZIPOutputStream(out, 64 * 1024);
+        }
+        final TarArchive.Writer tar = new TarArchive.Writer(out);
+        return new ItemWriter() {
+            @Override
+            public void write(Item item) throws IOException {
+                if (item.directory) {
+                    tar.putDirectory(item.name, item.modified);
+                } else {
+                    tar.putFile(item.name, item.data, item.modified);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                tar.close();
+            }
+        };
+    }
+
+    /*
+    Reads the rest of a stream into an array
+
+    @param in Stream positioned at the entry data
+
+    @param sizeHint Expected size, or -1 if unknown
+
+    @return The bytes read
+     */
+    private static byte[] readAll(InputStream in, long sizeHint) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                sizeHint > 0 && sizeHint < Integer.MAX_VALUE ? (int) sizeHint : 64 * 1024);
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /*
+    Checks whether an entry name has an image extension ImageIO can read
+
+    @param name Entry name
+
+    @return true for image files
+     */
+    private static boolean looksLikeImage(String name) {
+        String format = formatOf(name);
+        return !format.isEmpty() && ImageIO.getImageReadersBySuffix(format).hasNext();
+    }
+
+    /*
+    Checks whether an entry name is an already compressed image format
+
+    @param name Entry name
+
+    @return true for JPEG, PNG and GIF
+     */
+    private static boolean isCompressedFormat(String name) {
+        String format = formatOf(name);
+        return format.equals("jpg") || format.equals("jpeg") || format.equals("png") || format.equals("gif");
+    }
+
+    /*
+    Gets the lower-case extension of an entry name
+
+    @param name Entry name
+
+    @return Extension without the dot, or "" if there is none
+     */
+    private static String formatOf(String name) {
+        int slash = name.lastIndexOf('/');
+        int dotIndex = name.lastIndexOf('.');
+        return dotIndex > slash + 1 ? name.substring(dotIndex + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,262 @@
+package noiseremoving;
+
+import java.awt.image.SampleModel;        // For the bytes per decoded pixel
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.PriorityQueue;          // Pending jobs, smallest first
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;            // Header-only reads
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+BatchScheduler Class - Runs batch jobs within a heap budget, smallest first
+
+A fixed number of threads is wrong for a batch that mixes thumbnails with
+500 megapixel scans: eight large images at once run out of memory, while
+one large image at a time leaves the other cores idle.
+
+Before any pixel is decoded, each job's peak heap use is estimated from
+the image header: width x height x bytes per decoded pixel x BUFFERS (the
+decoded source, the filtered result and the encoder's working copy). Jobs
+are then started shortest first (the smallest estimate is also the
+quickest job) as long as the estimates of the running jobs stay within
+the budget. A job larger than the whole budget runs on its own.
+
+The jobs run on a ForkJoinPool. A large image is filtered with
+MedianFilterEngine.applyParallel(), which forks its row bands into the
+same pool, so workers that are idle because the budget is used up steal
+bands from the large image instead of waiting.
+ */
+public class BatchScheduler {
+
+    /*
+    Processes one file of the batch
+     */
+    public interface JobRunner {
+        /*
+        @param inputPath Image to filter
+
+        @param outputPath Where to write the result
+
+        @return true if the output was written
+         */
+        boolean process(String inputPath, String outputPath);
+    }
+
+    // Images held in memory per job: decoded source, result and encoder copy
+    private static final int BUFFERS = 3;
+
+    /*
+    One image of the batch
+     */
+    private static final class Job implements Comparable<Job> {
+        final String inputPath;
+        final String outputPath;
+        final long footprint;   // Estimated peak heap use in bytes
+        final int order;        // Submission order, to break ties
+
+        Job(String inputPath, String outputPath, long footprint, int order) {
+            this.inputPath = inputPath;
+            this.outputPath = outputPath;
+            this.footprint = footprint;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int bySize = Long.compare(footprint, other.footprint);
+            return bySize != 0 ? bySize : Integer.compare(order, other.order);
+        }
+    }
+
+    private final int threads;
+    private final long budgetBytes;
+    private final PriorityQueue<Job> pending = new PriorityQueue<>();
+
+    // Admission state, guarded by "this"
+    private long reservedBytes;
+    private int running;
+
+    // Statistics
+    private long peakReservedBytes;
+    private int peakRunning;
+    private int deferrals;      // Times the next job had to wait for memory
+
+    /*
+    Constructor
+
+    @param threads Most jobs running at the same time (also the worker count)
+
+    @param budgetBytes Heap the running jobs may use together
+     */
+    public BatchScheduler(int threads, long budgetBytes) {
+        if (threads < 1 || budgetBytes < 1) {
+            throw new IllegalArgumentException("Threads and budget must be positive");
+        }
+        this.threads = threads;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /*
+    Gets the default budget: three quarters of the maximum heap
+
+    @return Budget in bytes
+     */
+    public static long defaultBudget() {
+        return Runtime.getRuntime().maxMemory() / 4 * 3;
+    }
+
+    /*
+    Adds an image to the batch, reading its header to estimate its footprint
+
+    @param inputPath Image to filter
+
+    @param outputPath Where to write the result
+     */
+    public synchronized void submit(String inputPath, String outputPath) {
+        pending.add(new Job(inputPath, outputPath, estimateFootprint(new File(inputPath)), pending.size()));
+    }
+
+    /*
+    Estimates the peak heap use of filtering an image, without decoding it
+
+    @param file Image file
+
+    @return Estimated bytes; files whose header cannot be read count as their file size
+     */
+    public static long estimateFootprint(File file) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers != null && readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(input, true, true);
+                    long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                    return pixels * bytesPerPixel(reader.getImageTypes(0).next()) * BUFFERS;
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Fall through: the job itself will report the problem
+        }
+        return file.length();
+    }
+
+    /*
+    Runs every submitted job and waits for all of them to finish
+
+    @param runner Processes one file
+
+    @return Number of jobs whose output was written
+     */
+    public int runAll(final JobRunner runner) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        final AtomicInteger written = new AtomicInteger();
+        try {
+            while (true) {
+                final Job job = admitNext();
+                if (job == null) {
+                    break;
+                }
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (runner.process(job.inputPath, job.outputPath)) {
+                                written.incrementAndGet();
+                            }
+                        } catch (RuntimeException | OutOfMemoryError e) {
+                            System.err.println("Failed to process " + job.inputPath + ": " + e);
+                        } finally {
+                            finished(job);
+                        }
+                    }
+                });
+            }
+            synchronized (this) {
+                while (running > 0) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return written.get();
+    }
+
+    /*
+    Gets a summary of how the batch was admitted
+
+    @return Peak concurrency, peak reserved memory and deferrals
+     */
+    public synchronized String getStatistics() {
+        return "peak jobs=" + peakRunning + ", peak reserved=" + (peakReservedBytes / (1024 * 1024))
+                + " MB of " + (budgetBytes / (1024 * 1024)) + " MB, waits for memory=" + deferrals;
+    }
+
+    /*
+    Waits until the smallest pending job fits and reserves its memory
+
+    @return The job to start, or null when none are left
+     */
+    private synchronized Job admitNext() throws InterruptedException {
+        Job next = pending.peek();
+        if (next == null) {
+            return null;
+        }
+        boolean waited = false;
+        while (running >= threads || (running > 0 && reservedBytes + next.footprint > budgetBytes)) {
+            if (running < threads && !waited) {
+                deferrals++;
+                waited = true;
+            }
+            wait();
+        }
+        pending.poll();
+        reservedBytes += next.footprint;
+        running++;
+        peakReservedBytes = Math.max(peakReservedBytes, reservedBytes);
+        peakRunning = Math.max(peakRunning, running);
+        return next;
+    }
+
+    /*
+    Releases a finished job's reservation
+     */
+    private synchronized void finished(Job job) {
+        reservedBytes -= job.footprint;
+        running--;
+        notifyAll();
+    }
+
+    /*
+    Bytes one decoded pixel takes in the reader's preferred image type
+     */
+    private static int bytesPerPixel(ImageTypeSpecifier type) {
+        SampleModel sampleModel = type.getSampleModel();
+        return Math.max(1, sampleModel.getNumDataElements()
+                * DataBuffer.getDataTypeSize(sampleModel.getDataType()) / 8);
+    }
+}
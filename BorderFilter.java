@@ -0,0 +1,256 @@
+package noiseremoving;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+BorderFilter Class - Filters the frame of pixels whose windows leave the image
+
+The kernels only filter pixels with a complete window and copy the frame
+of radius pixels around them. For every BorderMode except COPY,
+MedianFilterEngine.apply() then hands that frame to this class as four
+strips: the top and bottom rows (corners included) and the left and right
+columns between them.
+
+For REPLICATE and REFLECT each strip, together with every pixel its
+windows reach, is copied into a small image of the same type whose pixels
+past the image edge are filled in by the border mode. That padded copy is
+filtered with the same kernels as the interior, so the kernels never need
+an edge test, and the strip's results are copied back. Only the padding
+itself looks at the border mode, a few pixels per row.
+
+SHRINK cannot be padded, because the windows lose pixels instead of
+borrowing them. Each strip's window rows and row spans are cut to the
+image before they are walked, so there is still no test per sample.
+ */
+final class BorderFilter {
+
+    private BorderFilter() {
+        // Static helpers only
+    }
+
+    /*
+    Replaces the copied frame of a filtered image with filtered pixels
+
+    @param engine Engine that filters the padded strips
+
+    @param src Image being filtered (not modified)
+
+    @param dst Result for the interior; its frame is overwritten
+
+    @param options Filter settings, with a border mode other than COPY
+
+    @param result Receives the changed frame pixels
+     */
+    static void filter(MedianFilterEngine engine, BufferedImage src, BufferedImage dst, FilterOptions options,
+                       FilterResult result) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int radius = options.getRadius();
+        Rectangle[] strips = {
+            new Rectangle(0, 0, width, radius),                                 // Top, with the corners
+            new Rectangle(0, height - radius, width, radius),                   // Bottom, with the corners
+            new Rectangle(0, radius, radius, height - 2 * radius),              // Left
+            new Rectangle(width - radius, radius, radius, height - 2 * radius)  // Right
+        };
+
+        if (options.getBorderMode() == BorderMode.SHRINK) {
+            KernelTable kernel = KernelTable.of(options);
+            for (Rectangle strip : strips) {
+                shrink(src, dst, kernel, strip, result);
+            }
+            return;
+        }
+
+        // The padded copies are filtered as plain full medians with copied borders
+        FilterOptions inner = new FilterOptions(options);
+        inner.setMode(FilterMode.FULL);
+        inner.setBorderMode(BorderMode.COPY);
+        for (Rectangle strip : strips) {
+            Rectangle area = new Rectangle(strip);
+            area.grow(radius, radius);
+            BufferedImage padded = pad(engine, src, area, options.getBorderMode());
+            BufferedImage out = engine.createDestination(padded);
+            engine.apply(padded, out, inner);
+            Raster filtered = out.getRaster().createChild(radius, radius, strip.width, strip.height,
+                    strip.x, strip.y, null);
+            dst.getRaster().setRect(filtered);
+            DirtyRegions.compare(src.getRaster(), filtered, strip, result);
+        }
+    }
+
+    /*
+    Gets the image row or column that a position past the edge reads
+
+    @param i Row or column, possibly outside the image
+
+    @param n Image height or width
+
+    @param mode REPLICATE or REFLECT
+
+    @return A row or column inside the image
+     */
+    static int sourceIndex(int i, int n, BorderMode mode) {
+        if (mode == BorderMode.REPLICATE) {
+            return Math.max(0, Math.min(n - 1, i));
+        }
+        return i < 0 ? -i : i >= n ? 2 * (n - 1) - i : i;
+    }
+
+    /*
+    Copies part of an image, filling the pixels past its edge by the border mode
+
+    @param engine Engine used to create an image of the same type
+
+    @param src Image to copy from
+
+    @param area Pixels to copy, partly outside the image
+
+    @param mode REPLICATE or REFLECT
+
+    @return An area-sized image of the same type as src
+     */
+    private static BufferedImage pad(MedianFilterEngine engine, BufferedImage src, Rectangle area, BorderMode mode) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        BufferedImage padded = engine.createDestination(src, area.width, area.height);
+        Raster in = src.getRaster();
+        WritableRaster out = padded.getRaster();
+
+        // The columns inside the image are copied a row at a time, the rest a pixel at a time
+        int insideFrom = Math.max(0, area.x);
+        int insideTo = Math.min(width, area.x + area.width);
+        Object row = null;
+        Object pixel = null;
+        for (int j = 0; j < area.height; j++) {
+            int y = sourceIndex(area.y + j, height, mode);
+            row = in.getDataElements(insideFrom, y, insideTo - insideFrom, 1, row);
+            out.setDataElements(insideFrom - area.x, j, insideTo - insideFrom, 1, row);
+            for (int i = 0; i < insideFrom - area.x; i++) {
+                pixel = in.getDataElements(sourceIndex(area.x + i, width, mode), y, pixel);
+                out.setDataElements(i, j, pixel);
+            }
+            for (int i = insideTo - area.x; i < area.width; i++) {
+                pixel = in.getDataElements(sourceIndex(area.x + i, width, mode), y, pixel);
+                out.setDataElements(i, j, pixel);
+            }
+        }
+        return padded;
+    }
+
+    /*
+    Filters one strip with windows cut down to the image
+
+    The four image types that PixelKernels filters on raw samples are
+    read as samples here too, so their colour values stay exact; every
+    other type is read through getRGB() like the engine's general path.
+    Bands past the colour components (alpha) keep the centre's value.
+
+    @param src Image being filtered (not modified)
+
+    @param dst Receives the strip's pixels
+
+    @param kernel Compiled window shape
+
+    @param strip Pixels to filter
+
+    @param result Receives the changed pixels
+     */
+    private static void shrink(BufferedImage src, BufferedImage dst, KernelTable kernel, Rectangle strip,
+                               FilterResult result) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int radius = kernel.radius;
+        int type = src.getType();
+        boolean raw = type == BufferedImage.TYPE_BYTE_GRAY || type == BufferedImage.TYPE_3BYTE_BGR
+                || type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB;
+
+        // Every pixel the strip's windows reach inside the image, as interleaved bands
+        Rectangle area = new Rectangle(strip);
+        area.grow(radius, radius);
+        area = area.intersection(new Rectangle(0, 0, width, height));
+        int bands;
+        int colours;
+        int[] block;
+        if (raw) {
+            bands = src.getRaster().getNumBands();
+            colours = src.getColorModel().getNumColorComponents();
+            block = src.getRaster().getPixels(area.x, area.y, area.width, area.height, (int[]) null);
+        } else {
+            bands = 4;
+            colours = 3;
+            int[] argb = src.getRGB(area.x, area.y, area.width, area.height, null, 0, area.width);
+            block = new int[argb.length * 4];
+            for (int i = 0; i < argb.length; i++) {
+                block[4 * i] = (argb[i] >> 16) & 0xFF;
+                block[4 * i + 1] = (argb[i] >> 8) & 0xFF;
+                block[4 * i + 2] = argb[i] & 0xFF;
+                block[4 * i + 3] = argb[i] >>> 24;
+            }
+        }
+
+        int[][] samples = new int[colours][kernel.size];
+        int[] out = new int[strip.width * strip.height * bands];
+        for (int y = strip.y; y < strip.y + strip.height; y++) {
+            int changed = 0;
+            int firstChanged = 0;
+            int lastChanged = 0;
+            for (int x = strip.x; x < strip.x + strip.width; x++) {
+                int centre = ((y - area.y) * area.width + x - area.x) * bands;
+                int count = 0;
+                for (int dy = Math.max(-radius, -y); dy <= Math.min(radius, height - 1 - y); dy++) {
+                    int from = Math.max(kernel.spanFrom[dy + radius], -x);
+                    int to = Math.min(kernel.spanTo[dy + radius], width - 1 - x);
+                    int index = centre + (dy * area.width + from) * bands;
+                    for (int dx = from; dx <= to; dx++) {
+                        for (int c = 0; c < colours; c++) {
+                            samples[c][count] = block[index + c];
+                        }
+                        index += bands;
+                        count++;
+                    }
+                }
+                for (int k = 0; k < kernel.centreExtra; k++) {
+                    for (int c = 0; c < colours; c++) {
+                        samples[c][count] = block[centre + c];
+                    }
+                    count++;
+                }
+
+                int o = ((y - strip.y) * strip.width + x - strip.x) * bands;
+                boolean pixelChanged = false;
+                for (int c = 0; c < bands; c++) {
+                    out[o + c] = c < colours ? MedianFilterEngine.medianOf(samples[c], count) : block[centre + c];
+                    pixelChanged |= out[o + c] != block[centre + c];
+                }
+                if (pixelChanged) {
+                    if (changed++ == 0) {
+                        firstChanged = x;
+                    }
+                    lastChanged = x;
+                }
+            }
+            result.addRow(y, firstChanged, lastChanged, changed);
+        }
+
+        if (raw) {
+            dst.getRaster().setPixels(strip.x, strip.y, strip.width, strip.height, out);
+        } else {
+            int[] argb = new int[strip.width * strip.height];
+            for (int i = 0; i < argb.length; i++) {
+                argb[i] = (out[4 * i + 3] << 24) | (out[4 * i] << 16) | (out[4 * i + 1] << 8) | out[4 * i + 2];
+            }
+            dst.setRGB(strip.x, strip.y, strip.width, strip.height, argb, 0, strip.width);
+        }
+    }
+}
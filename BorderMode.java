@@ -0,0 +1,35 @@
+package noiseremoving;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+BorderMode Enum - What happens to pixels whose window reaches past the image edge
+
+- COPY:      the pixels are copied unchanged (the original filter), so noise
+             survives in a frame as wide as the window radius
+- REPLICATE: pixels past the edge repeat the nearest edge pixel
+- REFLECT:   pixels past the edge mirror the image about its edge pixel
+             (column -1 reads column 1), so the edge pixel, which may itself
+             be noise, is not counted twice
+- SHRINK:    the window is cut down to the part inside the image and the
+             median is taken over the pixels that remain
+
+REPLICATE and REFLECT filter each edge strip as a small padded copy with
+the same kernels as the interior (see BorderFilter). They apply to the
+FULL and GATED modes of MedianFilterEngine.apply(); images smaller than
+the window are still copied unchanged. The engine's raw-sample methods
+(applyBytes, applyLarge and applyYCbCr) only copy the border and reject
+the other modes.
+ */
+public enum BorderMode {
+    COPY,
+    REPLICATE,
+    REFLECT,
+    SHRINK
+}
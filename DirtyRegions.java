@@ -0,0 +1,292 @@
+package noiseremoving;
+
+import java.awt.Rectangle;              // Dirty regions
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel; // Unused bits of packed pixels
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+DirtyRegions Class - Finds edited regions and refilters only those
+
+When an operator touches up a few small areas of an image and runs the
+cleanup again, almost all of the previous result is still valid. An edited
+pixel only affects the output pixels whose window contains it, so only
+the edited rectangles, grown by the window radius, need to be filtered
+again (see MedianFilterEngine.refilter()). Filtering a region means
+filtering a copy of it with a halo of the same width around it, so pixels
+inside the image get the same full windows as in a whole-image run.
+
+find() compares an image before and after editing tile by tile and
+returns the edited tiles as rectangles. merge() grows rectangles by a
+margin and joins the ones that overlap, so no pixel is filtered twice.
+
+The comparison helpers work on raw raster data elements, so they are
+exact for every image type (ignoring the unused bits of packed pixels).
+IterativeFilter uses them too.
+ */
+public final class DirtyRegions {
+
+    // Side of the square tiles find() compares
+    public static final int TILE = 32;
+
+    private DirtyRegions() {
+        // Static helpers only
+    }
+
+    /*
+    Finds the regions where two images of the same size differ
+
+    Each row of tiles becomes runs of adjacent edited tiles, and runs that
+    cover the same columns in consecutive tile rows are joined.
+
+    @param before Image before editing
+
+    @param after Image after editing (same size and type)
+
+    @return Rectangles covering every differing pixel, empty if the images are equal
+     */
+    public static List<Rectangle> find(BufferedImage before, BufferedImage after) {
+        if (before.getWidth() != after.getWidth() || before.getHeight() != after.getHeight()) {
+            throw new IllegalArgumentException("Images differ in size: " + before.getWidth() + " x "
+                    + before.getHeight() + " and " + after.getWidth() + " x " + after.getHeight());
+        }
+        int width = before.getWidth();
+        int height = before.getHeight();
+        List<Rectangle> found = new ArrayList<>();
+        List<Rectangle> previousRow = new ArrayList<>();
+        for (int y = 0; y < height; y += TILE) {
+            int h = Math.min(TILE, height - y);
+            List<Rectangle> row = new ArrayList<>();
+            Rectangle run = null;
+            for (int x = 0; x < width; x += TILE) {
+                int w = Math.min(TILE, width - x);
+                if (!differs(before.getRaster(), after.getRaster(), x, y, w, h)) {
+                    run = null;
+                } else if (run != null) {
+                    run.width += w;
+                } else {
+                    run = new Rectangle(x, y, w, h);
+                    row.add(run);
+                }
+            }
+
+            // Extend the run above when it spans exactly the same columns
+            for (int i = 0; i < row.size(); i++) {
+                Rectangle r = row.get(i);
+                for (Rectangle above : previousRow) {
+                    if (above.x == r.x && above.width == r.width) {
+                        above.height += r.height;
+                        row.set(i, above);
+                        r = null;
+                        break;
+                    }
+                }
+                if (r != null) {
+                    found.add(r);
+                }
+            }
+            previousRow = row;
+        }
+        return found;
+    }
+
+    /*
+    Grows rectangles by a margin, clips them to the image and joins overlaps
+
+    @param regions Rectangles to grow (not modified)
+
+    @param margin Pixels to add on every side
+
+    @param width Image width
+
+    @param height Image height
+
+    @return Non-overlapping rectangles covering every grown input rectangle
+     */
+    public static List<Rectangle> merge(List<Rectangle> regions, int margin, int width, int height) {
+        Rectangle bounds = new Rectangle(0, 0, width, height);
+        List<Rectangle> merged = new ArrayList<>();
+        for (Rectangle region : regions) {
+            Rectangle grown = new Rectangle(region);
+            grown.grow(margin, margin);
+            grown = grown.intersection(bounds);
+            if (grown.isEmpty()) {
+                continue;
+            }
+            // Absorb every rectangle the new one overlaps, until none is left
+            boolean joined = true;
+            while (joined) {
+                joined = false;
+                for (int i = 0; i < merged.size(); i++) {
+                    if (merged.get(i).intersects(grown)) {
+                        grown = grown.union(merged.remove(i));
+                        joined = true;
+                        break;
+                    }
+                }
+            }
+            merged.add(grown);
+        }
+        return merged;
+    }
+
+    /*
+    Gets how far a change to one pixel can reach in the filtered result
+
+    @param options Filter settings
+
+    @return The window radius (up to the largest adaptive window for ADAPTIVE)
+     */
+    static int reach(FilterOptions options) {
+        return options.getMode() == FilterMode.ADAPTIVE
+                ? Math.max(options.getRadius(), ImpulseFilters.MAX_ADAPTIVE_WINDOW / 2) : options.getRadius();
+    }
+
+    /*
+    Filters one region of an image on its own
+
+    @param engine Engine to filter with
+
+    @param src Image to read (not modified)
+
+    @param options Filter settings
+
+    @param region Pixels to compute
+
+    @param halo Extra pixels read on each side (see reach())
+
+    @return The filtered pixels of the region, at the region's own coordinates
+     */
+    static Raster filterRegion(MedianFilterEngine engine, BufferedImage src, FilterOptions options,
+                               Rectangle region, int halo) {
+        int left = Math.max(0, region.x - halo);
+        int top = Math.max(0, region.y - halo);
+        int right = Math.min(src.getWidth(), region.x + region.width + halo);
+        int bottom = Math.min(src.getHeight(), region.y + region.height + halo);
+
+        // Filter a copy of the region and its halo, so the image edge stays the only border
+        BufferedImage part = src.getSubimage(left, top, right - left, bottom - top);
+        BufferedImage in = engine.createDestination(part);
+        in.getRaster().setRect(part.getRaster());
+        BufferedImage out = engine.createDestination(in);
+        engine.apply(in, out, options);
+        return out.getRaster().createChild(region.x - left, region.y - top, region.width, region.height,
+                region.x, region.y, null);
+    }
+
+    /*
+    Checks whether two rasters have any different pixel inside a rectangle
+     */
+    static boolean differs(Raster a, Raster b, int x, int y, int w, int h) {
+        Object rowA = null;
+        Object rowB = null;
+        int elements = w * a.getNumDataElements();
+        int mask = sampleMask(a);
+        for (int yy = y; yy < y + h; yy++) {
+            rowA = a.getDataElements(x, yy, w, 1, rowA);
+            rowB = b.getDataElements(x, yy, w, 1, rowB);
+            if (!same(rowA, rowB, 0, elements, mask)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+    Records the pixels that differ between two rasters inside a rectangle
+
+    @param original Raster before filtering
+
+    @param filtered Raster after filtering
+
+    @param area Pixels to compare
+
+    @param result Receives one row of changes at a time
+     */
+    static void compare(Raster original, Raster filtered, Rectangle area, FilterResult result) {
+        int elements = original.getNumDataElements();
+        int mask = sampleMask(original);
+        Object rowA = null;
+        Object rowB = null;
+        for (int y = area.y; y < area.y + area.height; y++) {
+            rowA = original.getDataElements(area.x, y, area.width, 1, rowA);
+            rowB = filtered.getDataElements(area.x, y, area.width, 1, rowB);
+            if (same(rowA, rowB, 0, area.width * elements, mask)) {
+                continue;
+            }
+            int changed = 0;
+            int firstChanged = 0;
+            int lastChanged = 0;
+            for (int x = 0; x < area.width; x++) {
+                if (!same(rowA, rowB, x * elements, (x + 1) * elements, mask)) {
+                    if (changed++ == 0) {
+                        firstChanged = x;
+                    }
+                    lastChanged = x;
+                }
+            }
+            result.addRow(y, area.x + firstChanged, area.x + lastChanged, changed);
+        }
+    }
+
+    /*
+    Gets the bits of a data element that hold samples
+
+    Packed pixels such as TYPE_INT_RGB leave some bits unused, and drawing
+    code may fill them with anything, so only the sample bits are compared.
+
+    @return The OR of the bit masks of a packed raster, or -1 (all bits) otherwise
+     */
+    private static int sampleMask(Raster raster) {
+        if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+            return -1;
+        }
+        int mask = 0;
+        for (int bits : ((SinglePixelPackedSampleModel) raster.getSampleModel()).getBitMasks()) {
+            mask |= bits;
+        }
+        return mask;
+    }
+
+    /*
+    Compares a range of two rows from Raster.getDataElements() (byte, short or int arrays)
+     */
+    private static boolean same(Object a, Object b, int from, int to, int mask) {
+        if (a instanceof int[]) {
+            int[] x = (int[]) a;
+            int[] y = (int[]) b;
+            for (int i = from; i < to; i++) {
+                if (((x[i] ^ y[i]) & mask) != 0) {
+                    return false;
+                }
+            }
+        } else if (a instanceof short[]) {
+            short[] x = (short[]) a;
+            short[] y = (short[]) b;
+            for (int i = from; i < to; i++) {
+                if (((x[i] ^ y[i]) & mask) != 0) {
+                    return false;
+                }
+            }
+        } else {
+            byte[] x = (byte[]) a;
+            byte[] y = (byte[]) b;
+            for (int i = from; i < to; i++) {
+                if (((x[i] ^ y[i]) & mask) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
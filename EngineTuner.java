@@ -0,0 +1,305 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;            // The wisdom file
+import java.util.Random;                // Synthetic calibration images
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+EngineTuner Class - Picks the fastest median strategy and band size for this machine
+
+Which MedianStrategy is fastest depends on the image type, the window
+size and the machine, and so does whether splitting an image into bands
+for applyParallel() pays off (and at what band size). Instead of guessing,
+calibrate() times every candidate on synthetic noisy images, the way FFTW
+measures its plans, and save() writes the winners to a small "wisdom"
+properties file. Later runs load the file and tune() hands ImageProcess
+the recorded choice for each image type, window size and size class.
+
+Every candidate gives the same output, so wisdom from an older run can
+never change a result, only the time it takes. Wisdom records the number
+of cores it was measured on and is ignored on a machine with a different
+count.
+
+The shared tuner reads ~/.noiseremoving-wisdom, or the file named by the
+noiseremoving.wisdom system property; without a file every image gets the
+default options.
+ */
+public class EngineTuner {
+
+    // Image types with native kernels, the only ones the strategies apply to
+    private static final int[] TYPES = {
+        BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR,
+        BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB
+    };
+
+    // Size classes: below 1 MP, below 4 MP, and larger
+    private static final String[] SIZE_CLASSES = {"small", "medium", "large"};
+
+    // Calibration image per size class (width, height)
+    private static final int[][] SAMPLE_SIZES = {{640, 480}, {1280, 960}, {2048, 2048}};
+
+    // Band sizes tried for medium and large images on multi-core machines
+    private static final int[] BAND_CANDIDATES = {1 << 18, 1 << 20, 1 << 22};
+
+    private static EngineTuner shared;
+
+    private final Path file;
+    private final Properties wisdom = new Properties();
+
+    /*
+    Constructor - loads the wisdom file if it exists
+
+    @param file Wisdom file (read now, written by save())
+     */
+    public EngineTuner(Path file) {
+        this.file = file;
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            wisdom.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Ignoring unreadable engine wisdom " + file + ": " + e.getMessage());
+            wisdom.clear();
+            return;
+        }
+        String cores = wisdom.getProperty("cores");
+        if (!String.valueOf(Runtime.getRuntime().availableProcessors()).equals(cores)) {
+            System.err.println("Ignoring engine wisdom measured on " + cores + " cores; run --calibrate again");
+            wisdom.clear();
+        }
+    }
+
+    /*
+    Gets the tuner used by ImageProcess, loading the default wisdom file on first use
+
+    @return The shared tuner
+     */
+    public static synchronized EngineTuner getShared() {
+        if (shared == null) {
+            shared = new EngineTuner(defaultFile());
+        }
+        return shared;
+    }
+
+    /*
+    Replaces the shared tuner with one reading another wisdom file
+
+    @param file Wisdom file to use from now on
+     */
+    public static synchronized void setSharedFile(Path file) {
+        shared = new EngineTuner(file);
+    }
+
+    /*
+    Gets the wisdom file this tuner reads and writes
+
+    @return Path of the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /*
+    Checks whether any tuned choices are loaded
+
+    @return true if wisdom was loaded or calibrated
+     */
+    public boolean hasWisdom() {
+        return wisdom.containsKey("cores");
+    }
+
+    /*
+    Gets the options to filter one image with
+
+    @param base Options chosen by the caller (window size etc.)
+
+    @param imageType BufferedImage type of the image
+
+    @param width Image width
+
+    @param height Image height
+
+    @return A tuned copy of base, or base itself when there is no wisdom for this case
+     */
+    public FilterOptions tune(FilterOptions base, int imageType, long width, long height) {
+        String choice;
+        synchronized (wisdom) {
+            choice = wisdom.getProperty(key(imageType, base.getWindowSize(), sizeClass(width * height)));
+        }
+        if (choice == null) {
+            return base;
+        }
+        try {
+            String[] parts = choice.trim().split("\\s+");
+            FilterOptions tuned = new FilterOptions(base);
+            tuned.setStrategy(MedianStrategy.valueOf(parts[0]));
+            tuned.setBandPixels(Integer.parseInt(parts[1]));
+            return tuned;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return base; // Hand-edited or damaged entry
+        }
+    }
+
+    /*
+    Times every candidate on this machine and keeps the fastest
+
+    For each image type, window size and size class, every strategy is
+    timed on a synthetic image with 10% salt-and-pepper noise. On machines
+    with more than one core, medium and large images then try the winning
+    strategy with several band sizes against not splitting at all.
+
+    @param windowSizes Window sizes to calibrate
+
+    @param log Receives one line per result
+     */
+    public void calibrate(int[] windowSizes, PrintStream log) {
+        boolean multiCore = Runtime.getRuntime().availableProcessors() > 1;
+        Properties results = new Properties();
+        results.setProperty("cores", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        results.setProperty("java.version", System.getProperty("java.version"));
+        results.setProperty("os.arch", System.getProperty("os.arch"));
+
+        for (int type : TYPES) {
+            for (int s = 0; s < SIZE_CLASSES.length; s++) {
+                BufferedImage src = syntheticImage(SAMPLE_SIZES[s][0], SAMPLE_SIZES[s][1], type);
+                BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), type);
+                for (int windowSize : windowSizes) {
+                    FilterOptions options = new FilterOptions();
+                    options.setWindowSize(windowSize);
+                    options.setBandPixels(0);
+
+                    MedianStrategy best = null;
+                    long bestTime = Long.MAX_VALUE;
+                    for (MedianStrategy strategy : MedianStrategy.values()) {
+                        if (strategy == MedianStrategy.NETWORK && windowSize != 3) {
+                            continue; // Would only time INSERTION again
+                        }
+                        options.setStrategy(strategy);
+                        long time = time(src, dst, options);
+                        if (time < bestTime) {
+                            best = strategy;
+                            bestTime = time;
+                        }
+                    }
+                    options.setStrategy(best);
+
+                    int bestBand = 0;
+                    if (multiCore && s > 0) {
+                        for (int band : BAND_CANDIDATES) {
+                            options.setBandPixels(band);
+                            long time = time(src, dst, options);
+                            if (time < bestTime) {
+                                bestBand = band;
+                                bestTime = time;
+                            }
+                        }
+                    }
+
+                    String key = key(type, windowSize, SIZE_CLASSES[s]);
+                    results.setProperty(key, best + " " + bestBand);
+                    log.println(key + " = " + best + (bestBand > 0 ? ", bands of " + bestBand + " pixels" : "")
+                            + " (" + bestTime / 1000000 + " ms for " + src.getWidth() + " x " + src.getHeight() + ")");
+                }
+            }
+        }
+
+        synchronized (wisdom) {
+            wisdom.clear();
+            wisdom.putAll(results);
+        }
+    }
+
+    /*
+    Writes the current wisdom to the file
+
+    @throws IOException if the file cannot be written
+     */
+    public void save() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            synchronized (wisdom) {
+                wisdom.store(out, "NoiseRemoving engine wisdom (written by --calibrate)");
+            }
+        }
+    }
+
+    /*
+    Gets the default wisdom file
+
+    @return The noiseremoving.wisdom property, or .noiseremoving-wisdom in the home folder
+     */
+    private static Path defaultFile() {
+        String path = System.getProperty("noiseremoving.wisdom");
+        return path != null ? Paths.get(path) : Paths.get(System.getProperty("user.home"), ".noiseremoving-wisdom");
+    }
+
+    private static String key(int imageType, int windowSize, String sizeClass) {
+        return "type" + imageType + ".window" + windowSize + "." + sizeClass;
+    }
+
+    private static String sizeClass(long pixels) {
+        return pixels < (1 << 20) ? SIZE_CLASSES[0] : pixels < (4 << 20) ? SIZE_CLASSES[1] : SIZE_CLASSES[2];
+    }
+
+    /*
+    Times one candidate: a warm-up run, then the best of the timed runs
+
+    Small images are timed three times, larger ones once, so calibration
+    stays around a minute or two.
+     */
+    private static long time(BufferedImage src, BufferedImage dst, FilterOptions options) {
+        MedianFilterEngine engine = MedianFilterEngine.getShared();
+        long pixels = (long) src.getWidth() * src.getHeight();
+        int runs = pixels < (1 << 20) ? 3 : 1;
+        engine.applyParallel(src, dst, options);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            engine.applyParallel(src, dst, options);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /*
+    Makes a smooth gradient image with 10% salt-and-pepper noise
+     */
+    private static BufferedImage syntheticImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(42);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value;
+                if (random.nextInt(10) == 0) {
+                    value = random.nextBoolean() ? 0xFFFFFFFF : 0xFF000000;
+                } else {
+                    int level = (x * 255 / width + y * 255 / height) / 2;
+                    value = 0xFF000000 | (level << 16) | ((255 - level) << 8) | ((x ^ y) & 0xFF);
+                }
+                row[x] = value;
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+}
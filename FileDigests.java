@@ -0,0 +1,95 @@
+package noiseremoving;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;            // Streaming file contents
+import java.nio.file.Path;
+import java.security.MessageDigest;    // SHA-256
+import java.security.NoSuchAlgorithmException;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+FileDigests Class - Content hashes of files
+
+Files are hashed in 64 KB chunks, so even very large images never have to
+be read into memory at once. SHA-256 is used because every JVM is required
+to provide it.
+ */
+public final class FileDigests {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private FileDigests() {
+        // Static helpers only
+    }
+
+    /*
+    Computes the SHA-256 hash of a file's contents
+
+    @param file File to hash
+
+    @return Lower-case hexadecimal hash (64 characters)
+
+    @throws IOException if the file cannot be read
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /*
+    Computes the SHA-256 hash of some text (UTF-8 encoded)
+
+    @param text Text to hash
+
+    @return Lower-case hexadecimal hash
+     */
+    public static String sha256(String text) {
+        return toHex(newSha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /*
+    Creates a SHA-256 digest
+
+    @return A new digest
+     */
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform must support SHA-256
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /*
+    Formats bytes as lower-case hexadecimal
+
+    @param bytes Bytes to format
+
+    @return Hexadecimal text, two characters per byte
+     */
+    private static String toHex(byte[] bytes) {
+        char[] text = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            text[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            text[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(text);
+    }
+}
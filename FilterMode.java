@@ -0,0 +1,40 @@
+package noiseremoving;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+FilterMode Enum - What MedianFilterEngine.apply() does with an image
+
+- FULL:     every pixel becomes the median of its window (the original filter)
+- GATED:    the median is only kept where it differs from the pixel by an
+            impulse-sized step; every other pixel keeps its value, so clean
+            detail is not blurred
+- ADAPTIVE: per-channel adaptive median; the window grows from the chosen
+            size up to 7x7 until its median is not itself an impulse, and
+            only pixels at the window's minimum or maximum are replaced
+- PYRAMID:  for extreme densities (60-80%); impulses are rebuilt coarse to
+            fine from a pyramid of clean samples, with a full-resolution
+            median only where the coarse estimate is unreliable (see
+            PyramidDenoiser)
+- SKIP:     the image is copied unchanged
+- AUTO:     the noise density is estimated (see NoiseEstimator) and one of
+            the modes above, and a window size, is picked per image
+
+Every MedianFilterEngine entry point that takes BufferedImages resolves
+AUTO itself, once per image. ImageProcess resolves it before the engine
+is called, so that the chosen settings can be tuned (see EngineTuner).
+ */
+public enum FilterMode {
+    FULL,
+    GATED,
+    ADAPTIVE,
+    PYRAMID,
+    SKIP,
+    AUTO
+}
@@ -0,0 +1,290 @@
+package noiseremoving;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+FilterOptions Class - Settings for a single run of the median filter
+
+The MedianFilterEngine never stores any settings of its own, so everything
+that changes how an image is filtered is passed in through this object.
+
+An options object is only read by the engine while it is filtering, so one
+instance can be shared by many threads as long as nobody changes it while
+a filter run is in progress.
+ */
+public class FilterOptions {
+
+    // Width (and height) of the square sliding window, always an odd number
+    private int windowSize;
+
+    // What the engine does with the image (FULL median by default)
+    private FilterMode mode;
+
+    // How the kernels find each median (does not change the output)
+    private MedianStrategy strategy;
+
+    // Pixels per band when MedianFilterEngine.applyParallel() splits an image
+    // (0 means never split); does not change the output either
+    private int bandPixels;
+
+    // Most median passes to run (see IterativeFilter); 1 is the single classic pass
+    private int maxPasses;
+
+    // Which pixels of the window take part in each median (see KernelShape)
+    private KernelShape shape;
+
+    // Times the centre pixel is counted in its own window; 1 is the plain median
+    private int centreWeight;
+
+    // What happens to pixels whose window reaches past the image edge
+    private BorderMode borderMode;
+
+    /*
+    Default constructor
+
+    Uses the classic single pass of the full 3x3 square median with the
+    border copied, insertion sort medians and bands of one megapixel
+     */
+    public FilterOptions() {
+        this.windowSize = 3;
+        this.mode = FilterMode.FULL;
+        this.strategy = MedianStrategy.INSERTION;
+        this.bandPixels = 1 << 20;
+        this.maxPasses = 1;
+        this.shape = KernelShape.SQUARE;
+        this.centreWeight = 1;
+        this.borderMode = BorderMode.COPY;
+    }
+
+    /*
+    Copy constructor
+
+    @param other Options to copy
+     */
+    public FilterOptions(FilterOptions other) {
+        this.windowSize = other.windowSize;
+        this.mode = other.mode;
+        this.strategy = other.strategy;
+        this.bandPixels = other.bandPixels;
+        this.maxPasses = other.maxPasses;
+        this.shape = other.shape;
+        this.centreWeight = other.centreWeight;
+        this.borderMode = other.borderMode;
+    }
+
+    /*
+    Gets the sliding window size
+
+    @return Width of the square window (3 means 3x3)
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /*
+    Sets the sliding window size
+
+    @param windowSize Width of the square window, must be odd and at least 3
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize < 3 || windowSize % 2 == 0) {
+            throw new IllegalArgumentException("Window size must be an odd number >= 3: " + windowSize);
+        }
+        this.windowSize = windowSize;
+    }
+
+    /*
+    Gets the window radius (number of pixels on each side of the centre)
+
+    @return Radius of the window (1 for a 3x3 window)
+     */
+    public int getRadius() {
+        return windowSize / 2;
+    }
+
+    /*
+    Gets what the engine does with the image
+
+    @return The filter mode
+     */
+    public FilterMode getMode() {
+        return mode;
+    }
+
+    /*
+    Sets what the engine does with the image
+
+    @param mode The filter mode
+     */
+    public void setMode(FilterMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Mode must not be null");
+        }
+        this.mode = mode;
+    }
+
+    /*
+    Gets how the kernels find each median
+
+    @return The median strategy
+     */
+    public MedianStrategy getStrategy() {
+        return strategy;
+    }
+
+    /*
+    Sets how the kernels find each median
+
+    @param strategy The median strategy
+     */
+    public void setStrategy(MedianStrategy strategy) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("Strategy must not be null");
+        }
+        this.strategy = strategy;
+    }
+
+    /*
+    Gets the band size used by MedianFilterEngine.applyParallel()
+
+    @return Pixels per band, or 0 if images are never split
+     */
+    public int getBandPixels() {
+        return bandPixels;
+    }
+
+    /*
+    Sets the band size used by MedianFilterEngine.applyParallel()
+
+    @param bandPixels Pixels per band, or 0 to never split images
+     */
+    public void setBandPixels(int bandPixels) {
+        if (bandPixels < 0) {
+            throw new IllegalArgumentException("Band size must not be negative: " + bandPixels);
+        }
+        this.bandPixels = bandPixels;
+    }
+
+    /*
+    Gets the most median passes to run
+
+    @return Pass limit (1 means a single pass)
+     */
+    public int getMaxPasses() {
+        return maxPasses;
+    }
+
+    /*
+    Sets the most median passes to run
+
+    Further passes stop early once a pass changes no pixel.
+
+    @param maxPasses Pass limit, at least 1
+     */
+    public void setMaxPasses(int maxPasses) {
+        if (maxPasses < 1) {
+            throw new IllegalArgumentException("Pass limit must be at least 1: " + maxPasses);
+        }
+        this.maxPasses = maxPasses;
+    }
+
+    /*
+    Gets which pixels of the window take part in each median
+
+    @return The kernel shape
+     */
+    public KernelShape getShape() {
+        return shape;
+    }
+
+    /*
+    Sets which pixels of the window take part in each median
+
+    @param shape The kernel shape
+     */
+    public void setShape(KernelShape shape) {
+        if (shape == null) {
+            throw new IllegalArgumentException("Shape must not be null");
+        }
+        this.shape = shape;
+    }
+
+    /*
+    Gets how many times the centre pixel is counted in its window
+
+    @return Centre weight (1 means a plain median)
+     */
+    public int getCentreWeight() {
+        return centreWeight;
+    }
+
+    /*
+    Sets how many times the centre pixel is counted in its window
+
+    A higher weight keeps more fine detail but removes less noise. Odd
+    weights keep the number of samples odd, so the median is a true middle.
+
+    @param centreWeight Centre weight, at least 1
+     */
+    public void setCentreWeight(int centreWeight) {
+        if (centreWeight < 1) {
+            throw new IllegalArgumentException("Centre weight must be at least 1: " + centreWeight);
+        }
+        this.centreWeight = centreWeight;
+    }
+
+    /*
+    Checks whether the kernel is the plain square window of the original filter
+
+    @return true for a SQUARE shape with a centre weight of 1
+     */
+    public boolean isSquareKernel() {
+        return shape == KernelShape.SQUARE && centreWeight == 1;
+    }
+
+    /*
+    Gets what happens to pixels whose window reaches past the image edge
+
+    @return The border mode
+     */
+    public BorderMode getBorderMode() {
+        return borderMode;
+    }
+
+    /*
+    Sets what happens to pixels whose window reaches past the image edge
+
+    @param borderMode The border mode
+     */
+    public void setBorderMode(BorderMode borderMode) {
+        if (borderMode == null) {
+            throw new IllegalArgumentException("Border mode must not be null");
+        }
+        this.borderMode = borderMode;
+    }
+
+    /*
+    Describes the settings, including every value that affects the output
+
+    The strategy and band size are left out on purpose: they only change
+    how fast the same result is produced. The mode, pass limit, shape,
+    centre weight and border mode are only listed when they are not the
+    defaults, so descriptions of the classic filter stay as they were.
+
+    @return Text such as "window=3" or "window=3 mode=AUTO passes=4 shape=CROSS"
+     */
+    @Override
+    public String toString() {
+        return "window=" + windowSize + (mode == FilterMode.FULL ? "" : " mode=" + mode)
+                + (maxPasses == 1 ? "" : " passes=" + maxPasses)
+                + (shape == KernelShape.SQUARE ? "" : " shape=" + shape)
+                + (centreWeight == 1 ? "" : " centre=" + centreWeight)
+                + (borderMode == BorderMode.COPY ? "" : " border=" + borderMode);
+    }
+}
@@ -0,0 +1,157 @@
+package noiseremoving;
+
+import java.awt.Rectangle; // Bounding box of the changed pixels
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+FilterResult Class - What a single filter run changed
+
+Returned by MedianFilterEngine.apply(). It records how many pixels the
+filter actually changed and the smallest rectangle that contains all of
+them. An image that is already clean comes back with isChanged() false,
+which lets the batch runner copy the original file instead of re-encoding.
+
+The kernels report changes one row at a time, so tracking costs a couple of
+comparisons per row rather than per pixel.
+ */
+public class FilterResult {
+
+    private long changedPixels; // Number of pixels whose value changed
+
+    // Bounds of the changed pixels (inclusive); only valid when changedPixels > 0
+    private int minX = Integer.MAX_VALUE;
+    private int minY = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE;
+    private int maxY = Integer.MIN_VALUE;
+
+    // Noise estimate that chose the filter mode (FilterMode.AUTO only)
+    private NoiseEstimator.Estimate noiseEstimate;
+
+    // Median passes that produced the result (see IterativeFilter)
+    private int passes = 1;
+
+    /*
+    Records the changes found in one row
+
+    @param y Row index
+
+    @param rowMinX Leftmost changed pixel in the row
+
+    @param rowMaxX Rightmost changed pixel in the row
+
+    @param count Number of changed pixels in the row (0 means nothing to record)
+     */
+    void addRow(int y, int rowMinX, int rowMaxX, int count) {
+        if (count == 0) {
+            return;
+        }
+        changedPixels += count;
+        minX = Math.min(minX, rowMinX);
+        maxX = Math.max(maxX, rowMaxX);
+        minY = Math.min(minY, y);
+        maxY = Math.max(maxY, y);
+    }
+
+    /*
+    Adds the changes found in one band of rows
+
+    @param band Result of filtering the band on its own
+
+    @param offsetY Row of the image where the band's row 0 lies
+     */
+    void add(FilterResult band, int offsetY) {
+        if (band.changedPixels == 0) {
+            return;
+        }
+        changedPixels += band.changedPixels;
+        minX = Math.min(minX, band.minX);
+        maxX = Math.max(maxX, band.maxX);
+        minY = Math.min(minY, band.minY + offsetY);
+        maxY = Math.max(maxY, band.maxY + offsetY);
+    }
+
+    /*
+    Checks whether the filter changed any pixel
+
+    @return true if at least one pixel differs from the source
+     */
+    public boolean isChanged() {
+        return changedPixels > 0;
+    }
+
+    /*
+    Gets the number of pixels the filter changed
+
+    @return Changed pixel count
+     */
+    public long getChangedPixels() {
+        return changedPixels;
+    }
+
+    /*
+    Gets the smallest rectangle containing every changed pixel
+
+    @return The changed region, or null if nothing changed
+     */
+    public Rectangle getChangedBounds() {
+        if (changedPixels == 0) {
+            return null;
+        }
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /*
+    Gets the noise estimate that chose how the image was filtered
+
+    @return The estimate, or null if the mode was not chosen automatically
+     */
+    public NoiseEstimator.Estimate getNoiseEstimate() {
+        return noiseEstimate;
+    }
+
+    /*
+    Records the noise estimate behind this result
+
+    @param noiseEstimate The estimate used to pick the mode
+     */
+    void setNoiseEstimate(NoiseEstimator.Estimate noiseEstimate) {
+        this.noiseEstimate = noiseEstimate;
+    }
+
+    /*
+    Gets the number of median passes that produced the result
+
+    @return Passes run, 1 unless further passes were asked for
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    /*
+    Records the number of median passes run
+
+    @param passes Passes run
+     */
+    void setPasses(int passes) {
+        this.passes = passes;
+    }
+
+    @Override
+    public String toString() {
+        String estimate = (passes == 1 ? "" : " in " + passes + " passes")
+                + (noiseEstimate == null ? "" : " (" + noiseEstimate + ")");
+        if (changedPixels == 0) {
+            return "no pixels changed" + estimate;
+        }
+        Rectangle bounds = getChangedBounds();
+        return changedPixels + " pixels changed within " + bounds.width + " x " + bounds.height
+                + " at (" + bounds.x + ", " + bounds.y + ")" + estimate;
+    }
+}
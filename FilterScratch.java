@@ -0,0 +1,68 @@
+package noiseremoving;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+FilterScratch Class - Reusable working memory for one filtering thread
+
+Each thread that runs the MedianFilterEngine gets its own FilterScratch
+through a ThreadLocal, so the buffers below are never shared between
+threads and never need locking.
+
+The buffers only ever grow. Filtering many images of the same size on one
+thread therefore allocates nothing after the first image.
+ */
+final class FilterScratch {
+
+    // Packed ARGB pixel rows covering the sliding window (one row per window line)
+    int[][] rows = new int[0][];
+
+    // Output row that is filled before being written to the destination image
+    int[] outRow = new int[0];
+
+    // Channel samples collected from the window, one array per colour channel
+    int[][] samples = new int[3][0];
+
+    // Sliding 256-bin histograms for the HISTOGRAM strategy, one per colour channel
+    final int[][] histograms = new int[3][256];
+
+    /*
+    Makes sure the row buffers can hold the given window of image rows
+
+    @param rowCount Number of rows in the sliding window
+
+    @param width Number of pixels in each row
+     */
+    void ensureRows(int rowCount, int width) {
+        if (rows.length < rowCount) {
+            rows = new int[rowCount][];
+        }
+        for (int i = 0; i < rowCount; i++) {
+            if (rows[i] == null || rows[i].length < width) {
+                rows[i] = new int[width];
+            }
+        }
+        if (outRow.length < width) {
+            outRow = new int[width];
+        }
+    }
+
+    /*
+    Makes sure the channel sample buffers can hold one full window
+
+    @param sampleCount Number of samples in one window (KernelTable.size)
+     */
+    void ensureSamples(int sampleCount) {
+        if (samples[0].length < sampleCount) {
+            for (int c = 0; c < samples.length; c++) {
+                samples[c] = new int[sampleCount];
+            }
+        }
+    }
+}
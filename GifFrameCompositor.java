@@ -0,0 +1,229 @@
+package noiseremoving;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import org.w3c.dom.NodeList;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+GifFrameCompositor Class - Turns the frames of an animated GIF into complete images
+
+ImageReader.readAll() returns GIF frames exactly as stored: most frames
+after the first are small patches placed at an offset over the previous
+frame, with a transparent colour for the pixels that let it show through.
+Filtering such a patch on its own would treat its edge and its
+transparent pixels as image content.
+
+This class plays the animation the way a viewer does. Each frame is drawn
+onto a canvas the size of the GIF's logical screen, a copy of the canvas
+becomes the full frame that is filtered, and the frame's disposal method
+(leave, clear to transparent, or restore the previous canvas) is applied
+before the next one is drawn.
+
+The full frames are written back whole. For a GIF writer their metadata
+keeps the delay, loop and comment settings, but places the frame at 0,0
+and clears the canvas after it (restoreToBackgroundColor), because each
+frame now holds everything that should be visible. The local colour table
+is dropped so the writer builds a palette for the filtered colours. Other
+writers (such as TIFF) get their default metadata for the full frames.
+ */
+final class GifFrameCompositor {
+
+    // Native metadata formats of the JDK's GIF plugin
+    private static final String STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+    private static final String IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+
+    // Animation as it looks after the frames drawn so far
+    private final BufferedImage canvas;
+
+    /*
+    Constructor
+
+    @param width Logical screen width
+
+    @param height Logical screen height
+     */
+    private GifFrameCompositor(int width, int height) {
+        this.canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /*
+    Creates a compositor for a reader, if its frames need one
+
+    @param reader Reader with its input set
+
+    @return A compositor for GIF files, or null if the frames are complete images (such as TIFF pages)
+
+    @throws IOException if the stream metadata cannot be read
+     */
+    static GifFrameCompositor forReader(ImageReader reader) throws IOException {
+        if (!"gif".equalsIgnoreCase(reader.getFormatName())) {
+            return null;
+        }
+        int width = 0;
+        int height = 0;
+        IIOMetadata stream = reader.getStreamMetadata();
+        if (stream != null) {
+            IIOMetadataNode screen = child((IIOMetadataNode) stream.getAsTree(STREAM_FORMAT),
+                    "LogicalScreenDescriptor");
+            if (screen != null) {
+                width = Integer.parseInt(screen.getAttribute("logicalScreenWidth"));
+                height = Integer.parseInt(screen.getAttribute("logicalScreenHeight"));
+            }
+        }
+        // Some encoders leave the screen size at 0; the first frame then sets it
+        if (width <= 0 || height <= 0) {
+            width = reader.getWidth(0);
+            height = reader.getHeight(0);
+        }
+        return new GifFrameCompositor(width, height);
+    }
+
+    /*
+    Draws the next frame and returns the complete image it shows
+
+    Frames must be passed in order, one call each.
+
+    @param frame Frame from ImageReader.readAll(), with its GIF metadata
+
+    @param writer Sequence writer the full frame is for (only asked for metadata)
+
+    @param param Settings it will be written with
+
+    @return The full frame (a new image) with metadata for writing it whole
+
+    @throws IOException if the frame metadata cannot be rewritten
+     */
+    IIOImage composite(IIOImage frame, ImageWriter writer, ImageWriteParam param) throws IOException {
+        BufferedImage patch = (BufferedImage) frame.getRenderedImage();
+        IIOMetadataNode tree = (IIOMetadataNode) frame.getMetadata().getAsTree(IMAGE_FORMAT);
+        IIOMetadataNode descriptor = child(tree, "ImageDescriptor");
+        IIOMetadataNode control = child(tree, "GraphicControlExtension");
+        int left = Integer.parseInt(descriptor.getAttribute("imageLeftPosition"));
+        int top = Integer.parseInt(descriptor.getAttribute("imageTopPosition"));
+        String disposal = control != null ? control.getAttribute("disposalMethod") : "none";
+
+        // restoreToPrevious puts back the canvas as it was before this frame
+        BufferedImage previous = null;
+        if (disposal.equals("restoreToPrevious")) {
+            previous = copy(canvas);
+        }
+
+        // Transparent pixels of the patch leave the canvas showing, as in a viewer
+        Graphics2D g = canvas.createGraphics();
+        try {
+            g.drawImage(patch, left, top, null);
+            BufferedImage full = copy(canvas);
+
+            if (disposal.equals("restoreToBackgroundColor")) {
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(left, top, patch.getWidth(), patch.getHeight());
+            } else if (previous != null) {
+                g.setComposite(AlphaComposite.Src);
+                g.drawImage(previous, 0, 0, null);
+            }
+            return new IIOImage(full, null, fullFrameMetadata(full, tree, writer, param));
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /*
+    Builds the metadata for writing a full frame at the origin
+
+    The reader's metadata is read-only, so the writer's default metadata
+    for the full frame is filled from the (edited) tree instead.
+
+    @param full The full frame
+
+    @param tree Native tree of the frame's metadata from the reader (edited)
+
+    @param writer Sequence writer
+
+    @param param Write settings
+
+    @return GIF metadata for a full frame that is cleared after it is shown, or null for other writers
+     */
+    private IIOMetadata fullFrameMetadata(BufferedImage full, IIOMetadataNode tree, ImageWriter writer,
+                                          ImageWriteParam param) throws IOException {
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(full),
+                param);
+        if (metadata == null || metadata.isReadOnly()
+                || !IMAGE_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+            return null; // The patch's offsets and disposal mean nothing to other formats
+        }
+
+        IIOMetadataNode descriptor = child(tree, "ImageDescriptor");
+        descriptor.setAttribute("imageLeftPosition", "0");
+        descriptor.setAttribute("imageTopPosition", "0");
+        descriptor.setAttribute("imageWidth", Integer.toString(canvas.getWidth()));
+        descriptor.setAttribute("imageHeight", Integer.toString(canvas.getHeight()));
+
+        // The writer builds a new palette, and its own transparent index, from the filtered pixels
+        IIOMetadataNode colours = child(tree, "LocalColorTable");
+        if (colours != null) {
+            tree.removeChild(colours);
+        }
+        IIOMetadataNode control = child(tree, "GraphicControlExtension");
+        if (control == null) {
+            control = new IIOMetadataNode("GraphicControlExtension");
+            control.setAttribute("userInputFlag", "FALSE");
+            control.setAttribute("delayTime", "0");
+            tree.insertBefore(control, descriptor.getNextSibling());
+        }
+        control.setAttribute("disposalMethod", "restoreToBackgroundColor");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("transparentColorIndex", "0");
+
+        try {
+            metadata.setFromTree(IMAGE_FORMAT, tree);
+        } catch (IIOInvalidTreeException e) {
+            throw new IOException("Cannot rewrite the GIF frame metadata: " + e.getMessage(), e);
+        }
+        return metadata;
+    }
+
+    /*
+    Copies an ARGB image
+
+    @param image Image to copy
+
+    @return New image with the same pixels
+     */
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        copy.setData(image.getRaster());
+        return copy;
+    }
+
+    /*
+    Finds the first child element with a given name
+
+    @param parent Metadata node to search
+
+    @param name Element name
+
+    @return The element, or null if there is none
+     */
+    private static IIOMetadataNode child(IIOMetadataNode parent, String name) {
+        NodeList nodes = parent.getElementsByTagName(name);
+        return nodes.getLength() > 0 ? (IIOMetadataNode) nodes.item(0) : null;
+    }
+}
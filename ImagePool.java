@@ -0,0 +1,329 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;   // Pooled images
+import java.awt.image.DataBuffer;      // For measuring the memory of a pooled image
+import java.io.IOException;            // For decode errors
+import java.util.ArrayDeque;           // Free list for each image size/type
+import java.util.HashMap;              // Free lists keyed by size and type
+import java.util.Iterator;
+import java.util.Map;
+import javax.imageio.ImageIO;          // Reader lookup
+import javax.imageio.ImageReadParam;   // For decoding into a pooled destination
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier; // Decoder destination types
+import javax.imageio.stream.ImageInputStream;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+ImagePool Class - Reuses BufferedImages of the same size and type
+
+A batch of same-size camera frames needs the same decode target and the
+same result image for every file. Instead of allocating new ones each
+time, ImageProcess borrows them from this pool and the batch runner gives
+them back once a file has been saved.
+
+Only images with one of the standard, fixed colour models are pooled.
+Indexed and custom images carry their own palette or colour model, so two
+of them with the same size are not interchangeable; those are always
+created fresh and dropped when released.
+
+The pool holds at most maxBytes of idle images. Anything released beyond
+that cap is simply left for the garbage collector.
+
+All methods are synchronized so one pool can be shared by many threads.
+ */
+public final class ImagePool {
+
+    // Default cap, can be overridden with -Dnoiseremoving.poolBytes=<bytes>
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    // Pool shared by ImageProcess and the batch runners
+    private static final ImagePool SHARED =
+            new ImagePool(Long.getLong("noiseremoving.poolBytes", DEFAULT_MAX_BYTES));
+
+    // Idle images, keyed by "width x height x type"
+    private final Map<String, ArrayDeque<BufferedImage>> freeLists = new HashMap<>();
+
+    private long maxBytes;    // Most memory idle images may hold
+    private long pooledBytes; // Memory currently held by idle images
+
+    // Statistics
+    private long hits;      // Requests served from the pool
+    private long misses;    // Requests that needed a new image
+    private long discards;  // Released images dropped because of the cap or their type
+
+    /*
+    Constructor
+
+    @param maxBytes Most memory the idle images may hold (0 disables pooling)
+     */
+    public ImagePool(long maxBytes) {
+        setMaxBytes(maxBytes);
+    }
+
+    /*
+    Gets the pool shared by the whole application
+
+    @return The shared pool
+     */
+    public static ImagePool getShared() {
+        return SHARED;
+    }
+
+    /*
+    Checks whether images of a given BufferedImage type can be pooled
+
+    @param type BufferedImage.TYPE_* constant
+
+    @return true if two images of this type and size are interchangeable
+     */
+    public static boolean isPoolableType(int type) {
+        switch (type) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+            case BufferedImage.TYPE_INT_BGR:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_USHORT_GRAY:
+            case BufferedImage.TYPE_USHORT_565_RGB:
+            case BufferedImage.TYPE_USHORT_555_RGB:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /*
+    Borrows an image of the given size and standard type
+
+    The contents of a pooled image are whatever the last user left in it.
+
+    @param width Image width
+
+    @param height Image height
+
+    @param type A poolable BufferedImage.TYPE_* constant
+
+    @return An image from the pool, or a new one if none was free
+     */
+    public synchronized BufferedImage acquire(int width, int height, int type) {
+        if (!isPoolableType(type)) {
+            throw new IllegalArgumentException("Image type " + type + " cannot be pooled");
+        }
+        ArrayDeque<BufferedImage> free = freeLists.get(key(width, height, type));
+        if (free != null && !free.isEmpty()) {
+            BufferedImage image = free.pop();
+            pooledBytes -= sizeOf(image);
+            hits++;
+            return image;
+        }
+        misses++;
+        return new BufferedImage(width, height, type);
+    }
+
+    /*
+    Borrows an image suitable as a decoder destination
+
+    @param spec Destination type offered by the ImageReader
+
+    @param width Image width
+
+    @param height Image height
+
+    @return A pooled image when the type is poolable, otherwise a new one
+     */
+    public BufferedImage acquire(ImageTypeSpecifier spec, int width, int height) {
+        int type = spec.getBufferedImageType();
+        if (isPoolableType(type)) {
+            return acquire(width, height, type);
+        }
+        synchronized (this) {
+            misses++;
+        }
+        return spec.createBufferedImage(width, height);
+    }
+
+    /*
+    Decodes the first image of a stream into a destination borrowed from the pool
+
+    This does the same as ImageIO.read() but uses ImageReadParam.setDestination
+    so the pixels land in a reused image instead of a new allocation.
+
+    @param input Stream positioned at the start of an encoded image (not closed)
+
+    @return The decoded image, or null if no reader understands the data
+
+    @throws IOException if the data cannot be decoded
+     */
+    public BufferedImage decode(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null; // Not an image format ImageIO understands
+        }
+
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+
+            // Use the reader's preferred type, as ImageIO.read() would
+            ImageTypeSpecifier type = reader.getImageTypes(0).next();
+            BufferedImage destination = acquire(type, width, height);
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setDestination(destination);
+            try {
+                return reader.read(0, param);
+            } catch (IOException | RuntimeException e) {
+                release(destination); // Don't lose the pooled image on failure
+                throw e;
+            }
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /*
+    Gives an image back to the pool
+
+    The caller must not use the image (or anything drawn from it) afterwards.
+    Releasing an image that is already idle in the pool is an error: it
+    would be handed out twice and two users would overwrite each other.
+
+    @param image Image to return, null is ignored
+
+    @throws IllegalArgumentException if the image is already in the pool
+     */
+    public synchronized void release(BufferedImage image) {
+        if (image == null) {
+            return;
+        }
+        String key = key(image.getWidth(), image.getHeight(), image.getType());
+        ArrayDeque<BufferedImage> free = freeLists.get(key);
+        if (free != null && free.contains(image)) { // BufferedImage compares by identity
+            throw new IllegalArgumentException("Image " + key + " was released twice");
+        }
+        long size = sizeOf(image);
+        if (!isPoolableType(image.getType()) || pooledBytes + size > maxBytes) {
+            discards++;
+            return;
+        }
+        if (free == null) {
+            free = new ArrayDeque<>();
+            freeLists.put(key, free);
+        }
+        free.push(image);
+        pooledBytes += size;
+    }
+
+    /*
+    Drops every idle image held by the pool
+     */
+    public synchronized void clear() {
+        freeLists.clear();
+        pooledBytes = 0;
+    }
+
+    /*
+    Sets the cap on memory held by idle images
+
+    @param maxBytes New cap in bytes (0 disables pooling)
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Pool size must not be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        if (pooledBytes > maxBytes) {
+            clear();
+        }
+    }
+
+    /*
+    Gets the cap on memory held by idle images
+
+    @return Cap in bytes
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /*
+    Gets the memory currently held by idle images
+
+    @return Idle image memory in bytes
+     */
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    /*
+    Gets the number of requests served from the pool
+
+    @return Pool hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /*
+    Gets the number of requests that needed a new image
+
+    @return Pool misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /*
+    Gets the number of released images that were not kept
+
+    @return Discarded images
+     */
+    public synchronized long getDiscards() {
+        return discards;
+    }
+
+    /*
+    Gets a one-line summary of the pool statistics
+
+    @return Text such as "hits=12 misses=3 (80.0% hit rate), discards=0, idle=24.0 MB"
+     */
+    public synchronized String getStatistics() {
+        long requests = hits + misses;
+        double hitRate = requests == 0 ? 0.0 : 100.0 * hits / requests;
+        return String.format("hits=%d misses=%d (%.1f%% hit rate), discards=%d, idle=%.1f MB",
+                hits, misses, hitRate, discards, pooledBytes / (1024.0 * 1024.0));
+    }
+
+    /*
+    Builds the free-list key for an image size and type
+     */
+    private static String key(int width, int height, int type) {
+        return width + "x" + height + "x" + type;
+    }
+
+    /*
+    Estimates the memory used by an image's pixel data
+
+    @param image Image to measure
+
+    @return Size of the backing data buffer in bytes
+     */
+    private static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        long elementBytes = DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        return (long) buffer.getSize() * buffer.getNumBanks() * elementBytes;
+    }
+}
@@ -0,0 +1,289 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;  // Preview image
+import java.io.ByteArrayInputStream;  // EXIF thumbnail bytes
+import java.io.File;                  // Image file to preview
+import java.io.IOException;           // For reporting read errors
+import java.nio.ByteBuffer;           // For reading the EXIF (TIFF) structure
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;            // For finding an image reader
+import javax.imageio.ImageIO;         // Reader lookup
+import javax.imageio.ImageReadParam;  // For source subsampling
+import javax.imageio.ImageReader;     // For thumbnails and subsampled decoding
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import org.w3c.dom.NodeList;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+ImagePreviewLoader Class - Quickly loads a display-sized version of an image
+
+The GUI only shows images at about 400 x 300, yet decoding a 60 MP file in
+full takes seconds and hundreds of MB. This loader gets a small image in
+one of two cheap ways:
+
+1. An embedded thumbnail, if the file has one that is big enough: a
+   thumbnail the reader reports (JPEG files with a JFIF/JFXX thumbnail,
+   for example), or the one cameras store in a JPEG's EXIF (APP1) block
+
+2. A subsampled decode: ImageReadParam.setSourceSubsampling() makes the
+   reader skip rows and columns, so it only decodes what is displayed
+
+The full-resolution decode is left to ImageProcess.loadImage(), which the
+GUI only calls once the user actually runs the filter.
+ */
+public final class ImagePreviewLoader {
+
+    // Native metadata format of the JDK's JPEG plugin
+    private static final String JPEG_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    // APP1 marker, which holds the EXIF block (0xE1)
+    private static final String APP1_MARKER = "225";
+
+    // Start of an EXIF APP1 segment; the TIFF structure follows it
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    // IFD1 tags giving the offset and length of the JPEG thumbnail
+    private static final int TAG_THUMBNAIL_OFFSET = 0x0201;
+    private static final int TAG_THUMBNAIL_LENGTH = 0x0202;
+
+    private ImagePreviewLoader() {
+        // Static helpers only
+    }
+
+    /*
+    Loads a preview that is at least as big as the display area (when the
+    image itself is), so scaling it down for display still looks smooth
+
+    @param imageFile Image file to preview
+
+    @param maxWidth Width of the display area
+
+    @param maxHeight Height of the display area
+
+    @return Preview image, or null if no reader understands the file
+
+    @throws IOException if the file cannot be read
+     */
+    public static BufferedImage loadPreview(File imageFile, int maxWidth, int maxHeight) throws IOException {
+        if (!imageFile.canRead()) {
+            throw new IOException("Can't read input file: " + imageFile);
+        }
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                // An embedded thumbnail needs no decoding of the main image at all
+                BufferedImage thumbnail = findThumbnail(reader, width, height, maxWidth, maxHeight);
+                if (thumbnail != null) {
+                    return thumbnail;
+                }
+
+                // Otherwise decode only every n-th row and column
+                int step = Math.max(1, Math.min(width / maxWidth, height / maxHeight));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /*
+    Looks for an embedded thumbnail big enough to fill the display area
+
+    @param reader Reader positioned on the image
+
+    @param width Full image width
+
+    @param height Full image height
+
+    @param maxWidth Width of the display area
+
+    @param maxHeight Height of the display area
+
+    @return The smallest suitable thumbnail, or null if there is none
+     */
+    private static BufferedImage findThumbnail(ImageReader reader, int width, int height,
+                                               int maxWidth, int maxHeight) throws IOException {
+        // The size the full image will be shown at
+        double scale = Math.min(1.0, Math.min((double) maxWidth / width, (double) maxHeight / height));
+        int neededWidth = (int) (width * scale);
+        int neededHeight = (int) (height * scale);
+
+        if (reader.readerSupportsThumbnails() && reader.hasThumbnails(0)) {
+            int best = -1;
+            long bestPixels = Long.MAX_VALUE;
+            for (int i = 0; i < reader.getNumThumbnails(0); i++) {
+                int thumbWidth = reader.getThumbnailWidth(0, i);
+                int thumbHeight = reader.getThumbnailHeight(0, i);
+                long pixels = (long) thumbWidth * thumbHeight;
+                if (thumbWidth >= neededWidth && thumbHeight >= neededHeight && pixels < bestPixels) {
+                    best = i;
+                    bestPixels = pixels;
+                }
+            }
+            if (best >= 0) {
+                return reader.readThumbnail(0, best);
+            }
+        }
+
+        // The JPEG reader only reports JFIF/JFXX thumbnails; cameras put theirs in EXIF
+        byte[] exifThumbnail = findExifThumbnail(reader);
+        return exifThumbnail == null ? null : readThumbnail(exifThumbnail, neededWidth, neededHeight);
+    }
+
+    /*
+    Finds the JPEG thumbnail in a JPEG file's EXIF block
+
+    The EXIF APP1 segment is a small TIFF file: a header giving the byte
+    order and the offset of IFD0 (the main image's tags), and IFD0 ends
+    with the offset of IFD1, the thumbnail's tags. Its JPEGInterchangeFormat
+    and JPEGInterchangeFormatLength tags give where the thumbnail's JPEG
+    data is, counted from the start of the TIFF header.
+
+    @param reader Reader positioned on the image
+
+    @return The thumbnail's JPEG data, or null if there is no (readable) EXIF thumbnail
+     */
+    private static byte[] findExifThumbnail(ImageReader reader) throws IOException {
+        byte[] segment = findExifSegment(reader);
+        if (segment == null) {
+            return null;
+        }
+
+        int base = EXIF_HEADER.length;
+        ByteBuffer tiff = ByteBuffer.wrap(segment, base, segment.length - base).slice();
+        if (tiff.remaining() < 8) {
+            return null;
+        }
+        if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff.get(0) != 'M' || tiff.get(1) != 'M') {
+            return null;
+        }
+        if ((tiff.getShort(2) & 0xFFFF) != 42) {
+            return null;
+        }
+
+        try {
+            // Skip IFD0's entries (12 bytes each) to reach the offset of IFD1
+            int ifd0 = tiff.getInt(4);
+            int ifd1 = tiff.getInt(ifd0 + 2 + 12 * (tiff.getShort(ifd0) & 0xFFFF));
+            if (ifd1 == 0) {
+                return null; // No thumbnail directory
+            }
+
+            long offset = -1;
+            long length = -1;
+            int entries = tiff.getShort(ifd1) & 0xFFFF;
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd1 + 2 + 12 * i;
+                int tag = tiff.getShort(entry) & 0xFFFF;
+                // Both tags should be LONG (type 4), but some cameras write SHORT (type 3)
+                long value = (tiff.getShort(entry + 2) & 0xFFFF) == 3
+                        ? tiff.getShort(entry + 8) & 0xFFFF
+                        : tiff.getInt(entry + 8) & 0xFFFFFFFFL;
+                if (tag == TAG_THUMBNAIL_OFFSET) {
+                    offset = value;
+                } else if (tag == TAG_THUMBNAIL_LENGTH) {
+                    length = value;
+                }
+            }
+            if (offset < 0 || length <= 0 || offset + length > tiff.capacity()) {
+                return null;
+            }
+            return Arrays.copyOfRange(segment, base + (int) offset, base + (int) (offset + length));
+        } catch (IndexOutOfBoundsException e) {
+            return null; // An offset points outside the segment; the EXIF block is damaged
+        }
+    }
+
+    /*
+    Gets the EXIF APP1 segment from a JPEG reader's image metadata
+
+    The JDK's JPEG plugin keeps APP1 as an "unknown" marker node whose user
+    object holds the segment's bytes (without the marker and length).
+
+    @param reader Reader positioned on the image
+
+    @return The segment, starting with "Exif\0\0", or null if the image has none
+     */
+    private static byte[] findExifSegment(ImageReader reader) throws IOException {
+        IIOMetadata metadata = reader.getImageMetadata(0);
+        if (metadata == null || !JPEG_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+            return null;
+        }
+
+        NodeList markers = ((IIOMetadataNode) metadata.getAsTree(JPEG_FORMAT)).getElementsByTagName("unknown");
+        for (int i = 0; i < markers.getLength(); i++) {
+            IIOMetadataNode marker = (IIOMetadataNode) markers.item(i);
+            Object data = marker.getUserObject();
+            if (APP1_MARKER.equals(marker.getAttribute("MarkerTag")) && data instanceof byte[]) {
+                byte[] segment = (byte[]) data;
+                if (segment.length > EXIF_HEADER.length
+                        && Arrays.equals(Arrays.copyOf(segment, EXIF_HEADER.length), EXIF_HEADER)) {
+                    return segment;
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+    Decodes a thumbnail if it is big enough to fill the display area
+
+    @param jpeg The thumbnail's JPEG data
+
+    @param neededWidth Width the full image will be shown at
+
+    @param neededHeight Height the full image will be shown at
+
+    @return The thumbnail, or null if it is too small or cannot be decoded
+     */
+    private static BufferedImage readThumbnail(byte[] jpeg, int neededWidth, int neededHeight)
+            throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(jpeg))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // The header gives the size, so a small thumbnail is never decoded
+                if (reader.getWidth(0) < neededWidth || reader.getHeight(0) < neededHeight) {
+                    return null;
+                }
+                return reader.read(0);
+            } catch (IOException e) {
+                return null; // A damaged thumbnail just means decoding the main image instead
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package noiseremoving;
 
 // Import required Java classes for image handling and file I/O operations
+import java.awt.Rectangle;           // Edited regions to refilter
 import java.awt.image.BufferedImage; // For working with images in memory
 import java.io.File;                 // For file system operations
 import java.io.IOException;          // For handling input/output exceptions
+import java.util.Collections;
+import java.util.List;
 import javax.imageio.ImageIO;        // For reading and writing image files
+import javax.imageio.stream.ImageInputStream; // Input stream used by image readers
 
 /*
 Name: Suemon Kwok
@@ -24,6 +28,10 @@ This class encapsulates all the core functionality for:
 2. Applying median filter for noise removal
 3. Saving processed images back to files
 4. Managing original and processed image data
+
+The median filter itself lives in MedianFilterEngine. ImageProcess is a thin
+wrapper that holds the images for one caller, so each thread should use its
+own ImageProcess while they all share the same engine.
  */
 public class ImageProcess {
     
@@ -31,6 +39,31 @@ public class ImageProcess {
     private BufferedImage originalImage;  // Stores the original loaded image
     private BufferedImage processedImage; // Stores the noise-removed processed image
     
+    // Filter engine and settings (the engine is stateless and shared between threads)
+    private final MedianFilterEngine engine;
+    private FilterOptions options;
+    
+    // Pool that decode targets and result images are borrowed from
+    private final ImagePool pool;
+    
+    // What the last cleanNoise() call changed
+    private FilterResult lastResult;
+    
+    // Settings the processed image was made with (after AUTO and tuning), for refiltering edits
+    private FilterOptions lastOptions;
+    
+    // Encoder settings used by saveImage()
+    private OutputOptions outputOptions;
+    
+    // Worker processes to filter on, or null to filter in this JVM
+    private ShardCoordinator shardCoordinator;
+    
+    // Split large images into row bands filtered by several threads
+    private boolean splitLargeImages;
+    
+    // Fastest strategy and band size measured on this machine (see EngineTuner)
+    private final EngineTuner tuner;
+    
     /**
      * Default constructor
      * Initializes both image references to null (no images loaded initially)
@@ -38,6 +71,11 @@ public class ImageProcess {
     public ImageProcess() {
         this.originalImage = null;   // No original image loaded yet
         this.processedImage = null;  // No processed image created yet
+        this.engine = MedianFilterEngine.getShared();
+        this.options = new FilterOptions();
+        this.pool = ImagePool.getShared();
+        this.outputOptions = new OutputOptions();
+        this.tuner = EngineTuner.getShared();
     }
     
     /*
@@ -50,6 +88,10 @@ public class ImageProcess {
     
     - Console output for user feedback
     
+    The image is decoded straight into a destination borrowed from the
+    
+    ImagePool, so batches of same-size images reuse the same memory.
+    
     @param imagePath Path to the image file (can be relative or absolute)
     
     @return true if image loaded successfully, false otherwise
@@ -59,9 +101,9 @@ public class ImageProcess {
             // Create a File object from the provided path string
             File imageFile = new File(imagePath);
             
-            // Use ImageIO to read the image file into a BufferedImage
-            // This automatically handles different image formats (JPG, PNG, etc.)
-            originalImage = ImageIO.read(imageFile);
+            // Decode the image file into a pooled BufferedImage
+            // The reader is chosen automatically for the format (JPG, PNG, etc.)
+            originalImage = decode(imageFile);
             
             // Check if the image was successfully loaded (not null)
             if (originalImage != null) {
@@ -84,6 +126,81 @@ public class ImageProcess {
         }
     }
     
+    /*
+    Decodes an image file into a destination borrowed from the pool
+    
+    This does the same as ImageIO.read() but uses ImageReadParam.setDestination
+    
+    so the pixels land in a reused image instead of a new allocation.
+    
+    @param imageFile File to decode
+    
+    @return The decoded image, or null if no reader understands the file
+    
+    @throws IOException if the file cannot be read
+     */
+    private BufferedImage decode(File imageFile) throws IOException {
+        if (!imageFile.canRead()) {
+            throw new IOException("Can't read input file!");
+        }
+        
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+            return input == null ? null : pool.decode(input);
+        }
+    }
+    
+    /*
+    Filters every frame of an animated GIF or multi-page TIFF
+    
+    loadImage() and cleanNoise() only handle the first frame. This runs the
+    
+    whole file through a MultiFrameProcessor instead, using all cores and
+    
+    keeping at most two frames per core in memory.
+    
+    @param inputPath Path to the multi-frame image
+    
+    @param outputPath Path for the filtered file (its format must support sequences)
+    
+    @return Number of frames written, or -1 if the file could not be processed
+     */
+    public int cleanAllFrames(String inputPath, String outputPath) {
+        String formatName = ImageWriters.formatFor(outputPath, outputOptions);
+        if (formatName == null || !MultiFrameProcessor.canWriteSequence(formatName)) {
+            System.err.println("Cannot write a multi-frame " + formatName + " file: " + outputPath);
+            return -1;
+        }
+        
+        int threads = Runtime.getRuntime().availableProcessors();
+        MultiFrameProcessor frames = new MultiFrameProcessor(threads, threads * 2, options, outputOptions);
+        try {
+            int count = frames.process(new File(inputPath), new File(outputPath), formatName);
+            System.out.println("Filtered " + count + " frames: " + outputPath);
+            return count;
+        } catch (IOException e) {
+            System.err.println("Error processing frames: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    /*
+    Returns the original and processed images to the ImagePool
+    
+    Call this once the processed image has been saved and neither image
+    
+    (nor anything created from them) is used any more. Afterwards this
+    
+    processor behaves as if no image had been loaded.
+     */
+    public void release() {
+        pool.release(originalImage);
+        pool.release(processedImage);
+        originalImage = null;
+        processedImage = null;
+        lastResult = null;
+        lastOptions = null;
+    }
+    
     /*
     Saves the processed image to the specified file path
     
@@ -91,7 +208,9 @@ public class ImageProcess {
     
     - Validation that processed image exists
     
-    - File format detection from extension
+    - File format detection from the extension (or OutputOptions.getFormat() without one)
+    
+    - Encoder settings (quality, compression) from the OutputOptions
     
     - Error handling for save operations
     
@@ -106,22 +225,17 @@ public class ImageProcess {
             return false; // Cannot save if no processed image exists
         }
         
+        // Work out the format from the options or the file extension
+        String formatName = ImageWriters.formatFor(outputPath, outputOptions);
+        if (formatName == null) {
+            System.err.println("Cannot tell the image format of " + outputPath
+                    + " - add an extension such as .jpg or .png");
+            return false;
+        }
+        
         try {
-            // Create a File object for the output path
-            File outputFile = new File(outputPath);
-            
-            // Extract file extension to determine image format
-            String formatName = "jpg"; // Default format if extension not found
-            int dotIndex = outputPath.lastIndexOf('.'); // Find last dot in filename
-            
-            // If dot found and not at end of string, extract extension
-            if (dotIndex > 0 && dotIndex < outputPath.length() - 1) {
-                formatName = outputPath.substring(dotIndex + 1); // Get extension after dot
-            }
-            
-            // Use ImageIO to write the processed image to file
-            // Returns true if successful, false otherwise
-            boolean success = ImageIO.write(processedImage, formatName, outputFile);
+            // Encode with this thread's cached writer and the configured settings
+            boolean success = ImageWriters.write(processedImage, formatName, new File(outputPath), outputOptions);
             
             // Check if the save operation was successful
             if (success) {
@@ -141,17 +255,11 @@ public class ImageProcess {
     /*
     Removes salt-and-pepper noise from the loaded image using median filtering
     
-    This is the core image processing method that:
-    
-    1. Uses a 3x3 sliding window approach
-    
-    2. For each pixel, collects the 9 neighboring pixel values
+    The filtering itself is done by the shared, stateless MedianFilterEngine.
     
-    3. Sorts each color channel (R, G, B) separately
+    This method only creates the destination image and hands both images to
     
-    4. Replaces the center pixel with the median values
-    
-    5. Handles border pixels separately
+    the engine together with this processor's FilterOptions.
     
     The median filter is effective for salt-and-pepper noise because:
     
@@ -168,131 +276,132 @@ public class ImageProcess {
             return; // Exit if no image to process
         }
         
-        // Get image dimensions for processing loops
-        int width = originalImage.getWidth();   // Number of pixels horizontally
-        int height = originalImage.getHeight(); // Number of pixels vertically
-        
-        // Create a new BufferedImage for the processed result
-        // Uses same type as original to preserve color model and transparency
-        processedImage = new BufferedImage(width, height, originalImage.getType());
-        
         // Inform user that processing has started
         System.out.println("Starting noise removal process...");
         
-        // Process each pixel (excluding border pixels)
-        // Start from (1,1) and end at (width-2, height-2) to avoid border
-        // This ensures we always have a complete 3x3 neighborhood
-        for (int y = 1; y < height - 1; y++) {      // Loop through rows (excluding borders)
-            for (int x = 1; x < width - 1; x++) {   // Loop through columns (excluding borders)
-                
-                // Create arrays to store the 9 pixel values from 3x3 neighborhood
-                // Using Integer arrays for compatibility with SortArray generic type
-                Integer[] redValues = new Integer[9];   // Red color channel values
-                Integer[] greenValues = new Integer[9]; // Green color channel values  
-                Integer[] blueValues = new Integer[9];  // Blue color channel values
-                
-                int index = 0; // Index to track position in arrays (0-8)
-                
-                // Collect pixel values from 3x3 neighborhood around current pixel
-                // dy ranges from -1 to +1 (three rows)
-                for (int dy = -1; dy <= 1; dy++) {
-                    // dx ranges from -1 to +1 (three columns)
-                    for (int dx = -1; dx <= 1; dx++) {
-                        // Calculate actual coordinates of neighbor pixel
-                        int neighborX = x + dx; // Neighbor's x-coordinate
-                        int neighborY = y + dy; // Neighbor's y-coordinate
-                        
-                        // Get RGB value of neighbor pixel as packed integer
-                        // Format: 0xAARRGGBB (Alpha, Red, Green, Blue)
-                        int rgb = originalImage.getRGB(neighborX, neighborY);
-                        
-                        // Extract individual color components using bit operations
-                        // Right shift and mask to isolate each 8-bit color channel
-                        int red = (rgb >> 16) & 0xFF;   // Extract red (bits 16-23)
-                        int green = (rgb >> 8) & 0xFF;  // Extract green (bits 8-15)
-                        int blue = rgb & 0xFF;          // Extract blue (bits 0-7)
-                        
-                        // Store extracted values in arrays for median calculation
-                        redValues[index] = red;     // Store red value
-                        greenValues[index] = green; // Store green value
-                        blueValues[index] = blue;   // Store blue value
-                        
-                        index++; // Move to next position in arrays
-                    }
-                }
-                
-                // --- FILL THE GAP: Use SortArray to find median values ---
-                
-                // Create SortArray instances for each color channel
-                // Each instance will sort its respective color channel values
-                SortArray<Integer> redSorter = new SortArray<>(redValues);
-                SortArray<Integer> greenSorter = new SortArray<>(greenValues);
-                SortArray<Integer> blueSorter = new SortArray<>(blueValues);
-                
-                // Sort arrays and get median values (middle element after sorting)
-                // For 9 elements, median is at index 4 (0-based indexing)
-                int medianRed = redSorter.sortAndGetMedian();     // Get median red value
-                int medianGreen = greenSorter.sortAndGetMedian(); // Get median green value
-                int medianBlue = blueSorter.sortAndGetMedian();   // Get median blue value
-                
-                // --- END OF GAP FILLING ---
-                
-                // Combine median RGB values back into a single pixel value
-                // Use bit shifting to pack values: (red << 16) | (green << 8) | blue
-                // This creates the format: 0x00RRGGBB (no alpha channel modification)
-                int newRGB = (medianRed << 16) | (medianGreen << 8) | medianBlue;
-                
-                // Set the new pixel value in the processed image at current position
-                processedImage.setRGB(x, y, newRGB);
-            }
-            
-            // Progress indicator - print status every 50 rows to show progress
-            // Helps user know processing is ongoing for large images
-            if (y % 50 == 0) {
-                System.out.println("Processing row " + y + " of " + height);
+        // Borrow a destination from the pool and let the engine fill it
+        // (the engine writes every pixel, so stale pool contents don't matter)
+        int type = originalImage.getType();
+        BufferedImage result = ImagePool.isPoolableType(type)
+                ? pool.acquire(originalImage.getWidth(), originalImage.getHeight(), type)
+                : engine.createDestination(originalImage);
+        // In AUTO mode, a quick noise estimate picks the mode and window size
+        FilterOptions chosen = options;
+        NoiseEstimator.Estimate estimate = null;
+        if (options.getMode() == FilterMode.AUTO) {
+            estimate = NoiseEstimator.estimate(originalImage);
+            chosen = estimate.applyTo(options);
+        }
+        
+        // Use the strategy and band size calibrated for this kind of image, if any
+        FilterOptions tuned = tuner.tune(chosen, type, originalImage.getWidth(), originalImage.getHeight());
+        
+        // Worker processes only run the full median over square windows, copying the border
+        lastResult = null;
+        if (shardCoordinator != null && tuned.getMode() == FilterMode.FULL && tuned.isSquareKernel()
+                && tuned.getBorderMode() == BorderMode.COPY && ShardCoordinator.canShard(originalImage)) {
+            try {
+                lastResult = shardCoordinator.apply(originalImage, result, tuned);
+            } catch (IOException e) {
+                System.err.println("Worker processes failed, filtering locally: " + e.getMessage());
             }
         }
+        if (lastResult == null) {
+            lastResult = splitLargeImages
+                    ? engine.applyParallel(originalImage, result, tuned)
+                    : engine.apply(originalImage, result, tuned);
+        }
         
-        // Copy border pixels from original image (they are not processed by median filter)
-        // Border pixels can't be processed because they don't have complete 3x3 neighborhoods
-        copyBorderPixels();
+        // Further passes only revisit the regions the previous pass changed
+        if (tuned.getMaxPasses() > 1) {
+            lastResult = engine.continuePasses(originalImage, result, tuned);
+        }
+        lastResult.setNoiseEstimate(estimate);
+        processedImage = result;
+        lastOptions = tuned;
         
         // Inform user that processing is complete
         System.out.println("Noise removal completed successfully!");
     }
     
     /*
-    Copies border pixels from original image to processed image
+    Removes noise again after parts of the original image were edited
     
-    Border pixels (first/last row and first/last column) cannot be processed
+    Only the edited rectangles, grown by the window radius, are filtered
     
-    by the 3x3 median filter because they don't have complete neighborhoods.
+    again (see MedianFilterEngine.refilter); the rest of the processed image
     
-    This method copies them unchanged from the original image.
+    is kept. The settings of the previous run are reused, so in AUTO mode
+    
+    the mode chosen then still applies. Without a previous result the
+    
+    whole image is filtered.
+    
+    @param dirtyRegions Rectangles of the original image that were edited
      */
-    private void copyBorderPixels() {
-        // Get image dimensions for border copying
-        int width = originalImage.getWidth();   // Image width in pixels
-        int height = originalImage.getHeight(); // Image height in pixels
-        
-        // Copy top and bottom rows (entire width)
-        for (int x = 0; x < width; x++) {
-            // Copy top row (y=0) pixel by pixel
-            processedImage.setRGB(x, 0, originalImage.getRGB(x, 0));
-            
-            // Copy bottom row (y=height-1) pixel by pixel  
-            processedImage.setRGB(x, height - 1, originalImage.getRGB(x, height - 1));
+    public void cleanNoise(List<Rectangle> dirtyRegions) {
+        if (originalImage == null || processedImage == null || lastOptions == null
+                || processedImage.getWidth() != originalImage.getWidth()
+                || processedImage.getHeight() != originalImage.getHeight()) {
+            cleanNoise(); // Nothing to build on
+            return;
+        }
+        lastResult = engine.refilter(originalImage, processedImage, lastOptions, dirtyRegions);
+    }
+    
+    /*
+    Reloads the image file after it was edited elsewhere and refilters the changes
+    
+    The file is decoded again and compared with the loaded original tile by
+    
+    tile (see DirtyRegions.find); only the edited tiles are filtered again.
+    
+    If nothing was processed yet, or the edit changed the image size or
+    
+    type, the whole image is filtered instead. When nothing was edited the
+    
+    loaded original is kept and the new decode goes back to the pool.
+    
+    Otherwise the edited image replaces the original. The replaced original
+    
+    is not returned to the ImagePool, because a caller may still hold it
+    
+    from getOriginalImage() (the GUI shows it until the refresh is done);
+    
+    the garbage collector frees it once nothing refers to it.
+    
+    @param imagePath Path to the edited image file
+    
+    @return The edited regions (the whole image if it was all filtered), or null if the file could not be read
+     */
+    public List<Rectangle> reloadEdits(String imagePath) {
+        BufferedImage edited;
+        try {
+            edited = decode(new File(imagePath));
+        } catch (IOException e) {
+            System.err.println("Error reloading image: " + e.getMessage());
+            return null;
+        }
+        if (edited == null) {
+            System.err.println("Failed to reload image: " + imagePath);
+            return null;
         }
         
-        // Copy left and right columns (entire height)
-        // Note: corner pixels are copied twice but that's harmless
-        for (int y = 0; y < height; y++) {
-            // Copy left column (x=0) pixel by pixel
-            processedImage.setRGB(0, y, originalImage.getRGB(0, y));
-            
-            // Copy right column (x=width-1) pixel by pixel
-            processedImage.setRGB(width - 1, y, originalImage.getRGB(width - 1, y));
+        BufferedImage previous = originalImage;
+        if (previous == null || processedImage == null || previous.getType() != edited.getType()
+                || previous.getWidth() != edited.getWidth() || previous.getHeight() != edited.getHeight()) {
+            originalImage = edited;
+            cleanNoise();
+            return Collections.singletonList(new Rectangle(0, 0, edited.getWidth(), edited.getHeight()));
         }
+        List<Rectangle> dirty = DirtyRegions.find(previous, edited);
+        if (dirty.isEmpty()) {
+            pool.release(edited); // Same pixels as the original, and nobody else has seen it
+            return dirty;
+        }
+        originalImage = edited;
+        cleanNoise(dirty);
+        return dirty;
     }
     
     /*
@@ -313,6 +422,73 @@ public class ImageProcess {
         return processedImage; // Return reference to processed image
     }
     
+    /*
+    Gets what the last cleanNoise() call changed
+    
+    @return Changed pixel count and bounds, or null if not processed yet
+     */
+    public FilterResult getLastResult() {
+        return lastResult;
+    }
+    
+    /*
+    Gets the filter settings used by cleanNoise()
+    
+    @return The current filter options
+     */
+    public FilterOptions getOptions() {
+        return options;
+    }
+    
+    /*
+    Sets the filter settings used by cleanNoise()
+    
+    @param options The filter options to use
+     */
+    public void setOptions(FilterOptions options) {
+        this.options = options;
+    }
+    
+    /*
+    Gets the encoder settings used by saveImage()
+    
+    @return The current output options
+     */
+    public OutputOptions getOutputOptions() {
+        return outputOptions;
+    }
+    
+    /*
+    Sets the encoder settings used by saveImage()
+    
+    @param outputOptions The output options to use
+     */
+    public void setOutputOptions(OutputOptions outputOptions) {
+        this.outputOptions = outputOptions;
+    }
+    
+    /*
+    Sets the worker processes cleanNoise() sends opaque RGB images to
+    
+    @param shardCoordinator The coordinator to use, or null to filter in this JVM
+     */
+    public void setShardCoordinator(ShardCoordinator shardCoordinator) {
+        this.shardCoordinator = shardCoordinator;
+    }
+    
+    /*
+    Sets whether cleanNoise() splits large images into row bands
+    
+    The bands run as fork/join tasks (see MedianFilterEngine.applyParallel),
+    
+    so inside a BatchScheduler idle workers help with large images.
+    
+    @param splitLargeImages true to split large images
+     */
+    public void setSplitLargeImages(boolean splitLargeImages) {
+        this.splitLargeImages = splitLargeImages;
+    }
+    
     /*
     Checks if an image has been loaded
     
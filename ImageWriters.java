@@ -0,0 +1,229 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;   // Image to encode
+import java.io.File;                   // Output file
+import java.io.IOException;            // For reporting write errors
+import java.io.OutputStream;           // In-memory or network output
+import java.util.HashMap;              // Cached writers keyed by format
+import java.util.Iterator;
+import java.util.Map;
+import javax.imageio.IIOImage;         // Image wrapper passed to the writer
+import javax.imageio.ImageIO;          // Writer lookup
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;  // Encoder settings
+import javax.imageio.ImageWriter;      // Cached encoder
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam; // Optimised Huffman tables
+import javax.imageio.stream.ImageOutputStream;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+ImageWriters Class - Per-thread cache of ImageIO encoders
+
+ImageIO.write() looks up a fresh ImageWriter through the service registry
+on every call and always uses the default settings. This class keeps one
+writer per format for each thread, resets it after every image, and
+builds the ImageWriteParam from an OutputOptions object.
+
+ImageWriter instances are not thread-safe, which is why the cache is per
+thread; parallel batch encodes each get their own writers.
+ */
+public final class ImageWriters {
+
+    // Writers already created by this thread, keyed by lower-case format name
+    private static final ThreadLocal<Map<String, ImageWriter>> WRITERS = new ThreadLocal<Map<String, ImageWriter>>() {
+        @Override
+        protected Map<String, ImageWriter> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    private ImageWriters() {
+        // Static helpers only
+    }
+
+    /*
+    Works out the format to write a file in
+
+    @param outputPath Destination path
+
+    @param options Output settings (their format is only used for paths without an extension)
+
+    @return Format name, or null if neither the path nor the options name one
+     */
+    public static String formatFor(String outputPath, OutputOptions options) {
+        String name = new File(outputPath).getName();
+        int dotIndex = name.lastIndexOf('.');
+        if (dotIndex > 0 && dotIndex < name.length() - 1) {
+            return name.substring(dotIndex + 1);
+        }
+        return options != null ? options.getFormat() : null;
+    }
+
+    /*
+    Encodes an image to a file with the given settings
+
+    @param image Image to write
+
+    @param format Format name such as "jpg" or "png"
+
+    @param outputFile Destination file (replaced if it exists)
+
+    @param options Encoder settings
+
+    @return false if no encoder can write this format and image type
+
+    @throws IOException if writing fails
+     */
+    public static boolean write(BufferedImage image, String format, File outputFile, OutputOptions options)
+            throws IOException {
+        ImageWriter writer = writerFor(format, image);
+        if (writer == null) {
+            return false;
+        }
+
+        // Remove any old file first, as ImageIO.write() does
+        if (outputFile.exists() && !outputFile.delete()) {
+            throw new IOException("Cannot replace existing file: " + outputFile);
+        }
+
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(outputFile)) {
+            if (output == null) {
+                throw new IOException("Cannot create output stream for " + outputFile);
+            }
+            encode(writer, image, format, output, options);
+            return true;
+        }
+    }
+
+    /*
+    Encodes an image to a stream with the given settings
+
+    @param image Image to write
+
+    @param format Format name such as "jpg" or "png"
+
+    @param out Destination stream (left open)
+
+    @param options Encoder settings
+
+    @return false if no encoder can write this format and image type
+
+    @throws IOException if writing fails
+     */
+    public static boolean write(BufferedImage image, String format, OutputStream out, OutputOptions options)
+            throws IOException {
+        ImageWriter writer = writerFor(format, image);
+        if (writer == null) {
+            return false;
+        }
+        // Closing the image stream flushes it without closing 'out'
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            encode(writer, image, format, output, options);
+            return true;
+        }
+    }
+
+    /*
+    Runs one encode with a writer from writerFor() and gets it ready for reuse
+
+    @param writer Writer to use
+
+    @param image Image to write
+
+    @param format Format name
+
+    @param output Destination stream
+
+    @param options Encoder settings
+     */
+    private static void encode(ImageWriter writer, BufferedImage image, String format,
+                               ImageOutputStream output, OutputOptions options) throws IOException {
+        try {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), createParam(writer, format, options));
+        } finally {
+            // Clear the output and any state so the writer can be reused
+            writer.reset();
+            if (WRITERS.get().get(format.toLowerCase()) != writer) {
+                writer.dispose(); // One-off writer for an unusual image type
+            }
+        }
+    }
+
+    /*
+    Gets this thread's cached writer for a format, creating it if needed
+
+    @param format Format name
+
+    @param image Image about to be written (used to check the writer supports it)
+
+    @return A writer, or null if none supports the format and image type
+     */
+    private static ImageWriter writerFor(String format, BufferedImage image) {
+        String key = format.toLowerCase();
+        Map<String, ImageWriter> writers = WRITERS.get();
+        ImageWriter writer = writers.get(key);
+        ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(image);
+
+        if (writer != null && writer.getOriginatingProvider().canEncodeImage(type)) {
+            return writer;
+        }
+
+        // Same search ImageIO.write() does, but the result is kept for next time
+        Iterator<ImageWriter> candidates = ImageIO.getImageWriters(type, key);
+        if (!candidates.hasNext()) {
+            return null;
+        }
+        ImageWriter created = candidates.next();
+        if (writer == null) {
+            writers.put(key, created);
+        }
+        return created;
+    }
+
+    /*
+    Builds the write parameters for one image
+
+    @param writer Writer that will encode the image
+
+    @param format Format name
+
+    @param options Encoder settings (null means defaults)
+
+    @return Parameters for ImageWriter.write()
+     */
+    static ImageWriteParam createParam(ImageWriter writer, String format, OutputOptions options) {
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (options == null) {
+            return param;
+        }
+
+        String key = format.toLowerCase();
+        if (key.equals("jpg") || key.equals("jpeg")) {
+            if (options.getJpegQuality() >= 0f && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(options.getJpegQuality());
+            }
+            if (options.isProgressive() && param.canWriteProgressive()) {
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            if (options.isOptimizeHuffman() && param instanceof JPEGImageWriteParam) {
+                ((JPEGImageWriteParam) param).setOptimizeHuffmanTables(true);
+            }
+        } else if (key.equals("png")) {
+            // The PNG writer maps quality q to deflate level 9 - round(9 * q)
+            if (options.getPngCompressionLevel() >= 0 && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality((9 - options.getPngCompressionLevel()) / 9f);
+            }
+        }
+        return param;
+    }
+}
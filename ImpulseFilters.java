@@ -0,0 +1,186 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+ImpulseFilters Class - The GATED and ADAPTIVE filter modes
+
+Both work on ARGB rows from getRGB(), so they handle every image type the
+same way. They only replace pixels that look like impulses, which keeps
+fine detail that a full median would smooth away.
+
+- gate():     takes a full median result and puts back every pixel whose
+              brightness the median moved by less than the threshold
+- adaptive(): Gonzalez and Woods' adaptive median filter, channel by channel
+ */
+final class ImpulseFilters {
+
+    // Largest window the adaptive filter grows to
+    static final int MAX_ADAPTIVE_WINDOW = 7;
+
+    private ImpulseFilters() {
+        // Static helpers only
+    }
+
+    /*
+    Restores the pixels a full median changed by less than an impulse-sized step
+
+    @param src Original image
+
+    @param dst Full median result of src (modified in place)
+
+    @param threshold Smallest brightness change that counts as an impulse
+
+    @return The changes left in dst
+     */
+    static FilterResult gate(BufferedImage src, BufferedImage dst, int threshold) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int[] original = new int[width];
+        int[] filtered = new int[width];
+        Object pixel = null; // One raw pixel, for exact restores
+        FilterResult result = new FilterResult();
+
+        for (int y = 0; y < height; y++) {
+            src.getRGB(0, y, width, 1, original, 0, width);
+            dst.getRGB(0, y, width, 1, filtered, 0, width);
+
+            int changed = 0;
+            int firstChanged = 0;
+            int lastChanged = 0;
+            for (int x = 0; x < width; x++) {
+                if (filtered[x] == original[x]) {
+                    continue;
+                }
+                if (Math.abs(luma(filtered[x]) - luma(original[x])) < threshold) {
+                    // Copy the raw pixel, so gray and indexed values come back unchanged
+                    pixel = src.getRaster().getDataElements(x, y, pixel);
+                    dst.getRaster().setDataElements(x, y, pixel);
+                } else {
+                    if (changed++ == 0) {
+                        firstChanged = x;
+                    }
+                    lastChanged = x;
+                }
+            }
+            result.addRow(y, firstChanged, lastChanged, changed);
+        }
+        return result;
+    }
+
+    /*
+    Adaptive median filter
+
+    For each channel of each pixel the window starts at windowSize. While
+    the window's median equals its minimum or maximum (the median is itself
+    an impulse) the window grows by two, up to MAX_ADAPTIVE_WINDOW or the
+    image edge. Then the pixel keeps its value unless it equals the
+    window's minimum or maximum, in which case it becomes the median.
+    Pixels without a complete starting window are copied unchanged.
+
+    @param src Image to filter
+
+    @param dst Destination of the same size
+
+    @param windowSize Starting window size (odd)
+
+    @return Which pixels changed
+     */
+    static FilterResult adaptive(BufferedImage src, BufferedImage dst, int windowSize) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int maxRadius = Math.max(windowSize, MAX_ADAPTIVE_WINDOW) / 2;
+        int startRadius = windowSize / 2;
+        int ring = 2 * maxRadius + 1;
+
+        // Rows y - maxRadius .. y + maxRadius, row r kept in rows[r % ring]
+        int[][] rows = new int[ring][width];
+        for (int r = 0; r < Math.min(maxRadius, height); r++) {
+            src.getRGB(0, r, width, 1, rows[r % ring], 0, width);
+        }
+        int[] out = new int[width];
+        int[] samples = new int[ring * ring];
+        FilterResult result = new FilterResult();
+
+        for (int y = 0; y < height; y++) {
+            int newRow = y + maxRadius;
+            if (newRow < height) {
+                src.getRGB(0, newRow, width, 1, rows[newRow % ring], 0, width);
+            }
+            int[] centreRow = rows[y % ring];
+
+            int changed = 0;
+            int firstChanged = 0;
+            int lastChanged = 0;
+            for (int x = 0; x < width; x++) {
+                int pixel = centreRow[x];
+                int limit = Math.min(Math.min(x, y), Math.min(width - 1 - x, height - 1 - y));
+                if (limit < startRadius) {
+                    out[x] = pixel; // Border, as in the other modes
+                    continue;
+                }
+                int value = pixel & 0xFF000000;
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    value |= adaptiveChannel(rows, ring, x, y, shift, startRadius,
+                            Math.min(maxRadius, limit), samples) << shift;
+                }
+                out[x] = value;
+                if (value != pixel) {
+                    if (changed++ == 0) {
+                        firstChanged = x;
+                    }
+                    lastChanged = x;
+                }
+            }
+            dst.setRGB(0, y, width, 1, out, 0, width);
+            result.addRow(y, firstChanged, lastChanged, changed);
+        }
+        return result;
+    }
+
+    /*
+    Runs the adaptive median for one channel of one pixel
+
+    @return The channel's new value
+     */
+    private static int adaptiveChannel(int[][] rows, int ring, int x, int y, int shift, int startRadius,
+                                       int maxRadius, int[] samples) {
+        int centre = (rows[y % ring][x] >> shift) & 0xFF;
+        int median = centre;
+        for (int radius = startRadius; radius <= maxRadius; radius++) {
+            int count = 0;
+            int min = 255;
+            int max = 0;
+            for (int dy = -radius; dy <= radius; dy++) {
+                int[] row = rows[(y + dy) % ring];
+                for (int dx = -radius; dx <= radius; dx++) {
+                    int sample = (row[x + dx] >> shift) & 0xFF;
+                    min = Math.min(min, sample);
+                    max = Math.max(max, sample);
+                    samples[count++] = sample;
+                }
+            }
+            median = MedianFilterEngine.medianOf(samples, count);
+            if (min < median && median < max) {
+                // The median is not an impulse: replace the pixel only if it is one
+                return min < centre && centre < max ? centre : median;
+            }
+        }
+        return median; // Largest window reached
+    }
+
+    /*
+    Brightness of a packed RGB pixel (same weights as the usual luma conversion)
+     */
+    static int luma(int rgb) {
+        return (((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8;
+    }
+}
@@ -0,0 +1,177 @@
+package noiseremoving;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+IterativeFilter Class - Repeated median passes that only revisit changed regions
+
+Some scans need several passes before every impulse is gone, but after the
+first pass only a few regions still change. Rerunning the whole filter
+recomputes every pixel each time, so instead the image is divided into
+TILE x TILE tiles and each pass records which tiles it changed. A pixel
+can only change in the next pass if something inside its window changed
+in this one, so the next pass recomputes just the changed tiles and their
+eight neighbours, each filtered on a copy with a halo as wide as the
+window reaches (see DirtyRegions).
+
+Every pass reads the previous pass's output and writes into a second
+buffer (and only the rewritten tiles are synced back afterwards), so the
+result is exactly what the same number of full passes would give. While
+more than half the tiles still need work, a pass filters the whole image
+at once instead, which is cheaper than that many separate tiles. Passes
+stop when one changes no pixel or FilterOptions.getMaxPasses() is reached.
+
+PYRAMID and SKIP already give their final result after one pass.
+ */
+final class IterativeFilter {
+
+    // Side of the square tiles whose changes are tracked
+    static final int TILE = 64;
+
+    private IterativeFilter() {
+        // Static helpers only
+    }
+
+    /*
+    Runs further passes over the result of a first pass
+
+    @param engine Engine that filters each tile
+
+    @param src Original image (not modified)
+
+    @param dst First pass result of src; receives the final result
+
+    @param options Filter settings, including the pass limit
+
+    @return What changed from src to the final result, with the passes run
+     */
+    static FilterResult continuePasses(MedianFilterEngine engine, BufferedImage src, BufferedImage dst,
+                                       FilterOptions options) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        FilterMode mode = options.getMode();
+        int halo = DirtyRegions.reach(options);
+        int tile = Math.max(TILE, halo);
+        int tilesX = (width + tile - 1) / tile;
+        int tilesY = (height + tile - 1) / tile;
+
+        int passes = 1;
+        boolean[] dirty = new boolean[tilesX * tilesY];
+        boolean anyDirty = false;
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                int x = tx * tile;
+                int y = ty * tile;
+                dirty[ty * tilesX + tx] = DirtyRegions.differs(src.getRaster(), dst.getRaster(), x, y,
+                        Math.min(tile, width - x), Math.min(tile, height - y));
+                anyDirty |= dirty[ty * tilesX + tx];
+            }
+        }
+        if (mode == FilterMode.PYRAMID || mode == FilterMode.SKIP) {
+            anyDirty = false;
+        }
+
+        // Both buffers hold the current result at the start of every pass
+        BufferedImage current = dst;
+        BufferedImage next = engine.createDestination(dst);
+        next.getRaster().setRect(dst.getRaster());
+
+        while (anyDirty && passes < options.getMaxPasses()) {
+            boolean[] work = new boolean[dirty.length];
+            int workCount = 0;
+            for (int ty = 0; ty < tilesY; ty++) {
+                for (int tx = 0; tx < tilesX; tx++) {
+                    if (nearDirty(dirty, tilesX, tilesY, tx, ty)) {
+                        work[ty * tilesX + tx] = true;
+                        workCount++;
+                    }
+                }
+            }
+
+            // Mostly dirty: one pass over the whole image is cheaper than many tiles
+            boolean whole = workCount * 2 > work.length;
+            if (whole) {
+                engine.apply(current, next, options);
+            }
+            boolean[] changed = new boolean[dirty.length];
+            anyDirty = false;
+            for (int t = 0; t < work.length; t++) {
+                if (!work[t]) {
+                    continue;
+                }
+                int x = (t % tilesX) * tile;
+                int y = (t / tilesX) * tile;
+                int w = Math.min(tile, width - x);
+                int h = Math.min(tile, height - y);
+                boolean tileChanged = whole ? DirtyRegions.differs(current.getRaster(), next.getRaster(), x, y, w, h)
+                        : filterTile(engine, current, next, options, x, y, w, h, halo);
+                if (tileChanged) {
+                    changed[t] = true;
+                    anyDirty = true;
+                }
+            }
+            passes++;
+
+            // Swap, then copy the rewritten tiles into the other buffer too
+            BufferedImage swap = current;
+            current = next;
+            next = swap;
+            for (int t = 0; t < changed.length; t++) {
+                if (changed[t]) {
+                    int x = (t % tilesX) * tile;
+                    int y = (t / tilesX) * tile;
+                    next.getRaster().setRect(current.getRaster().createChild(x, y,
+                            Math.min(tile, width - x), Math.min(tile, height - y), x, y, null));
+                }
+            }
+            dirty = changed;
+        }
+
+        if (current != dst) {
+            dst.getRaster().setRect(current.getRaster());
+        }
+        FilterResult result = new FilterResult();
+        DirtyRegions.compare(src.getRaster(), dst.getRaster(), new Rectangle(0, 0, width, height), result);
+        result.setPasses(passes);
+        return result;
+    }
+
+    /*
+    Filters one tile of current into next
+
+    @return true if any pixel of the tile changed
+     */
+    private static boolean filterTile(MedianFilterEngine engine, BufferedImage current, BufferedImage next,
+                                      FilterOptions options, int x, int y, int w, int h, int halo) {
+        Raster tileResult = DirtyRegions.filterRegion(engine, current, options, new Rectangle(x, y, w, h), halo);
+        if (!DirtyRegions.differs(current.getRaster(), tileResult, x, y, w, h)) {
+            return false;
+        }
+        next.getRaster().setRect(tileResult);
+        return true;
+    }
+
+    /*
+    Checks whether a tile or any of its eight neighbours changed in the last pass
+     */
+    private static boolean nearDirty(boolean[] dirty, int tilesX, int tilesY, int tx, int ty) {
+        for (int y = Math.max(0, ty - 1); y <= Math.min(tilesY - 1, ty + 1); y++) {
+            for (int x = Math.max(0, tx - 1); x <= Math.min(tilesX - 1, tx + 1); x++) {
+                if (dirty[y * tilesX + x]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
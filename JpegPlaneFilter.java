@@ -0,0 +1,210 @@
+package noiseremoving;
+
+import java.awt.image.Raster;          // Raw samples as stored in the JPEG
+import java.awt.image.WritableRaster;  // Filtered samples to encode
+import java.io.File;                   // Input and output files
+import java.io.IOException;            // For reporting read/write errors
+import java.util.Iterator;             // For finding a JPEG reader
+import javax.imageio.IIOImage;         // Raster plus metadata for the writer
+import javax.imageio.ImageIO;          // Reader and writer lookup
+import javax.imageio.ImageReader;      // For readRaster()
+import javax.imageio.ImageWriter;      // For writing a Raster
+import javax.imageio.metadata.IIOMetadata; // JPEG metadata (colour space, tables)
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import org.w3c.dom.Node;               // For inspecting the native metadata tree
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+JpegPlaneFilter Class - Filters JPEG files without converting to RGB
+
+The normal path decodes a JPEG to RGB, filters three RGB channels and then
+converts back to YCbCr when saving. This class skips both colour
+conversions by working on the raw YCbCr samples:
+
+1. ImageReader.readRaster() returns the samples exactly as stored (Y, Cb, Cr)
+
+2. MedianFilterEngine.applyYCbCr() runs the median on Y everywhere and on
+   Cb/Cr only at the pixels where Y shows an impulse
+
+3. ImageWriter.write() encodes the Raster with the original metadata, so the
+   writer does no colour conversion either
+
+Only baseline JFIF-style files (gray, or YCbCr as signalled by JFIF or an
+Adobe marker) take this path. process() returns null for anything else
+so the caller can fall back to the normal ImageProcess path.
+ */
+public final class JpegPlaneFilter {
+
+    // Smallest change in Y that counts as an impulse (JPEG blurs 0/255 slightly)
+    public static final int DEFAULT_IMPULSE_THRESHOLD = 48;
+
+    // Name of the JDK's native JPEG metadata format
+    private static final String NATIVE_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    private JpegPlaneFilter() {
+        // Static helpers only
+    }
+
+    /*
+    Checks whether a path names a JPEG file by its extension
+
+    @param path File path
+
+    @return true for .jpg and .jpeg files
+     */
+    public static boolean isJpegPath(String path) {
+        String lower = path.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+    }
+
+    /*
+    Filters a JPEG file on its YCbCr planes and writes a JPEG result
+
+    @param inputPath JPEG file to read
+
+    @param outputPath JPEG file to write
+
+    @param options Filter settings
+
+    @param outputOptions JPEG encoder settings (quality, progressive scans, Huffman tables)
+
+    @return What the filter changed, or null if the caller should use the
+            normal RGB path instead. Nothing is written in that case, and
+            nothing is written either when the filter changed no pixels, so
+            the caller can copy the original file instead.
+
+    @throws IOException if the file cannot be read or written
+     */
+    public static FilterResult process(String inputPath, String outputPath, FilterOptions options,
+                                       OutputOptions outputOptions) throws IOException {
+        File inputFile = new File(inputPath);
+        if (!inputFile.canRead()) {
+            throw new IOException("Can't read input file: " + inputPath);
+        }
+
+        Raster source;
+        IIOMetadata metadata;
+        ImageReader reader = null;
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(inputFile)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            reader = readers.next();
+            if (!"jpeg".equalsIgnoreCase(reader.getFormatName()) || !reader.canReadRaster()) {
+                return null;
+            }
+            reader.setInput(input, true, false);
+            metadata = reader.getImageMetadata(0);
+            source = reader.readRaster(0, null);
+
+            if (!hasSupportedColourSpace(source, metadata)) {
+                return null;
+            }
+
+            WritableRaster result = Raster.createWritableRaster(source.getSampleModel(), null);
+            FilterResult changes = MedianFilterEngine.getShared().applyYCbCr(source, result, options,
+                    DEFAULT_IMPULSE_THRESHOLD);
+            if (!changes.isChanged()) {
+                return changes; // Already clean, leave the original bytes alone
+            }
+
+            ImageWriter writer = ImageIO.getImageWriter(reader);
+            if (writer == null) {
+                return null;
+            }
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(new File(outputPath))) {
+                writer.setOutput(output);
+                // Reusing the reader's metadata keeps the colour space and, unless a quality
+                // is set, the quantisation tables
+                writer.write(null, new IIOImage(result, null, metadata),
+                        ImageWriters.createParam(writer, "jpeg", outputOptions));
+            } finally {
+                writer.dispose();
+            }
+
+            System.out.println("JPEG planes filtered: " + changes);
+            return changes;
+        } finally {
+            if (reader != null) {
+                reader.dispose();
+            }
+        }
+    }
+
+    /*
+    Checks that the raw raster really holds gray or YCbCr samples
+
+    @param raster Raw raster from readRaster()
+
+    @param metadata The image's JPEG metadata
+
+    @return true if the raster can be filtered as Y (plus Cb/Cr)
+     */
+    private static boolean hasSupportedColourSpace(Raster raster, IIOMetadata metadata) {
+        int bands = raster.getNumBands();
+        if (bands == 1) {
+            return true;
+        }
+        if (bands != 3 || metadata == null) {
+            return false;
+        }
+
+        Node root = metadata.getAsTree(NATIVE_FORMAT);
+        // A JFIF marker means YCbCr by definition
+        if (findNode(root, "app0JFIF") != null) {
+            return true;
+        }
+        // An Adobe marker with transform 1 also means YCbCr (0 would be RGB)
+        Node adobe = findNode(root, "app14Adobe");
+        if (adobe != null) {
+            Node transform = adobe.getAttributes().getNamedItem("transform");
+            return transform != null && "1".equals(transform.getNodeValue());
+        }
+        // Without either marker (e.g. EXIF-only files) the component ids decide,
+        // as in the JDK decoder: 'R','G','B' means RGB, anything else YCbCr
+        Node sof = findNode(root, "sof");
+        if (sof == null) {
+            return false;
+        }
+        StringBuilder ids = new StringBuilder();
+        for (Node spec = sof.getFirstChild(); spec != null; spec = spec.getNextSibling()) {
+            Node id = spec.getAttributes().getNamedItem("componentId");
+            if (id != null) {
+                ids.append((char) Integer.parseInt(id.getNodeValue()));
+            }
+        }
+        return !"RGB".equals(ids.toString());
+    }
+
+    /*
+    Depth-first search of a metadata tree for a node with the given name
+
+    @param node Node to start from
+
+    @param name Node name to look for
+
+    @return The first matching node, or null if there is none
+     */
+    private static Node findNode(Node node, String name) {
+        if (name.equals(node.getNodeName())) {
+            return node;
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            Node found = findNode(child, name);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,61 @@
+package noiseremoving;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+KernelShape Enum - Which pixels of the window take part in each median
+
+The window size (FilterOptions.getWindowSize()) sets how far the kernel
+reaches; the shape picks the pixels inside that square:
+
+- SQUARE:  every pixel of the window (the original filter)
+- CROSS:   the centre row and the centre column only; keeps thin lines and
+           corners that a square window rounds off
+- DIAMOND: pixels within the radius in city-block distance (|dx| + |dy|)
+- DISK:    pixels within radius + 1/2 of the centre, the closest a pixel
+           grid gets to a circle; at radius 1 it is the full 3x3 square
+
+Any shape can also be centre weighted (FilterOptions.setCentreWeight()):
+the centre pixel then counts several times, so the median leans towards
+keeping it and less detail is lost.
+
+Shapes are turned into a KernelTable before filtering starts, so the
+kernels never test which pixels belong to the shape. They apply to the
+FULL and GATED modes; ADAPTIVE and PYRAMID choose their own windows.
+ */
+public enum KernelShape {
+    SQUARE,
+    CROSS,
+    DIAMOND,
+    DISK;
+
+    /*
+    Checks whether a pixel of the window belongs to the shape
+
+    @param dx Column offset from the centre
+
+    @param dy Row offset from the centre
+
+    @param radius Window radius
+
+    @return true if the pixel takes part in the median
+     */
+    boolean contains(int dx, int dy, int radius) {
+        switch (this) {
+            case CROSS:
+                return dx == 0 || dy == 0;
+            case DIAMOND:
+                return Math.abs(dx) + Math.abs(dy) <= radius;
+            case DISK:
+                return dx * dx + dy * dy <= radius * radius + radius; // (radius + 1/2) squared, rounded down
+            default:
+                return true;
+        }
+    }
+}
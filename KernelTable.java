@@ -0,0 +1,112 @@
+package noiseremoving;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+KernelTable Class - A kernel shape compiled into plain tables
+
+Testing every window position against the shape would put a branch in
+the innermost loop of every kernel. Instead each shape, radius and centre
+weight is compiled once per filter run into:
+
+- row spans: for every row dy of the window, the first and last column dx
+  in the shape (every shape is one unbroken run per row). The sliding
+  histograms add and remove just the span ends as the window moves.
+- an offset table: the array distance from the centre pixel to each
+  sample, in row order, built for one raster layout by offsets(). The
+  centre is listed centreWeight times, so a weighted median is the plain
+  median of the table's samples. The gathering loops just walk the table.
+
+A square window with no centre weight gives exactly the original
+samples, so the square filter's output is unchanged.
+ */
+final class KernelTable {
+
+    // Window radius; pixels closer than this to the image edge have no full window
+    final int radius;
+
+    // Samples in one window, with the centre counted centreWeight times
+    final int size;
+
+    // Extra copies of the centre sample (centre weight - 1)
+    final int centreExtra;
+
+    // First and last column of each row of the window, indexed by dy + radius
+    final int[] spanFrom;
+    final int[] spanTo;
+
+    private KernelTable(int radius, int[] spanFrom, int[] spanTo, int centreExtra) {
+        this.radius = radius;
+        this.spanFrom = spanFrom;
+        this.spanTo = spanTo;
+        this.centreExtra = centreExtra;
+        int samples = centreExtra;
+        for (int row = 0; row < spanFrom.length; row++) {
+            samples += spanTo[row] - spanFrom[row] + 1;
+        }
+        this.size = samples;
+    }
+
+    /*
+    Compiles the kernel described by a set of filter options
+
+    @param options Filter settings (window size, shape and centre weight)
+
+    @return The compiled kernel
+     */
+    static KernelTable of(FilterOptions options) {
+        return compile(options.getShape(), options.getRadius(), options.getCentreWeight());
+    }
+
+    /*
+    Compiles a kernel shape
+
+    @param shape Which pixels of the window are used
+
+    @param radius Window radius
+
+    @param centreWeight Times the centre pixel is counted, at least 1
+
+    @return The compiled kernel
+     */
+    static KernelTable compile(KernelShape shape, int radius, int centreWeight) {
+        int[] spanFrom = new int[2 * radius + 1];
+        int[] spanTo = new int[2 * radius + 1];
+        for (int dy = -radius; dy <= radius; dy++) {
+            int dx = 0;
+            while (dx < radius && shape.contains(dx + 1, dy, radius)) {
+                dx++;
+            }
+            spanFrom[dy + radius] = -dx;    // Every shape is symmetric about the centre column
+            spanTo[dy + radius] = dx;
+        }
+        return new KernelTable(radius, spanFrom, spanTo, centreWeight - 1);
+    }
+
+    /*
+    Builds the offset table for one raster layout
+
+    @param stride Array elements from one row to the next
+
+    @param pixelStride Array elements from one pixel to the next
+
+    @return size offsets from the centre pixel's first element, row by row, extra centre copies last
+     */
+    int[] offsets(int stride, int pixelStride) {
+        int[] offsets = new int[size];
+        int count = 0;
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = spanFrom[dy + radius]; dx <= spanTo[dy + radius]; dx++) {
+                offsets[count++] = dy * stride + dx * pixelStride;
+            }
+        }
+        // The remaining centreExtra entries are already 0, the centre itself
+        return offsets;
+    }
+}
@@ -0,0 +1,369 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;   // Tile samples
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;             // Off-heap chunks
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;   // For memory-mapped stores
+import java.nio.file.Path;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+LargeImageStore Class - Off-heap 8-bit image for images beyond array limits
+
+A BufferedImage keeps its samples in one Java array, so no image can have
+more than about 2^31 samples, and all of them must fit in the heap. This
+store keeps interleaved 8-bit samples (gray or RGB) outside the heap in
+chunks of up to 1 GB, either direct ByteBuffers or regions of a
+memory-mapped file, and addresses them with long offsets. The only limit
+is the address space (or the size of the file).
+
+The samples are accessed in whole rows (readRow / writeRow) or as small
+BufferedImage tiles (readTile / writeTile); MedianFilterEngine.applyLarge()
+filters one store into another strip by strip, so only a few rows are ever
+on the heap.
+
+A mapped store is a raw file with no header: width x height x channels
+bytes, row by row, RGB order for colour. That is the same layout as
+ffmpeg's rawvideo and most mosaic tools' raw output.
+
+Not thread-safe for writing the same rows from several threads.
+ */
+public class LargeImageStore implements Closeable {
+
+    // Bytes per chunk (each chunk is one ByteBuffer, which is int-indexed)
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    private final long width;
+    private final long height;
+    private final int channels;
+    private final ByteBuffer[] chunks;
+    private final RandomAccessFile file;   // Only for mapped stores
+
+    /*
+    Creates a store over existing chunks
+     */
+    private LargeImageStore(long width, long height, int channels, ByteBuffer[] chunks, RandomAccessFile file) {
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.chunks = chunks;
+        this.file = file;
+    }
+
+    /*
+    Allocates a store in off-heap memory (direct buffers)
+
+    @param width Width in pixels
+
+    @param height Height in pixels
+
+    @param channels 1 for gray, 3 for RGB
+
+    @return A zero-filled store
+     */
+    public static LargeImageStore allocate(long width, long height, int channels) {
+        long total = checkSize(width, height, channels);
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(total)];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect((int) Math.min(CHUNK_BYTES, total - i * CHUNK_BYTES));
+        }
+        return new LargeImageStore(width, height, channels, chunks, null);
+    }
+
+    /*
+    Maps a raw image file into memory
+
+    The operating system pages the samples in and out as they are used, so
+    a store can be much larger than physical memory.
+
+    @param path Raw image file
+
+    @param width Width in pixels
+
+    @param height Height in pixels
+
+    @param channels 1 for gray, 3 for RGB
+
+    @param writable true to map read-write, creating or growing the file to the right size
+
+    @return The mapped store (close it to release the file)
+
+    @throws IOException if the file cannot be opened or mapped, or is too small to read
+     */
+    public static LargeImageStore map(Path path, long width, long height, int channels, boolean writable)
+            throws IOException {
+        long total = checkSize(width, height, channels);
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), writable ? "rw" : "r");
+        try {
+            if (writable) {
+                file.setLength(total);
+            } else if (file.length() < total) {
+                throw new IOException(path + " holds " + file.length() + " bytes, expected " + total);
+            }
+            FileChannel channel = file.getChannel();
+            ByteBuffer[] chunks = new ByteBuffer[chunkCount(total)];
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = i * CHUNK_BYTES;
+                chunks[i] = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                        offset, Math.min(CHUNK_BYTES, total - offset));
+            }
+            return new LargeImageStore(width, height, channels, chunks, file);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /*
+    Copies a BufferedImage into a new off-heap store
+
+    @param image Source image
+
+    @param channels 1 to store gray, 3 to store RGB
+
+    @return The new store
+     */
+    public static LargeImageStore fromImage(BufferedImage image, int channels) {
+        LargeImageStore store = allocate(image.getWidth(), image.getHeight(), channels);
+        store.writeTile(image, 0, 0);
+        return store;
+    }
+
+    /*
+    @return Width in pixels
+     */
+    public long getWidth() {
+        return width;
+    }
+
+    /*
+    @return Height in pixels
+     */
+    public long getHeight() {
+        return height;
+    }
+
+    /*
+    @return Samples per pixel (1 or 3)
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /*
+    Reads one sample
+
+    @param x Column
+
+    @param y Row
+
+    @param channel Channel (0 for gray or red)
+
+    @return Sample value from 0 to 255
+     */
+    public int getSample(long x, long y, int channel) {
+        long offset = offsetOf(x, y) + channel;
+        return chunks[(int) (offset / CHUNK_BYTES)].get((int) (offset % CHUNK_BYTES)) & 0xFF;
+    }
+
+    /*
+    Writes one sample
+
+    @param x Column
+
+    @param y Row
+
+    @param channel Channel (0 for gray or red)
+
+    @param value Sample value from 0 to 255
+     */
+    public void setSample(long x, long y, int channel, int value) {
+        long offset = offsetOf(x, y) + channel;
+        chunks[(int) (offset / CHUNK_BYTES)].put((int) (offset % CHUNK_BYTES), (byte) value);
+    }
+
+    /*
+    Copies part of a row into an array
+
+    @param y Row
+
+    @param x First column
+
+    @param pixels Number of pixels to copy
+
+    @param dst Destination array (pixels x channels bytes)
+
+    @param dstOffset Where in dst the first sample goes
+     */
+    public void readRow(long y, long x, int pixels, byte[] dst, int dstOffset) {
+        checkSpan(x, y, pixels);
+        transfer(offsetOf(x, y), dst, dstOffset, pixels * channels, false);
+    }
+
+    /*
+    Copies an array into part of a row
+
+    @param y Row
+
+    @param x First column
+
+    @param pixels Number of pixels to copy
+
+    @param src Source array (pixels x channels bytes)
+
+    @param srcOffset Where in src the first sample is
+     */
+    public void writeRow(long y, long x, int pixels, byte[] src, int srcOffset) {
+        checkSpan(x, y, pixels);
+        transfer(offsetOf(x, y), src, srcOffset, pixels * channels, true);
+    }
+
+    /*
+    Copies a region into a new BufferedImage
+
+    @param x Left column
+
+    @param y Top row
+
+    @param tileWidth Width of the region
+
+    @param tileHeight Height of the region
+
+    @return TYPE_BYTE_GRAY or TYPE_3BYTE_BGR image of the region
+     */
+    public BufferedImage readTile(long x, long y, int tileWidth, int tileHeight) {
+        checkSpan(x, y, tileWidth);
+        checkSpan(x, y + tileHeight - 1, tileWidth);
+        BufferedImage tile = new BufferedImage(tileWidth, tileHeight,
+                channels == 1 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR);
+        byte[] samples = ((DataBufferByte) tile.getRaster().getDataBuffer()).getData();
+        int rowBytes = tileWidth * channels;
+        for (int row = 0; row < tileHeight; row++) {
+            readRow(y + row, x, tileWidth, samples, row * rowBytes);
+        }
+        if (channels == 3) {
+            swapRedBlue(samples); // Stored RGB, BufferedImage wants BGR
+        }
+        return tile;
+    }
+
+    /*
+    Copies a BufferedImage into a region of the store
+
+    @param tile Image to copy (any type; converted to gray or RGB as needed)
+
+    @param x Left column of the region
+
+    @param y Top row of the region
+     */
+    public void writeTile(BufferedImage tile, long x, long y) {
+        int tileWidth = tile.getWidth();
+        int tileHeight = tile.getHeight();
+        checkSpan(x, y, tileWidth);
+        checkSpan(x, y + tileHeight - 1, tileWidth);
+
+        int[] argb = new int[tileWidth];
+        byte[] row = new byte[tileWidth * channels];
+        for (int r = 0; r < tileHeight; r++) {
+            tile.getRGB(0, r, tileWidth, 1, argb, 0, tileWidth);
+            for (int i = 0; i < tileWidth; i++) {
+                int rgb = argb[i];
+                if (channels == 1) {
+                    // Same weights as the usual luma conversion
+                    row[i] = (byte) ((((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150
+                            + (rgb & 0xFF) * 29) >> 8);
+                } else {
+                    row[i * 3] = (byte) (rgb >> 16);
+                    row[i * 3 + 1] = (byte) (rgb >> 8);
+                    row[i * 3 + 2] = (byte) rgb;
+                }
+            }
+            writeRow(y + r, x, tileWidth, row, 0);
+        }
+    }
+
+    /*
+    Writes changes of a mapped store back to its file and releases it
+
+    Direct (non-mapped) chunks are freed by the garbage collector once the
+    store is no longer referenced.
+     */
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            for (ByteBuffer chunk : chunks) {
+                if (chunk instanceof MappedByteBuffer && !chunk.isReadOnly()) {
+                    ((MappedByteBuffer) chunk).force();
+                }
+            }
+            file.close();
+        }
+    }
+
+    /*
+    Copies bytes between the chunks and an array, crossing chunk boundaries as needed
+     */
+    private void transfer(long offset, byte[] array, int arrayOffset, int length, boolean toStore) {
+        while (length > 0) {
+            int chunkIndex = (int) (offset / CHUNK_BYTES);
+            int position = (int) (offset % CHUNK_BYTES);
+            ByteBuffer view = chunks[chunkIndex].duplicate();
+            int count = Math.min(length, view.capacity() - position);
+            view.position(position);
+            if (toStore) {
+                view.put(array, arrayOffset, count);
+            } else {
+                view.get(array, arrayOffset, count);
+            }
+            offset += count;
+            arrayOffset += count;
+            length -= count;
+        }
+    }
+
+    private long offsetOf(long x, long y) {
+        return (y * width + x) * channels;
+    }
+
+    private void checkSpan(long x, long y, int pixels) {
+        if (x < 0 || y < 0 || pixels < 0 || y >= height || x + pixels > width) {
+            throw new IndexOutOfBoundsException("Region outside the " + width + " x " + height + " image: ("
+                    + x + ", " + y + ") + " + pixels);
+        }
+    }
+
+    private static long checkSize(long width, long height, int channels) {
+        if (width < 1 || height < 1 || (channels != 1 && channels != 3)) {
+            throw new IllegalArgumentException("Need a positive size and 1 or 3 channels: "
+                    + width + " x " + height + " x " + channels);
+        }
+        if (width * channels > Integer.MAX_VALUE / 4) {
+            // Rows are still moved through byte arrays
+            throw new IllegalArgumentException("Rows this wide are not supported: " + width);
+        }
+        return width * height * channels;
+    }
+
+    private static int chunkCount(long total) {
+        return (int) ((total + CHUNK_BYTES - 1) / CHUNK_BYTES);
+    }
+
+    private static void swapRedBlue(byte[] samples) {
+        for (int i = 0; i + 2 < samples.length; i += 3) {
+            byte red = samples[i];
+            samples[i] = samples[i + 2];
+            samples[i + 2] = red;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package noiseremoving;
+
+import java.util.Arrays; // For sorting samples when computing percentiles
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+LatencyRecorder Class - Rolling latency percentiles and throughput
+
+Keeps the most recent request latencies in a fixed-size ring buffer, so
+memory use stays constant however long the service runs. Percentiles are
+computed on demand by sorting a copy of the ring, which is cheap for the
+few thousand samples kept and only happens when metrics are requested.
+
+All methods are synchronized; the recorder is shared by every worker.
+ */
+public class LatencyRecorder {
+
+    private final long[] latencies;   // Ring of recent latencies in nanoseconds
+    private final long[] finishTimes; // When each recent request finished (System.nanoTime)
+    private int next;                 // Ring position of the next sample
+    private int size;                 // Number of valid samples in the ring
+
+    private final long startTime;     // When recording started
+    private long completed;           // Requests recorded since start
+
+    /*
+    Constructor
+
+    @param capacity Number of recent samples kept for percentiles
+     */
+    public LatencyRecorder(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        this.latencies = new long[capacity];
+        this.finishTimes = new long[capacity];
+        this.startTime = System.nanoTime();
+    }
+
+    /*
+    Records one finished request
+
+    @param latencyNanos How long the request took in nanoseconds
+     */
+    public synchronized void record(long latencyNanos) {
+        latencies[next] = latencyNanos;
+        finishTimes[next] = System.nanoTime();
+        next = (next + 1) % latencies.length;
+        size = Math.min(size + 1, latencies.length);
+        completed++;
+    }
+
+    /*
+    Gets the number of requests recorded since start
+
+    @return Completed request count
+     */
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    /*
+    Gets a latency percentile over the recent samples
+
+    @param percentile Value from 0 to 100 (50 is the median)
+
+    @return Latency in milliseconds, or 0 if nothing has been recorded
+     */
+    public synchronized double getPercentileMillis(double percentile) {
+        if (size == 0) {
+            return 0.0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        index = Math.max(0, Math.min(size - 1, index));
+        return sorted[index] / 1_000_000.0;
+    }
+
+    /*
+    Gets the recent throughput, measured over the samples in the ring
+
+    @return Requests per second (0 if fewer than two samples)
+     */
+    public synchronized double getRecentThroughput() {
+        if (size < 2) {
+            return 0.0;
+        }
+        int newest = (next - 1 + latencies.length) % latencies.length;
+        int oldest = size < latencies.length ? 0 : next;
+        long span = finishTimes[newest] - finishTimes[oldest];
+        return span <= 0 ? 0.0 : (size - 1) * 1e9 / span;
+    }
+
+    /*
+    Gets the average throughput since recording started
+
+    @return Requests per second
+     */
+    public synchronized double getOverallThroughput() {
+        long elapsed = System.nanoTime() - startTime;
+        return elapsed <= 0 ? 0.0 : completed * 1e9 / elapsed;
+    }
+}
@@ -0,0 +1,876 @@
+package noiseremoving;
+
+import java.awt.Rectangle;              // Dirty regions for refilter()
+import java.awt.image.BufferedImage;   // Source and destination images
+import java.awt.image.ColorModel;      // For creating destinations of any image type
+import java.awt.image.ComponentSampleModel;         // Layout of interleaved byte rasters
+import java.awt.image.DataBuffer;                   // Raw sample storage of a raster
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;                       // Raw (undecoded colour) JPEG samples
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel; // Layout of packed int rasters
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;   // Band tasks for applyParallel()
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+MedianFilterEngine Class - Stateless median filter that is safe to share
+
+The engine holds no per-image state. Everything it needs comes in through
+the arguments of apply(), and all temporary memory comes from a per-thread
+FilterScratch object. One engine (usually getShared()) can therefore be
+used by any number of threads at the same time, as long as each thread
+writes to its own destination image.
+
+The filter itself is the same as the original ImageProcess.cleanNoise():
+- Every pixel with a complete window is replaced by the per-channel median
+- Border pixels without a complete window are copied unchanged, unless
+  FilterOptions.getBorderMode() asks for them to be filtered (see
+  BorderFilter)
+
+apply() also supports the GATED, ADAPTIVE, PYRAMID and SKIP modes of
+FilterMode (see ImpulseFilters and PyramidDenoiser); the raw-sample methods
+always run the FULL median and copy the border.
+
+The window's shape and centre weight (see KernelShape) are compiled into
+a KernelTable once per call, before any pixel is filtered.
+
+TYPE_BYTE_GRAY, TYPE_3BYTE_BGR, TYPE_INT_RGB and TYPE_INT_ARGB images are
+filtered directly on their sample arrays by PixelKernels. Every other image
+type goes through the general getRGB()/setRGB() row path.
+ */
+public final class MedianFilterEngine {
+
+    // Changes whenever the engine's output for the same input and options
+    // changes, so cached results from older versions are not reused
+    public static final String VERSION = "4";
+
+    // Samples above which medianOf() selects instead of sorting (insertion
+    // sort grows with the square of the window area)
+    static final int SELECT_THRESHOLD = 64;
+
+    // Bytes per strip in applyLarge() (rows are copied on-heap a strip at a time)
+    private static final int STRIP_BYTES = 16 * 1024 * 1024;
+
+    // Engine shared by ImageProcess and the batch runners
+    private static final MedianFilterEngine SHARED = new MedianFilterEngine();
+
+    // Per-thread scratch memory, reused across every image a thread filters
+    private static final ThreadLocal<FilterScratch> SCRATCH = new ThreadLocal<FilterScratch>() {
+        @Override
+        protected FilterScratch initialValue() {
+            return new FilterScratch();
+        }
+    };
+
+    /*
+    Gets the engine instance shared by the whole application
+
+    @return The shared engine
+     */
+    public static MedianFilterEngine getShared() {
+        return SHARED;
+    }
+
+    /*
+    Creates an empty destination image matching the source image
+
+    Standard types are created by type so they keep their exact layout.
+    TYPE_CUSTOM and indexed images are built from the source's own colour
+    model instead, so they get the same palette as the source (creating them
+    by type alone fails or loses the palette).
+
+    @param src Image that is going to be filtered
+
+    @return New image with the same size, colour model and type as the source
+     */
+    public BufferedImage createDestination(BufferedImage src) {
+        return createDestination(src, src.getWidth(), src.getHeight());
+    }
+
+    /*
+    Creates an empty image of the same type as another, at a different size
+
+    @param src Image whose type and colour model to copy
+
+    @param width Width of the new image
+
+    @param height Height of the new image
+
+    @return New image with the given size and the source's colour model and type
+     */
+    BufferedImage createDestination(BufferedImage src, int width, int height) {
+        int type = src.getType();
+        if (type != BufferedImage.TYPE_CUSTOM
+                && type != BufferedImage.TYPE_BYTE_INDEXED
+                && type != BufferedImage.TYPE_BYTE_BINARY) {
+            return new BufferedImage(width, height, type);
+        }
+        ColorModel colorModel = src.getColorModel();
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(width, height);
+        return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+    }
+
+    /*
+    Applies the median filter to src and writes the result into dst
+
+    The source image is only read, so several threads may filter the same
+    source at once as long as each one has its own destination.
+
+    @param src Image to filter (not modified)
+
+    @param dst Image that receives the result, must be the same size as src
+
+    @param options Filter settings
+
+    @return Which pixels the filter changed
+     */
+    public FilterResult apply(BufferedImage src, BufferedImage dst, FilterOptions options) {
+        if (src == null || dst == null || options == null) {
+            throw new IllegalArgumentException("Source, destination and options are required");
+        }
+        if (src == dst) {
+            throw new IllegalArgumentException("Source and destination must be different images");
+        }
+
+        int width = src.getWidth();   // Number of pixels horizontally
+        int height = src.getHeight(); // Number of pixels vertically
+
+        if (dst.getWidth() != width || dst.getHeight() != height) {
+            throw new IllegalArgumentException("Destination size " + dst.getWidth() + " x " + dst.getHeight()
+                    + " does not match source size " + width + " x " + height);
+        }
+
+        // AUTO picks the mode and window size from a quick noise estimate
+        if (options.getMode() == FilterMode.AUTO) {
+            NoiseEstimator.Estimate estimate = NoiseEstimator.estimate(src);
+            FilterResult result = apply(src, dst, estimate.applyTo(options));
+            result.setNoiseEstimate(estimate);
+            return result;
+        }
+
+        int window = options.getWindowSize();
+
+        FilterResult result = new FilterResult();
+
+        // Images too small for a single full window are copied unchanged
+        if (width < window || height < window) {
+            copyRows(src, dst, 0, height);
+            return result;
+        }
+
+        switch (options.getMode()) {
+            case SKIP:
+                copyRows(src, dst, 0, height);
+                return result;
+            case ADAPTIVE:
+                return ImpulseFilters.adaptive(src, dst, window);
+            case PYRAMID:
+                return PyramidDenoiser.apply(src, dst);
+            default:
+                break;
+        }
+
+        KernelTable kernel = KernelTable.of(options);
+        FilterScratch scratch = SCRATCH.get();
+        scratch.ensureSamples(kernel.size);
+
+        if (!applyNative(src, dst, kernel, options.getStrategy(), scratch, result)) {
+            applyGeneric(src, dst, kernel, scratch, result);
+        }
+        if (options.getBorderMode() != BorderMode.COPY) {
+            BorderFilter.filter(this, src, dst, options, result);
+        }
+        if (options.getMode() == FilterMode.GATED) {
+            return ImpulseFilters.gate(src, dst, NoiseEstimator.IMPULSE_THRESHOLD);
+        }
+        return result;
+    }
+
+    /*
+    Applies every pass that the options ask for
+
+    Runs apply() and then, when options.getMaxPasses() is above 1,
+    continuePasses(). In AUTO mode the noise is estimated once and the
+    chosen settings are used for every pass. Callers that filter whole
+    images one per thread (archive entries, server requests, animation
+    frames) use this instead of apply().
+
+    @param src Image to filter (not modified)
+
+    @param dst Image that receives the result, must be the same size as src
+
+    @param options Filter settings
+
+    @return What changed from src to the final result
+     */
+    public FilterResult applyAll(BufferedImage src, BufferedImage dst, FilterOptions options) {
+        if (src != null && options != null && options.getMode() == FilterMode.AUTO) {
+            NoiseEstimator.Estimate estimate = NoiseEstimator.estimate(src);
+            FilterResult result = applyAll(src, dst, estimate.applyTo(options));
+            result.setNoiseEstimate(estimate);
+            return result;
+        }
+        FilterResult result = apply(src, dst, options); // Also reports bad arguments
+        return options.getMaxPasses() > 1 ? continuePasses(src, dst, options) : result;
+    }
+
+    /*
+    Runs further median passes over a first pass result
+
+    Only the tiles that changed in the previous pass, and their neighbours,
+    are filtered again (see IterativeFilter). Passes stop once one changes
+    no pixel or options.getMaxPasses() passes have run, counting the first.
+
+    @param src Original image (not modified)
+
+    @param dst Result of one pass of src with the same options; receives the final result
+
+    @param options Filter settings
+
+    @return What changed from src to the final result, and how many passes ran
+     */
+    public FilterResult continuePasses(BufferedImage src, BufferedImage dst, FilterOptions options) {
+        if (src == null || dst == null || options == null) {
+            throw new IllegalArgumentException("Source, destination and options are required");
+        }
+        if (dst.getWidth() != src.getWidth() || dst.getHeight() != src.getHeight()) {
+            throw new IllegalArgumentException("Destination size " + dst.getWidth() + " x " + dst.getHeight()
+                    + " does not match source size " + src.getWidth() + " x " + src.getHeight());
+        }
+        if (options.getMode() == FilterMode.AUTO) {
+            NoiseEstimator.Estimate estimate = NoiseEstimator.estimate(src);
+            FilterResult result = IterativeFilter.continuePasses(this, src, dst, estimate.applyTo(options));
+            result.setNoiseEstimate(estimate);
+            return result;
+        }
+        return IterativeFilter.continuePasses(this, src, dst, options);
+    }
+
+    /*
+    Refilters only the regions of an image that were edited
+
+    dst holds the result of filtering src before it was edited. Each dirty
+    rectangle, grown by the distance a change can reach (the window radius),
+    is filtered again from src into dst; the rest of dst is left alone, and
+    ends up the same as if the whole edited image had been filtered. PYRAMID
+    mode, AUTO mode (its estimate) and multi-pass options depend on the
+    whole image, so for those the whole image is filtered again.
+
+    @param src Edited image (not modified)
+
+    @param dst Previous result, updated in place
+
+    @param options The settings the previous result was made with
+
+    @param dirty Rectangles of src that were edited
+
+    @return The changes from src inside the refiltered regions (the whole image when it was refiltered)
+     */
+    public FilterResult refilter(BufferedImage src, BufferedImage dst, FilterOptions options,
+                                 List<Rectangle> dirty) {
+        if (src == null || dst == null || options == null || dirty == null) {
+            throw new IllegalArgumentException("Source, destination, options and regions are required");
+        }
+        if (src == dst) {
+            throw new IllegalArgumentException("Source and destination must be different images");
+        }
+        if (dst.getWidth() != src.getWidth() || dst.getHeight() != src.getHeight()) {
+            throw new IllegalArgumentException("Destination size " + dst.getWidth() + " x " + dst.getHeight()
+                    + " does not match source size " + src.getWidth() + " x " + src.getHeight());
+        }
+        if (options.getMode() == FilterMode.PYRAMID || options.getMode() == FilterMode.AUTO
+                || options.getMaxPasses() > 1) {
+            return applyAll(src, dst, options);
+        }
+
+        int reach = DirtyRegions.reach(options);
+        FilterResult result = new FilterResult();
+        for (Rectangle region : DirtyRegions.merge(dirty, reach, src.getWidth(), src.getHeight())) {
+            Raster filtered = DirtyRegions.filterRegion(this, src, options, region, reach);
+            dst.getRaster().setRect(filtered);
+            DirtyRegions.compare(src.getRaster(), filtered, region, result);
+        }
+        return result;
+    }
+
+    /*
+    Applies the median filter with large images split into row bands
+
+    Each band is filtered as a separate fork/join task, on its own copy of
+    its rows plus the radius rows above and below it, so the result is the
+    same as apply(). Called from a ForkJoinPool worker (such as a
+    BatchScheduler job) the bands go into that pool, where idle workers
+    steal them; otherwise they run in the common pool. Images smaller than
+    two bands (see FilterOptions.getBandPixels()), and types without a
+    native kernel, are filtered by apply().
+
+    @param src Image to filter (not modified)
+
+    @param dst Image that receives the result, must be the same size and type as src
+
+    @param options Filter settings
+
+    @return Which pixels the filter changed
+     */
+    public FilterResult applyParallel(BufferedImage src, BufferedImage dst, FilterOptions options) {
+        if (src == null || dst == null || options == null || src == dst
+                || dst.getWidth() != src.getWidth() || dst.getHeight() != src.getHeight()
+                || dst.getType() != src.getType()) {
+            return apply(src, dst, options); // Reports the problem
+        }
+        if (options.getMode() == FilterMode.AUTO) {
+            // Estimated once for the whole image, so every band gets the same settings
+            NoiseEstimator.Estimate estimate = NoiseEstimator.estimate(src);
+            FilterResult result = applyParallel(src, dst, estimate.applyTo(options));
+            result.setNoiseEstimate(estimate);
+            return result;
+        }
+        int type = src.getType();
+        if (type != BufferedImage.TYPE_BYTE_GRAY && type != BufferedImage.TYPE_3BYTE_BGR
+                && type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) {
+            return apply(src, dst, options);
+        }
+
+        int width = src.getWidth();
+        int height = src.getHeight();
+        if (options.getBandPixels() == 0 || options.getMode() == FilterMode.ADAPTIVE
+                || options.getMode() == FilterMode.PYRAMID) {
+            return apply(src, dst, options); // Adaptive windows and pyramid levels reach past a band's halo
+        }
+        int bandRows = Math.max(options.getWindowSize(), options.getBandPixels() / width);
+        if (height < 2 * bandRows || width < options.getWindowSize()) {
+            return apply(src, dst, options);
+        }
+
+        // A short last band joins the one before it: a band shorter than the window
+        // would be copied unchanged, leaving its rows unfiltered when the border is not copied
+        final List<BandTask> bands = new ArrayList<>();
+        int top = 0;
+        for (; top + 2 * bandRows <= height; top += bandRows) {
+            bands.add(new BandTask(src, dst, options, top, top + bandRows));
+        }
+        bands.add(new BandTask(src, dst, options, top, height));
+        if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(bands);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(bands);
+                }
+            });
+        }
+
+        FilterResult result = new FilterResult();
+        for (BandTask band : bands) {
+            result.add(band.result, band.haloTop);
+        }
+        return result;
+    }
+
+    /*
+    Filters rows [top, bottom) of an image for applyParallel()
+     */
+    private static final class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L; // Never serialized; keeps -Xlint:serial quiet
+
+        private final BufferedImage src;
+        private final BufferedImage dst;
+        private final FilterOptions options;
+        private final int top;
+        private final int bottom;
+        final int haloTop;       // First row copied, including the halo
+        FilterResult result;     // Changes in rows [top, bottom) only; row 0 is haloTop
+
+        BandTask(BufferedImage src, BufferedImage dst, FilterOptions options, int top, int bottom) {
+            this.src = src;
+            this.dst = dst;
+            this.options = options;
+            this.top = top;
+            this.bottom = bottom;
+            this.haloTop = Math.max(0, top - options.getRadius());
+        }
+
+        @Override
+        protected void compute() {
+            // Up to radius rows of halo above and below give every row of the band its full
+            // window. At the first and last band the halo stops at the image edge, so the
+            // band's own edge rows are the image's and get its border mode
+            int haloBottom = Math.min(src.getHeight(), bottom + options.getRadius());
+            int width = src.getWidth();
+            BufferedImage in = new BufferedImage(width, haloBottom - haloTop, src.getType());
+            BufferedImage out = new BufferedImage(width, haloBottom - haloTop, src.getType());
+
+            Object row = null;
+            for (int y = haloTop; y < haloBottom; y++) {
+                row = src.getRaster().getDataElements(0, y, width, 1, row);
+                in.getRaster().setDataElements(0, y - haloTop, width, 1, row);
+            }
+            result = SHARED.apply(in, out, options);
+            for (int y = top; y < bottom; y++) {
+                row = out.getRaster().getDataElements(0, y - haloTop, width, 1, row);
+                dst.getRaster().setDataElements(0, y, width, 1, row);
+            }
+
+            // A copied border leaves the halo rows unchanged. Other border modes filter
+            // them too, but they belong to the neighbouring bands, so only this band's
+            // rows are counted
+            if (options.getBorderMode() != BorderMode.COPY) {
+                result = new FilterResult();
+                DirtyRegions.compare(in.getRaster(), out.getRaster(),
+                        new Rectangle(0, top - haloTop, width, bottom - top), result);
+            }
+        }
+    }
+
+    /*
+    Rejects settings that the raw-sample methods cannot honour
+
+    applyBytes(), applyLarge() and applyYCbCr() run one full median pass
+    and copy the border; the other modes, further passes and border modes
+    only work on BufferedImages.
+
+    @param options Filter settings
+     */
+    private static void requireRawOptions(FilterOptions options) {
+        if (options.getMode() != FilterMode.FULL || options.getMaxPasses() > 1
+                || options.getBorderMode() != BorderMode.COPY) {
+            throw new IllegalArgumentException("Raw samples are filtered with one full pass and a copied border,"
+                    + " not " + options);
+        }
+    }
+
+    /*
+    Applies the median filter to a raw frame of interleaved 8-bit samples
+
+    Used for frames that never become a BufferedImage, such as the raw
+    RGB24/GRAY8 video frames handled by RawFramePipe.
+
+    @param src Source samples, rows packed one after another (not modified)
+
+    @param dst Destination samples, same size as src
+
+    @param width Frame width in pixels
+
+    @param height Frame height in pixels
+
+    @param channels Samples per pixel (1 for gray, 3 for RGB or BGR)
+
+    @param options Filter settings
+
+    @return Which pixels the filter changed
+     */
+    public FilterResult applyBytes(byte[] src, byte[] dst, int width, int height, int channels,
+                                   FilterOptions options) {
+        long frameBytes = (long) width * height * channels;
+        if (channels < 1 || channels > 3 || src.length < frameBytes || dst.length < frameBytes) {
+            throw new IllegalArgumentException("Frame arrays are too small for " + width + " x " + height
+                    + " x " + channels);
+        }
+
+        requireRawOptions(options);
+
+        FilterResult result = new FilterResult();
+        int window = options.getWindowSize();
+        if (width < window || height < window) {
+            System.arraycopy(src, 0, dst, 0, (int) frameBytes);
+            return result;
+        }
+
+        KernelTable kernel = KernelTable.of(options);
+        FilterScratch scratch = SCRATCH.get();
+        scratch.ensureSamples(kernel.size);
+        PixelKernels.filterBytes(src, dst, width, height, width * channels, channels,
+                kernel, options.getStrategy(), scratch, result);
+        return result;
+    }
+
+    /*
+    Median filter between two off-heap image stores
+
+    The image is filtered in horizontal strips of about STRIP_BYTES: each
+    strip's rows, plus the rows above and below that its windows reach, are
+    copied into reused arrays, filtered with the same byte kernel as
+    in-heap images, and the strip's rows are copied to the destination.
+    Heap use therefore depends only on the row width, not on the image size.
+
+    @param src Store to filter (not modified)
+
+    @param dst Store for the result, same size and channels as src
+
+    @param options Filter settings
+
+    @return Number of pixels whose value changed
+     */
+    public long applyLarge(LargeImageStore src, LargeImageStore dst, FilterOptions options) {
+        if (src == null || dst == null || options == null) {
+            throw new IllegalArgumentException("Source, destination and options are required");
+        }
+        if (src.getWidth() != dst.getWidth() || src.getHeight() != dst.getHeight()
+                || src.getChannels() != dst.getChannels()) {
+            throw new IllegalArgumentException("Source and destination stores must have the same size and channels");
+        }
+        requireRawOptions(options);
+
+        int width = (int) src.getWidth();   // LargeImageStore keeps rows array-sized
+        long height = src.getHeight();
+        int channels = src.getChannels();
+        int rowBytes = width * channels;
+        int radius = options.getRadius();
+        int window = options.getWindowSize();
+
+        // Rows without a complete window (and images smaller than the window) are copied
+        byte[] row = new byte[rowBytes];
+        long borderRows = width < window || height < window ? height : radius;
+        for (long y = 0; y < borderRows; y++) {
+            src.readRow(y, 0, width, row, 0);
+            dst.writeRow(y, 0, width, row, 0);
+            src.readRow(height - 1 - y, 0, width, row, 0);
+            dst.writeRow(height - 1 - y, 0, width, row, 0);
+        }
+        if (width < window || height < window) {
+            return 0;
+        }
+
+        int stripRows = (int) Math.max(1, Math.min(height - 2 * radius, STRIP_BYTES / rowBytes));
+        if ((long) (stripRows + 2 * radius) * rowBytes > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Rows too wide for a " + window + " x " + window + " window");
+        }
+        byte[] in = new byte[(stripRows + 2 * radius) * rowBytes];
+        byte[] out = new byte[in.length];
+        KernelTable kernel = KernelTable.of(options);
+        FilterScratch scratch = SCRATCH.get();
+        scratch.ensureSamples(kernel.size);
+
+        long changed = 0;
+        for (long top = radius; top < height - radius; top += stripRows) {
+            int rows = (int) Math.min(stripRows, height - radius - top);
+            int bufferRows = rows + 2 * radius;
+            for (int r = 0; r < bufferRows; r++) {
+                src.readRow(top - radius + r, 0, width, in, r * rowBytes);
+            }
+            FilterResult strip = new FilterResult();
+            PixelKernels.filterBytes(in, out, width, bufferRows, rowBytes, channels, kernel,
+                    options.getStrategy(), scratch, strip);
+            for (int r = 0; r < rows; r++) {
+                dst.writeRow(top + r, 0, width, out, (radius + r) * rowBytes);
+            }
+            changed += strip.getChangedPixels();
+        }
+        return changed;
+    }
+
+    /*
+    Applies the median filter to a raw YCbCr (or gray) JPEG raster
+
+    Y is median filtered everywhere; Cb and Cr are only filtered at pixels
+    where Y changed by at least impulseThreshold. See PixelKernels.filterLuma.
+
+    @param src Raster read with ImageReader.readRaster() (not modified)
+
+    @param dst Raster with the same layout as src that receives the result
+
+    @param options Filter settings
+
+    @param impulseThreshold Smallest Y change that marks a pixel as an impulse
+
+    @return Which pixels the filter changed (judged by their Y value)
+     */
+    public FilterResult applyYCbCr(Raster src, WritableRaster dst, FilterOptions options, int impulseThreshold) {
+        if (!(src.getSampleModel() instanceof ComponentSampleModel)
+                || !(src.getDataBuffer() instanceof DataBufferByte)
+                || src.getDataBuffer().getNumBanks() != 1
+                || src.getSampleModelTranslateX() != 0 || src.getSampleModelTranslateY() != 0) {
+            throw new IllegalArgumentException("Only single-bank interleaved byte rasters are supported");
+        }
+        if (!src.getSampleModel().equals(dst.getSampleModel())
+                || dst.getSampleModelTranslateX() != 0 || dst.getSampleModelTranslateY() != 0) {
+            throw new IllegalArgumentException("Destination raster must have the same layout as the source");
+        }
+        requireRawOptions(options);
+
+        ComponentSampleModel sampleModel = (ComponentSampleModel) src.getSampleModel();
+        byte[] srcData = ((DataBufferByte) src.getDataBuffer()).getData();
+        byte[] dstData = ((DataBufferByte) dst.getDataBuffer()).getData();
+
+        // Start from a copy so the border and unflagged chroma are already in place
+        System.arraycopy(srcData, 0, dstData, 0, srcData.length);
+
+        FilterResult result = new FilterResult();
+        int window = options.getWindowSize();
+        if (src.getWidth() < window || src.getHeight() < window) {
+            return result;
+        }
+
+        KernelTable kernel = KernelTable.of(options);
+        FilterScratch scratch = SCRATCH.get();
+        scratch.ensureSamples(kernel.size);
+        PixelKernels.filterLuma(srcData, dstData, src.getWidth(), src.getHeight(),
+                sampleModel.getScanlineStride(), sampleModel.getPixelStride(), sampleModel.getBandOffsets(),
+                kernel, impulseThreshold, scratch, result);
+        return result;
+    }
+
+    /*
+    Runs a PixelKernels kernel when both images use one of the supported layouts
+
+    @param src Source image
+
+    @param dst Destination image
+
+    @param kernel Compiled window shape
+
+    @param strategy How each median is found
+
+    @param scratch Per-thread buffers
+
+    @param result Receives the changed rows
+
+    @return true if the image was filtered, false if the general path is needed
+     */
+    private static boolean applyNative(BufferedImage src, BufferedImage dst, KernelTable kernel,
+                                       MedianStrategy strategy, FilterScratch scratch, FilterResult result) {
+        int type = src.getType();
+        if (type != dst.getType() || !isPlainRaster(src) || !isPlainRaster(dst)) {
+            return false;
+        }
+
+        int width = src.getWidth();
+        int height = src.getHeight();
+        WritableRaster srcRaster = src.getRaster();
+        WritableRaster dstRaster = dst.getRaster();
+
+        switch (type) {
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_3BYTE_BGR: {
+                int stride = ((ComponentSampleModel) srcRaster.getSampleModel()).getScanlineStride();
+                if (stride != ((ComponentSampleModel) dstRaster.getSampleModel()).getScanlineStride()) {
+                    return false;
+                }
+                int channels = type == BufferedImage.TYPE_BYTE_GRAY ? 1 : 3;
+                PixelKernels.filterBytes(
+                        ((DataBufferByte) srcRaster.getDataBuffer()).getData(),
+                        ((DataBufferByte) dstRaster.getDataBuffer()).getData(),
+                        width, height, stride, channels, kernel, strategy, scratch, result);
+                return true;
+            }
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB: {
+                int stride = ((SinglePixelPackedSampleModel) srcRaster.getSampleModel()).getScanlineStride();
+                if (stride != ((SinglePixelPackedSampleModel) dstRaster.getSampleModel()).getScanlineStride()) {
+                    return false;
+                }
+                PixelKernels.filterPacked(
+                        ((DataBufferInt) srcRaster.getDataBuffer()).getData(),
+                        ((DataBufferInt) dstRaster.getDataBuffer()).getData(),
+                        width, height, stride, kernel, strategy, scratch, result);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    /*
+    Checks that an image's samples start at the beginning of a single array
+
+    Sub-images share their parent's array at an offset; those (rare) images
+    use the general path rather than complicating the kernels.
+
+    @param image Image to check
+
+    @return true if the raster can be indexed from element 0
+     */
+    private static boolean isPlainRaster(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        SampleModel sampleModel = raster.getSampleModel();
+        return raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && buffer.getNumBanks() == 1
+                && buffer.getOffset() == 0
+                && sampleModel.getWidth() == image.getWidth()
+                && sampleModel.getHeight() == image.getHeight();
+    }
+
+    /*
+    General path for any image type, working on ARGB rows from getRGB()
+
+    @param src Source image
+
+    @param dst Destination image
+
+    @param kernel Compiled window shape
+
+    @param scratch Per-thread buffers
+
+    @param result Receives the changed rows
+     */
+    private static void applyGeneric(BufferedImage src, BufferedImage dst, KernelTable kernel,
+                                     FilterScratch scratch, FilterResult result) {
+        int radius = kernel.radius;
+        int window = 2 * radius + 1;
+        int width = src.getWidth();
+        int height = src.getHeight();
+        scratch.ensureRows(window, width);
+
+        // Top and bottom border rows have no complete window
+        copyRows(src, dst, 0, radius);
+        copyRows(src, dst, height - radius, height);
+
+        // Load the first window of rows; row y is kept in rows[y % window]
+        for (int y = 0; y < window - 1; y++) {
+            src.getRGB(0, y, width, 1, scratch.rows[y % window], 0, width);
+        }
+
+        for (int y = radius; y < height - radius; y++) {
+            // Slide the window down by reading the single new bottom row
+            int newRow = y + radius;
+            src.getRGB(0, newRow, width, 1, scratch.rows[newRow % window], 0, width);
+
+            filterRow(scratch, y, width, kernel, result);
+            dst.setRGB(0, y, width, 1, scratch.outRow, 0, width);
+        }
+    }
+
+    /*
+    Filters one row using the rows currently held in the scratch window
+
+    @param scratch Per-thread buffers holding the window rows
+
+    @param y Row being filtered
+
+    @param width Image width
+
+    @param kernel Compiled window shape
+
+    @param result Receives the changed pixels of this row
+     */
+    private static void filterRow(FilterScratch scratch, int y, int width, KernelTable kernel,
+                                  FilterResult result) {
+        int radius = kernel.radius;
+        int window = 2 * radius + 1;
+        int[] spanFrom = kernel.spanFrom;
+        int[] spanTo = kernel.spanTo;
+        int[][] rows = scratch.rows;
+        int[] centreRow = rows[y % window];
+        int[] out = scratch.outRow;
+        int[] red = scratch.samples[0];
+        int[] green = scratch.samples[1];
+        int[] blue = scratch.samples[2];
+
+        // Left and right border columns are copied unchanged
+        for (int x = 0; x < radius; x++) {
+            out[x] = centreRow[x];
+            out[width - 1 - x] = centreRow[width - 1 - x];
+        }
+
+        int changed = 0;
+        int firstChanged = 0;
+        int lastChanged = 0;
+
+        for (int x = radius; x < width - radius; x++) {
+            int count = 0;
+
+            // Collect the channel values of every pixel in the kernel's row spans
+            for (int dy = -radius; dy <= radius; dy++) {
+                int[] row = rows[(y + dy) % window];
+                for (int dx = spanFrom[dy + radius]; dx <= spanTo[dy + radius]; dx++) {
+                    int rgb = row[x + dx];
+                    red[count] = (rgb >> 16) & 0xFF;
+                    green[count] = (rgb >> 8) & 0xFF;
+                    blue[count] = rgb & 0xFF;
+                    count++;
+                }
+            }
+            // Extra copies of the centre for a weighted kernel
+            int centre = centreRow[x];
+            for (int k = 0; k < kernel.centreExtra; k++) {
+                red[count] = (centre >> 16) & 0xFF;
+                green[count] = (centre >> 8) & 0xFF;
+                blue[count] = centre & 0xFF;
+                count++;
+            }
+
+            // Keep the centre pixel's alpha and replace its colour with the medians
+            out[x] = (centreRow[x] & 0xFF000000)
+                    | (medianOf(red, count) << 16)
+                    | (medianOf(green, count) << 8)
+                    | medianOf(blue, count);
+            if (out[x] != centreRow[x]) {
+                if (changed++ == 0) {
+                    firstChanged = x;
+                }
+                lastChanged = x;
+            }
+        }
+        result.addRow(y, firstChanged, lastChanged, changed);
+    }
+
+    /*
+    Finds the median of the first n values of an array
+
+    Uses insertion sort, which is faster than QuickSort for the handful of
+    values in a median window, and leaves those values sorted. Windows of
+    more than SELECT_THRESHOLD samples (9x9 and up) use the linear-time
+    SortArray.median() instead, which only puts the median in its place.
+    The array is reordered in place.
+
+    @param values Array holding the samples
+
+    @param n Number of samples to use
+
+    @return The middle value after sorting
+     */
+    static int medianOf(int[] values, int n) {
+        if (n > SELECT_THRESHOLD) {
+            return SortArray.median(values, n);
+        }
+        for (int i = 1; i < n; i++) {
+            int value = values[i];
+            int j = i - 1;
+            while (j >= 0 && values[j] > value) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+        return values[n / 2];
+    }
+
+    /*
+    Copies a band of whole rows from src to dst unchanged
+
+    @param src Source image
+
+    @param dst Destination image
+
+    @param fromY First row to copy
+
+    @param toY Row after the last row to copy
+     */
+    private static void copyRows(BufferedImage src, BufferedImage dst, int fromY, int toY) {
+        if (fromY >= toY) {
+            return;
+        }
+        int width = src.getWidth();
+        int[] row = new int[width];
+        for (int y = fromY; y < toY; y++) {
+            src.getRGB(0, y, width, 1, row, 0, width);
+            dst.setRGB(0, y, width, 1, row, 0, width);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package noiseremoving;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+MedianStrategy Enum - How the byte and packed-int kernels find each median
+
+All strategies give exactly the same output; they only differ in speed,
+which depends on the window size and on the machine. EngineTuner times
+them and records the fastest one for each case.
+
+- INSERTION: insertion sort of the window's samples (the original method);
+             windows of more than 64 samples use linear-time selection
+- NETWORK:   fixed 19-comparison exchange network for kernels of nine
+             samples (a 3x3 square or a 5x5 cross); other kernels fall
+             back to INSERTION
+- HISTOGRAM: 256-bin histogram per channel that slides along each row
+             (Huang's algorithm); the cost per pixel grows with the window
+             height instead of its area
+
+The general getRGB() path and the JPEG plane kernel always use INSERTION.
+ */
+public enum MedianStrategy {
+    INSERTION,
+    NETWORK,
+    HISTOGRAM
+}
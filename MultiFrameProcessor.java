@@ -0,0 +1,333 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;          // Frames in flight, in frame order
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.IIOImage;        // A frame together with its metadata
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+MultiFrameProcessor Class - Filters every frame of an animated GIF or multi-page TIFF
+
+ImageIO.read() and ImageProcess.loadImage() only ever see the first frame.
+This class reads the frames one at a time with ImageReader.readAll(), which
+also returns each frame's metadata (GIF delays, disposal, offsets, TIFF
+tags), filters them in parallel on a pool of worker threads and writes
+them in order with ImageWriter.writeToSequence(), passing the metadata
+back so the animation timing and page layout are kept.
+
+GIF frames are stored as patches over the previous frame, so they are
+first composited into complete images (see GifFrameCompositor) and
+written back whole; TIFF pages are complete already.
+
+Reading and writing happen on the calling thread (readers and writers are
+not thread-safe); only the filtering is spread over the workers. At most
+maxFrames frames are decoded and not yet written at any time, so a long
+animation does not have to fit in memory.
+ */
+public class MultiFrameProcessor {
+
+    private final int threads;
+    private final int maxFrames;
+    private final FilterOptions filterOptions;
+    private final OutputOptions outputOptions;
+
+    // Frames the filter changed in the last process() call (counted by the workers)
+    private final AtomicInteger changedFrames = new AtomicInteger();
+
+    /*
+    Constructor
+
+    @param threads Number of frames filtered at the same time
+
+    @param maxFrames Largest number of frames held in memory (at least threads)
+
+    @param filterOptions Filter settings
+
+    @param outputOptions Encoder settings
+     */
+    public MultiFrameProcessor(int threads, int maxFrames, FilterOptions filterOptions,
+                               OutputOptions outputOptions) {
+        this.threads = Math.max(1, threads);
+        this.maxFrames = Math.max(this.threads, maxFrames);
+        this.filterOptions = filterOptions;
+        this.outputOptions = outputOptions;
+    }
+
+    /*
+    Checks whether a file holds more than one frame
+
+    @param imageFile Image file
+
+    @return true for animations and multi-page files
+     */
+    public static boolean isMultiFrame(File imageFile) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+            return input != null && isMultiFrame(input);
+        } catch (IOException e) {
+            return false; // Unreadable files are reported by the normal path
+        }
+    }
+
+    /*
+    Checks whether an image stream holds more than one frame
+
+    @param input Stream positioned at the start of an encoded image (not closed)
+
+    @return true for animations and multi-page images
+
+    @throws IOException if the stream cannot be read
+     */
+    static boolean isMultiFrame(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return false;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, false, true);
+            // Checking for a second frame is cheaper than counting them all
+            try {
+                reader.getWidth(1);
+                return true;
+            } catch (IndexOutOfBoundsException | IOException e) {
+                return false; // A damaged tail is left for the normal decoder to report
+            }
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /*
+    Checks whether a format can be written as a multi-frame sequence
+
+    @param format Format name such as "gif" or "tiff"
+
+    @return true if some installed writer supports sequences
+     */
+    public static boolean canWriteSequence(String format) {
+        return format != null && findSequenceWriter(format) != null;
+    }
+
+    /*
+    Filters every frame of an image file into a new multi-frame file
+
+    @param input File to read
+
+    @param output File to write (replaced if it exists)
+
+    @param format Output format name
+
+    @return Number of frames written
+
+    @throws IOException if reading or writing fails
+     */
+    public int process(File input, File output, String format) throws IOException {
+        if (findSequenceWriter(format) == null) {
+            throw new IOException("No writer can write a " + format + " sequence");
+        }
+        if (output.exists() && !output.delete()) {
+            throw new IOException("Cannot replace existing file: " + output);
+        }
+        try (ImageInputStream in = ImageIO.createImageInputStream(input);
+             ImageOutputStream out = ImageIO.createImageOutputStream(output)) {
+            if (in == null || out == null) {
+                throw new IOException("Cannot open " + input + " or " + output);
+            }
+            return process(in, out, format);
+        }
+    }
+
+    /*
+    Filters every frame of an image stream into a new multi-frame stream
+
+    Used for images that are not files, such as archive entries held in
+    memory. getChangedFrames() tells afterwards whether writing the result
+    was worth it.
+
+    @param in Stream positioned at the start of the encoded image (not closed)
+
+    @param out Stream that receives the filtered sequence (not closed)
+
+    @param format Output format name
+
+    @return Number of frames written
+
+    @throws IOException if reading or writing fails
+     */
+    public int process(ImageInputStream in, ImageOutputStream out, String format) throws IOException {
+        ImageWriter writer = findSequenceWriter(format);
+        if (writer == null) {
+            throw new IOException("No writer can write a " + format + " sequence");
+        }
+
+        changedFrames.set(0);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<IIOImage>> inFlight = new ArrayDeque<>();
+        int written = 0;
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("No reader understands the input");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, false);
+                writer.setOutput(out);
+                ImageWriteParam param = ImageWriters.createParam(writer, format, outputOptions);
+                writer.prepareWriteSequence(reader.getStreamMetadata());
+                GifFrameCompositor compositor = GifFrameCompositor.forReader(reader);
+
+                for (int index = 0; ; index++) {
+                    IIOImage frame;
+                    try {
+                        frame = reader.readAll(index, null);
+                    } catch (IndexOutOfBoundsException e) {
+                        break; // No more frames
+                    }
+                    if (compositor != null) {
+                        frame = compositor.composite(frame, writer, param); // GIF frames are patches
+                    }
+                    inFlight.addLast(pool.submit(filterTask(frame)));
+
+                    // Keep at most maxFrames decoded: write the oldest before reading on
+                    if (inFlight.size() >= maxFrames) {
+                        writeFrame(writer, inFlight.removeFirst(), param);
+                        written++;
+                    }
+                }
+                while (!inFlight.isEmpty()) {
+                    writeFrame(writer, inFlight.removeFirst(), param);
+                    written++;
+                }
+                writer.endWriteSequence();
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            pool.shutdownNow();
+            writer.dispose();
+        }
+        return written;
+    }
+
+    /*
+    Gets the number of frames the last process() call changed
+
+    @return Changed frame count (0 means the output shows the same pixels as the input)
+     */
+    public int getChangedFrames() {
+        return changedFrames.get();
+    }
+
+    /*
+    Creates the job that filters one frame on a worker
+
+    @param frame Decoded frame with its metadata
+
+    @return Job returning the filtered frame with the same metadata
+     */
+    private Callable<IIOImage> filterTask(final IIOImage frame) {
+        return new Callable<IIOImage>() {
+            @Override
+            public IIOImage call() {
+                BufferedImage source = (BufferedImage) frame.getRenderedImage();
+                MedianFilterEngine engine = MedianFilterEngine.getShared();
+                BufferedImage cleaned = ImagePool.isPoolableType(source.getType())
+                        ? ImagePool.getShared().acquire(source.getWidth(), source.getHeight(), source.getType())
+                        : engine.createDestination(source);
+                if (engine.applyAll(source, cleaned, filterOptions).isChanged()) {
+                    changedFrames.incrementAndGet();
+                }
+                return new IIOImage(cleaned, null, frame.getMetadata());
+            }
+        };
+    }
+
+    /*
+    Waits for a frame to be filtered and appends it to the sequence
+
+    @param writer Writer with an open sequence
+
+    @param future Pending result of filterTask()
+
+    @param param Encoder settings
+     */
+    private static void writeFrame(ImageWriter writer, Future<IIOImage> future, ImageWriteParam param)
+            throws IOException {
+        IIOImage frame;
+        try {
+            frame = future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Filtering a frame failed: " + e.getCause(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while filtering frames", e);
+        }
+
+        // Metadata from another plugin cannot be used as it is; convert or drop it
+        IIOMetadata metadata = frame.getMetadata();
+        if (metadata != null && !writerUnderstands(writer, metadata)) {
+            frame.setMetadata(null);
+        }
+        writer.writeToSequence(frame, param);
+        ImagePool.getShared().release((BufferedImage) frame.getRenderedImage());
+    }
+
+    /*
+    Checks whether a writer can take a reader's frame metadata
+
+    @param writer Sequence writer
+
+    @param metadata Metadata from the reader
+
+    @return true if the metadata is in a format the writer knows
+     */
+    private static boolean writerUnderstands(ImageWriter writer, IIOMetadata metadata) {
+        String nativeFormat = metadata.getNativeMetadataFormatName();
+        String writerFormat = writer.getOriginatingProvider().getNativeImageMetadataFormatName();
+        return metadata.isStandardMetadataFormatSupported()
+                || (nativeFormat != null && nativeFormat.equals(writerFormat));
+    }
+
+    /*
+    Finds a writer for the format that supports sequences
+
+    @param format Format name
+
+    @return A new writer (dispose it after use), or null if there is none
+     */
+    private static ImageWriter findSequenceWriter(String format) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        while (writers.hasNext()) {
+            ImageWriter writer = writers.next();
+            if (writer.canWriteSequence()) {
+                return writer;
+            }
+            writer.dispose();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,198 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+NoiseEstimator Class - Estimates impulse noise density from a sample of pixels
+
+Filtering a nearly clean image with a full 3x3 median wastes time and
+softens detail, while a heavily corrupted one needs more than 3x3 to clean
+up. Before filtering in FilterMode.AUTO, MedianFilterEngine (or ImageProcess,
+which tunes the chosen settings first) asks this class how noisy the image
+is.
+
+About SAMPLES pixels on an even grid are examined, whatever the image
+size, so an estimate takes a few milliseconds. A sampled pixel counts as
+an impulse when its brightness differs from the median brightness of its
+eight neighbours by at least IMPULSE_THRESHOLD (the same step
+JpegPlaneFilter uses). The density then picks the mode:
+
+    below 0.2%   SKIP      nothing worth filtering
+    below 5%     GATED     3x3 median, but only on the impulses
+    below 12%    FULL      3x3 median everywhere
+    below 20%    FULL      5x5 median everywhere
+    below 35%    ADAPTIVE  window grows where 3x3 is not enough
+    above        PYRAMID   coarse-to-fine rebuild (see PyramidDenoiser)
+
+The limits come from test images with known amounts of added noise:
+below 5% gating keeps the most detail, and from 20% on the adaptive
+filter's extra cost (about twice a 3x3 median) clearly pays off. Above
+about 40% the estimate saturates (the neighbours' median is itself often
+an impulse) while the adaptive filter falls apart, so the pyramid takes
+over from 35%. It only finds near-black and near-white impulses, so it is
+chosen only when at least half as many sampled pixels are at those
+extremes as were counted as impulses; other noise stays ADAPTIVE.
+ */
+public final class NoiseEstimator {
+
+    // Pixels examined per image
+    static final int SAMPLES = 16384;
+
+    // Smallest brightness step from the neighbourhood that marks an impulse
+    static final int IMPULSE_THRESHOLD = JpegPlaneFilter.DEFAULT_IMPULSE_THRESHOLD;
+
+    /*
+    Result of one estimate, and the filter settings it led to
+     */
+    public static final class Estimate {
+        private final double density;
+        private final int samples;
+        private final long nanos;
+        private final FilterMode mode;
+        private final int windowSize;
+
+        Estimate(double density, int samples, long nanos, FilterMode mode, int windowSize) {
+            this.density = density;
+            this.samples = samples;
+            this.nanos = nanos;
+            this.mode = mode;
+            this.windowSize = windowSize;
+        }
+
+        /*
+        @return Estimated fraction of impulse pixels, from 0 to 1
+         */
+        public double getDensity() {
+            return density;
+        }
+
+        /*
+        @return Number of pixels examined
+         */
+        public int getSamples() {
+            return samples;
+        }
+
+        /*
+        @return Time the estimate took in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /*
+        @return The chosen mode (never AUTO)
+         */
+        public FilterMode getMode() {
+            return mode;
+        }
+
+        /*
+        @return The chosen window size
+         */
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        /*
+        Copies filter settings with the chosen mode and window size
+
+        @param options Settings in AUTO mode
+
+        @return A copy of options with this estimate's mode and window size
+         */
+        public FilterOptions applyTo(FilterOptions options) {
+            FilterOptions chosen = new FilterOptions(options);
+            chosen.setMode(mode);
+            chosen.setWindowSize(windowSize);
+            return chosen;
+        }
+
+        @Override
+        public String toString() {
+            String choice = mode == FilterMode.SKIP || mode == FilterMode.PYRAMID ? mode.name().toLowerCase()
+                    : mode.name().toLowerCase() + " " + windowSize + "x" + windowSize;
+            return String.format("estimated noise %.1f%% from %d samples in %.1f ms -> %s",
+                    density * 100, samples, nanos / 1e6, choice);
+        }
+    }
+
+    private NoiseEstimator() {
+        // Static helpers only
+    }
+
+    /*
+    Estimates an image's impulse density and chooses how to filter it
+
+    @param image Image to examine
+
+    @return The estimate and the chosen mode and window size
+     */
+    public static Estimate estimate(BufferedImage image) {
+        long start = System.nanoTime();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width < 3 || height < 3) {
+            return new Estimate(0, 0, System.nanoTime() - start, FilterMode.SKIP, 3);
+        }
+
+        // Even grid over the interior with about SAMPLES points
+        long interior = (long) (width - 2) * (height - 2);
+        int step = (int) Math.max(1, Math.sqrt((double) interior / SAMPLES));
+        int[] block = new int[9];
+        int[] neighbours = new int[8];
+        int samples = 0;
+        int impulses = 0;
+        int extremes = 0;
+        for (int y = 1; y < height - 1; y += step) {
+            for (int x = 1; x < width - 1; x += step) {
+                image.getRGB(x - 1, y - 1, 3, 3, block, 0, 3);
+                int count = 0;
+                for (int i = 0; i < 9; i++) {
+                    if (i != 4) {
+                        neighbours[count++] = ImpulseFilters.luma(block[i]);
+                    }
+                }
+                // Median of eight values: the mean of the two middle ranks. select() leaves the
+                // four smallest before index 4, so the largest of those is the lower middle rank
+                int upper = SortArray.select(neighbours, 0, 8, 4);
+                int lower = SortArray.select(neighbours, 0, 4, 3);
+                int median = (lower + upper) / 2;
+                if (Math.abs(ImpulseFilters.luma(block[4]) - median) >= IMPULSE_THRESHOLD) {
+                    impulses++;
+                }
+                if (PyramidDenoiser.isImpulse(block[4])) {
+                    extremes++;
+                }
+                samples++;
+            }
+        }
+
+        double density = (double) impulses / samples;
+        FilterMode mode;
+        int windowSize = 3;
+        if (density < 0.002) {
+            mode = FilterMode.SKIP;
+        } else if (density < 0.05) {
+            mode = FilterMode.GATED;
+        } else if (density < 0.12) {
+            mode = FilterMode.FULL;
+        } else if (density < 0.20) {
+            mode = FilterMode.FULL;
+            windowSize = 5;
+        } else if (density < 0.35 || 2 * extremes < impulses) {
+            mode = FilterMode.ADAPTIVE;
+        } else {
+            mode = FilterMode.PYRAMID;
+        }
+        return new Estimate(density, samples, System.nanoTime() - start, mode, windowSize);
+    }
+}
@@ -1,5 +1,20 @@
 package noiseremoving;
 
+import java.awt.image.BufferedImage; // Image types for tuning raw frames
+import java.io.File;           // For checking inputs for multiple frames
+import java.io.FileDescriptor; // stdin/stdout for pipe mode
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;    // For errors from the JPEG plane path and file copies
+import java.nio.channels.FileChannel; // NIO channels over stdin/stdout
+import java.nio.file.Files;    // For copying unchanged inputs byte for byte
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;    // For collecting positional arguments
+import java.util.List;
+import javax.imageio.ImageIO;  // Which files in a batch folder are images
+
 /*
 Name: Suemon Kwok
 
@@ -24,6 +39,76 @@ Key responsibilities:
  */
 public class NoiseRemoving {
     
+    // Set by --jpeg-planes: filter JPEG to JPEG jobs on the raw YCbCr planes
+    private static boolean useJpegPlanes = false;
+    
+    // Encoder settings from --quality, --png-level, --progressive, ...
+    private static final OutputOptions outputOptions = new OutputOptions();
+    
+    // Number of batch images processed at the same time (--threads)
+    private static int threads = Runtime.getRuntime().availableProcessors();
+    
+    // Port for --server mode (-1 means run as a normal command-line tool)
+    private static int serverPort = -1;
+    
+    // Requests allowed to wait for a worker in server mode (--queue)
+    private static int queueCapacity = 16;
+    
+    // Frame size for --pipe mode ("WIDTHxHEIGHT", null when not piping)
+    private static String pipeFrameSize = null;
+    
+    // Raw pixel format for --pipe mode (--pix-fmt)
+    private static String pipePixelFormat = "rgb24";
+    
+    // Set by --watch: treat the two paths as input and output folders and keep watching
+    private static boolean watchMode = false;
+    
+    // Folder for --cache (null means no result cache) and its size limit (--cache-size)
+    private static String cacheDirectory = null;
+    private static long cacheMegabytes = 1024;
+    
+    // Opened from the two settings above once the options are parsed
+    private static ResultCache resultCache = null;
+    
+    // Frames in the temporal window for --sequence (0 means not in sequence mode)
+    private static int sequenceDepth = 0;
+    
+    // Image size for --raw-image ("WIDTHxHEIGHT", null when not used)
+    private static String rawImageSize = null;
+    
+    // Set by --shard-worker: serve tile requests on stdin/stdout for a coordinator
+    private static boolean shardWorker = false;
+    
+    // Worker JVMs to filter on (--workers, 0 means filter in this JVM) and their tile size (--tile)
+    private static int workers = 0;
+    private static int tileSize = 1024;
+    
+    // Started from the two settings above once the options are parsed
+    private static ShardCoordinator shardCoordinator = null;
+    
+    // Heap the running batch jobs may use together (--heap-budget, 0 means 3/4 of the heap)
+    private static long heapBudgetMegabytes = 0;
+    
+    // Set by --calibrate: time the median strategies and save the winners as wisdom
+    private static boolean calibrate = false;
+    
+    // Wisdom file from --wisdom (null means the EngineTuner default)
+    private static String wisdomFile = null;
+    
+    // Filter mode for image files from --mode (AUTO picks one per image, see NoiseEstimator)
+    private static FilterMode filterMode = FilterMode.FULL;
+    
+    // Most median passes per image from --passes (see IterativeFilter)
+    private static int maxPasses = 1;
+    
+    // Window size, shape and centre weight from --window, --kernel and --centre-weight (see KernelShape)
+    private static int windowSize = 3;
+    private static KernelShape kernelShape = KernelShape.SQUARE;
+    private static int centreWeight = 1;
+    
+    // What happens to the pixels along the image edge, from --border (see BorderMode)
+    private static BorderMode borderMode = BorderMode.COPY;
+    
     /*
     Main method - Entry point for the command-line application
      
@@ -33,6 +118,80 @@ public class NoiseRemoving {
     
     2. With arguments: Process a custom image specified by user
     
+    Options (before or between the paths):
+    
+    --jpeg-planes        filter JPEG inputs on their YCbCr planes (see JpegPlaneFilter)
+    
+    --quality Q          JPEG quality from 0.0 to 1.0
+    
+    --progressive        write progressive JPEGs
+    
+    --optimize-huffman   write JPEGs with optimised Huffman tables
+    
+    --png-level N        PNG compression level from 0 (fast) to 9 (small)
+    
+    --format F           output format for paths without an extension
+    
+    --threads N          number of batch images processed in parallel
+                         (number of filter workers in server mode)
+    
+    --server PORT        run as a local HTTP service (see NoiseRemovingServer)
+    
+    --queue N            requests that may wait for a worker in server mode
+    
+    --pipe WxH           filter raw frames from stdin to stdout (see RawFramePipe)
+    
+    --pix-fmt F          raw frame format for --pipe: rgb24 (default) or gray8
+    
+    --watch              process images as they arrive in the input folder,
+                         writing them to the output folder (see WatchFolderDaemon)
+    
+    --cache DIR          reuse results stored in DIR for identical inputs and settings
+    
+    --cache-size MB      size limit of the result cache (default 1024)
+    
+    --sequence T         treat the paths as folders of video frames and apply a
+                         3x3xT spatio-temporal median (see TemporalMedianFilter)
+    
+    --raw-image WxH      filter a raw image file of any size through memory-mapped
+                         off-heap storage (see LargeImageStore); uses --pix-fmt
+    
+    --workers N          filter opaque RGB images and raw images as tiles on N
+                         worker JVMs (see ShardCoordinator)
+    
+    --tile N             tile width and height for --workers (default 1024)
+    
+    --heap-budget MB     memory the images of a batch may use at once
+                         (default three quarters of the heap, see BatchScheduler)
+    
+    --calibrate          time the median strategies and band sizes on this machine
+                         and save the fastest as wisdom (see EngineTuner)
+    
+    --wisdom FILE        wisdom file to use (default ~/.noiseremoving-wisdom)
+    
+    --mode M             full (default), gated, adaptive, pyramid (for 60-80%
+                         noise), skip, or auto to choose per image from a quick
+                         noise estimate (see FilterMode); full only with --pipe,
+                         --raw-image and --jpeg-planes
+    
+    --passes N           run up to N median passes, stopping early once a pass
+                         changes nothing; later passes only revisit changed tiles
+                         (not with --pipe, --raw-image or --jpeg-planes)
+    
+    --window N           window size, an odd number (default 3 for 3x3)
+    
+    --kernel K           window shape: square (default), cross, diamond or disk
+    
+    --centre-weight W    count the centre pixel W times in its own window (a
+                         centre-weighted median keeps more fine detail)
+    
+    --border B           edge pixels: copy (default, left unfiltered), replicate,
+                         reflect, or shrink the window to the image (not with
+                         --pipe, --raw-image or --jpeg-planes)
+    
+    --sequence always filters with a 3x3xT window, so it takes none of the
+    options from --mode on.
+    
     @param args Command line arguments
                
     args[0] = input image path (required if any args provided)
@@ -40,14 +199,75 @@ public class NoiseRemoving {
     args[1] = output image path (optional, defaults to "noise_removed.jpg")
      */
     public static void main(String[] args) {
+        // Separate options ("--name") from the input/output paths
+        List<String> paths = new ArrayList<>();
+        if (!parseOptions(args, paths) || !checkFilterOptions()) {
+            return; // The problem has already been reported
+        }
+        if (wisdomFile != null) {
+            EngineTuner.setSharedFile(Paths.get(wisdomFile));
+        }
+        
+        // Pipe mode owns stdout for frame data, so it must print nothing there
+        if (pipeFrameSize != null) {
+            runPipe();
+            return;
+        }
+        
+        // The same goes for a shard worker, whose stdout belongs to the coordinator
+        if (shardWorker) {
+            try {
+                ShardWorker.serve(System.in, System.out);
+            } catch (IOException e) {
+                System.err.println("Shard worker stopped: " + e.getMessage());
+            }
+            return;
+        }
+        
         // Print application header and information
         System.out.println("=== Salt-and-Pepper Noise Removal Application ===");
         System.out.println("This is the command-line version. For GUI version, run NoiseRemovingGUI.");
         System.out.println(); // Empty line for readability
         
-        // Create ImageProcess instance to handle all image operations
-        // This single instance will be reused for processing multiple images
-        ImageProcess processor = new ImageProcess();
+        // Calibration replaces the wisdom file and exits
+        if (calibrate) {
+            runCalibration();
+            return;
+        }
+        
+        // Open the result cache before any image is processed
+        if (cacheDirectory != null) {
+            try {
+                resultCache = new ResultCache(Paths.get(cacheDirectory), cacheMegabytes * 1024 * 1024);
+            } catch (IOException e) {
+                System.err.println("Result cache disabled: " + e.getMessage());
+            }
+        }
+        
+        // Start the worker coordinator; its workers are stopped when the JVM exits
+        if (workers > 0) {
+            final ShardCoordinator coordinator = ShardCoordinator.local(workers, tileSize);
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    coordinator.close();
+                }
+            });
+            shardCoordinator = coordinator;
+            System.out.println("Filtering on " + workers + " worker processes, " + tileSize + " pixel tiles");
+        }
+        
+        // Server mode keeps running until the process is stopped
+        if (serverPort >= 0) {
+            runServer();
+            return;
+        }
+        
+        // So does watch mode
+        if (watchMode) {
+            runWatch(paths);
+            return;
+        }
         
         // Define test image paths - corrected to match project structure
         // These images should be placed in the project root directory
@@ -67,28 +287,61 @@ public class NoiseRemoving {
         
         // Handle command-line arguments
         // Check if user provided any command-line arguments
-        if (args.length >= 1) {
+        if (rawImageSize != null) {
+            // Raw mosaics too large for a BufferedImage are filtered off-heap
+            if (paths.size() != 2) {
+                System.err.println("--raw-image needs an input file and an output file");
+                return;
+            }
+            processRawImage(paths.get(0), paths.get(1));
+        } else if (sequenceDepth > 0) {
+            // A folder of frames is filtered across time as well as space
+            if (paths.size() != 2) {
+                System.err.println("--sequence needs an input folder and an output folder");
+                return;
+            }
+            processSequence(paths.get(0), paths.get(1));
+        } else if (paths.size() >= 1 && ArchiveProcessor.isArchivePath(paths.get(0))) {
+            // A ZIP or TAR archive is filtered entry by entry into another archive
+            String inputPath = paths.get(0);
+            String outputPath = paths.size() >= 2 ? paths.get(1) : archiveOutputPath(inputPath);
+            System.out.println("Processing archive:");
+            processArchive(inputPath, outputPath);
+        } else if (paths.size() >= 1 && new File(paths.get(0)).isDirectory()) {
+            // Every image in a folder is filtered once into another folder
+            String inputPath = paths.get(0);
+            String outputPath = paths.size() >= 2 ? paths.get(1) : inputPath + " cleaned";
+            System.out.println("Processing folder:");
+            processFolder(inputPath, outputPath);
+        } else if (paths.size() >= 1) {
             // If arguments provided, use custom image processing mode
-            String inputPath = args[0];  // First argument is input image path
+            String inputPath = paths.get(0);  // First argument is input image path
             
             // Second argument is output path, or use default if not provided
-            String outputPath = args.length >= 2 ? args[1] : "noise_removed.jpg";
+            String outputPath = paths.size() >= 2 ? paths.get(1) : "noise_removed.jpg";
             
             // Process the custom image specified by user
             System.out.println("Processing custom image:");
-            processImage(processor, inputPath, outputPath);
+            processImage(inputPath, outputPath);
+            printCacheSummary();
         } else {
             // No arguments provided - process all test images in batch mode
             System.out.println("Processing all test images:");
             
-            // Loop through all test images and process each one
+            // Process the test images in parallel, smallest first and within the
+            // heap budget; the filter engine is shared and every thread keeps its
+            // own scratch buffers and image writers
+            BatchScheduler scheduler = new BatchScheduler(threads, heapBudget());
             for (int i = 0; i < testImages.length; i++) {
-                // Print header for current test image
-                System.out.println("\n--- Processing Test Image " + (i + 1) + " ---");
-                
-                // Process current test image using corresponding paths
-                processImage(processor, testImages[i], outputImages[i]);
+                scheduler.submit(testImages[i], outputImages[i]);
             }
+            scheduler.runAll(new BatchScheduler.JobRunner() {
+                @Override
+                public boolean process(String inputPath, String outputPath) {
+                    System.out.println("\n--- Processing " + inputPath + " ---");
+                    return processImage(inputPath, outputPath);
+                }
+            });
             
             // Provide summary after processing all images
             System.out.println("\n=== Processing Summary ===");
@@ -99,14 +352,565 @@ public class NoiseRemoving {
             for (String output : outputImages) {
                 System.out.println("  - " + output);  // Indented list of output files
             }
+            
+            // Show how well image buffers were reused across the batch
+            System.out.println("Image pool: " + ImagePool.getShared().getStatistics());
+            System.out.println("Scheduler: " + scheduler.getStatistics());
+            printCacheSummary();
         }
         
         // Print completion message and usage information
         System.out.println("\n=== Process Complete ===");
-        System.out.println("Usage: java NoiseRemoving [input_path] [output_path]");
+        System.out.println("Usage: java NoiseRemoving [options] [input_path] [output_path]");
+        System.out.println("       options: --jpeg-planes --quality Q --progressive --optimize-huffman");
+        System.out.println("                --png-level N --format F --threads N --cache DIR --cache-size MB");
+        System.out.println("                --workers N --tile N --heap-budget MB --wisdom FILE");
+        System.out.println("                --mode full|gated|adaptive|pyramid|skip|auto --passes N");
+        System.out.println("                --window N --kernel square|cross|diamond|disk --centre-weight W");
+        System.out.println("                --border copy|replicate|reflect|shrink");
+        System.out.println("       java NoiseRemoving --server PORT [--threads N] [--queue N]");
+        System.out.println("       java NoiseRemoving --pipe WxH [--pix-fmt rgb24|gray8] < in.raw > out.raw");
+        System.out.println("       java NoiseRemoving --watch [options] input_folder output_folder");
+        System.out.println("       java NoiseRemoving [options] images.zip|.tar|.tgz [cleaned.zip|.tar|.tgz]");
+        System.out.println("       java NoiseRemoving [options] input_folder [output_folder]");
+        System.out.println("       java NoiseRemoving --calibrate [--wisdom FILE]");
+        System.out.println("       java NoiseRemoving --sequence T [options] frames_folder output_folder");
+        System.out.println("       java NoiseRemoving --raw-image WxH [--pix-fmt rgb24|gray8] in.raw out.raw");
         System.out.println("       (without arguments, processes all test images)");
     }
     
+    /*
+    Times the filter candidates on this machine and saves the winners
+    
+    Calibrates the window sizes the application uses (3x3) and 5x5, which
+    
+    takes a minute or two; see EngineTuner.
+     */
+    private static void runCalibration() {
+        EngineTuner tuner = EngineTuner.getShared();
+        System.out.println("Calibrating the median filter on " + Runtime.getRuntime().availableProcessors()
+            + " cores...");
+        long startTime = System.currentTimeMillis();
+        tuner.calibrate(new int[] {3, 5}, System.out);
+        try {
+            tuner.save();
+            System.out.println("Wisdom saved to " + tuner.getFile() + " ("
+                + (System.currentTimeMillis() - startTime) / 1000 + " s)");
+        } catch (IOException e) {
+            System.err.println("Could not save the wisdom: " + e.getMessage());
+        }
+    }
+    
+    /*
+    Starts the HTTP service and leaves it running
+    
+    The JVM stays alive through the server's threads; a shutdown hook
+    
+    stops the server cleanly on Ctrl+C.
+     */
+    private static void runServer() {
+        try {
+            final NoiseRemovingServer server =
+                new NoiseRemovingServer(serverPort, threads, queueCapacity, buildFilterOptions(), outputOptions);
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    server.stop(1);
+                }
+            });
+            server.start();
+        } catch (IOException e) {
+            System.err.println("Could not start the server: " + e.getMessage());
+        }
+    }
+    
+    /*
+    Watches an input folder and processes images as they arrive
+    
+    Runs until the process is stopped; a shutdown hook lets the files
+    
+    already being processed finish so the journal stays accurate.
+    
+    @param paths Input folder and output folder
+     */
+    private static void runWatch(List<String> paths) {
+        if (paths.size() != 2) {
+            System.err.println("--watch needs an input folder and an output folder");
+            return;
+        }
+        try {
+            final WatchFolderDaemon daemon = new WatchFolderDaemon(Paths.get(paths.get(0)),
+                Paths.get(paths.get(1)), threads, new WatchFolderDaemon.FileHandler() {
+                    @Override
+                    public boolean process(Path input, Path output) {
+                        System.out.println("\n--- New file: " + input.getFileName() + " ---");
+                        return processImage(input.toString(), output.toString());
+                    }
+                });
+            final Thread mainThread = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    daemon.stop();
+                    try {
+                        mainThread.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            daemon.run();
+        } catch (IOException e) {
+            System.err.println("Watch mode failed: " + e.getMessage());
+        }
+    }
+    
+    /*
+    Filters raw frames from stdin to stdout until stdin ends
+    
+    Progress and errors go to stderr, since stdout carries the frames.
+     */
+    private static void runPipe() {
+        int separator = pipeFrameSize.toLowerCase().indexOf('x');
+        if (separator <= 0) {
+            System.err.println("Frame size must look like 1920x1080: " + pipeFrameSize);
+            return;
+        }
+        
+        try {
+            int width = Integer.parseInt(pipeFrameSize.substring(0, separator));
+            int height = Integer.parseInt(pipeFrameSize.substring(separator + 1));
+            int frameType = pipePixelFormat.equalsIgnoreCase("gray8")
+                ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR;
+            FilterOptions options = EngineTuner.getShared().tune(buildFilterOptions(), frameType, width, height);
+            RawFramePipe pipe = new RawFramePipe(width, height, pipePixelFormat, options);
+            
+            long startTime = System.currentTimeMillis();
+            long frames;
+            try (FileChannel in = new FileInputStream(FileDescriptor.in).getChannel();
+                 FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel()) {
+                frames = pipe.run(in, out);
+            }
+            long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+            System.err.println("Filtered " + frames + " frames in " + elapsed + " ms ("
+                + String.format("%.1f", frames * 1000.0 / elapsed) + " fps)");
+        } catch (IllegalArgumentException e) {
+            // Also covers NumberFormatException from the size parsing
+            System.err.println("Invalid pipe settings: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Pipe failed: " + e.getMessage());
+        }
+    }
+    
+    /*
+    Reads the "--name [value]" options and collects the remaining paths
+    
+    @param args Command line arguments
+    
+    @param paths Receives every argument that is not an option
+    
+    @return false if an option was unknown or had a bad value
+     */
+    private static boolean parseOptions(String[] args, List<String> paths) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            try {
+                switch (arg) {
+                    case "--jpeg-planes":
+                        useJpegPlanes = true;
+                        break;
+                    case "--quality":
+                        outputOptions.setJpegQuality(Float.parseFloat(valueOf(args, ++i, arg)));
+                        break;
+                    case "--progressive":
+                        outputOptions.setProgressive(true);
+                        break;
+                    case "--optimize-huffman":
+                        outputOptions.setOptimizeHuffman(true);
+                        break;
+                    case "--png-level":
+                        outputOptions.setPngCompressionLevel(Integer.parseInt(valueOf(args, ++i, arg)));
+                        break;
+                    case "--format":
+                        outputOptions.setFormat(valueOf(args, ++i, arg));
+                        break;
+                    case "--threads":
+                        threads = Math.max(1, Integer.parseInt(valueOf(args, ++i, arg)));
+                        break;
+                    case "--server":
+                        serverPort = Integer.parseInt(valueOf(args, ++i, arg));
+                        break;
+                    case "--queue":
+                        queueCapacity = Math.max(0, Integer.parseInt(valueOf(args, ++i, arg)));
+                        break;
+                    case "--pipe":
+                        pipeFrameSize = valueOf(args, ++i, arg);
+                        break;
+                    case "--pix-fmt":
+                        pipePixelFormat = valueOf(args, ++i, arg);
+                        break;
+                    case "--watch":
+                        watchMode = true;
+                        break;
+                    case "--cache":
+                        cacheDirectory = valueOf(args, ++i, arg);
+                        break;
+                    case "--raw-image":
+                        rawImageSize = valueOf(args, ++i, arg);
+                        break;
+                    case "--sequence":
+                        sequenceDepth = Integer.parseInt(valueOf(args, ++i, arg));
+                        break;
+                    case "--cache-size":
+                        cacheMegabytes = Math.max(0, Long.parseLong(valueOf(args, ++i, arg)));
+                        break;
+                    case "--shard-worker":
+                        shardWorker = true;
+                        break;
+                    case "--workers":
+                        workers = Math.max(0, Integer.parseInt(valueOf(args, ++i, arg)));
+                        break;
+                    case "--heap-budget":
+                        heapBudgetMegabytes = Math.max(0, Long.parseLong(valueOf(args, ++i, arg)));
+                        break;
+                    case "--calibrate":
+                        calibrate = true;
+                        break;
+                    case "--wisdom":
+                        wisdomFile = valueOf(args, ++i, arg);
+                        break;
+                    case "--mode":
+                        filterMode = FilterMode.valueOf(valueOf(args, ++i, arg).toUpperCase());
+                        break;
+                    case "--passes":
+                        maxPasses = Math.max(1, Integer.parseInt(valueOf(args, ++i, arg)));
+                        break;
+                    case "--window":
+                        windowSize = Integer.parseInt(valueOf(args, ++i, arg));
+                        new FilterOptions().setWindowSize(windowSize); // Rejects even and tiny sizes here
+                        break;
+                    case "--kernel":
+                        kernelShape = KernelShape.valueOf(valueOf(args, ++i, arg).toUpperCase());
+                        break;
+                    case "--centre-weight":
+                        centreWeight = Math.max(1, Integer.parseInt(valueOf(args, ++i, arg)));
+                        break;
+                    case "--border":
+                        borderMode = BorderMode.valueOf(valueOf(args, ++i, arg).toUpperCase());
+                        break;
+                    case "--tile":
+                        tileSize = Math.max(16, Integer.parseInt(valueOf(args, ++i, arg)));
+                        break;
+                    default:
+                        if (arg.startsWith("--")) {
+                            System.err.println("Unknown option: " + arg);
+                            return false;
+                        }
+                        paths.add(arg);
+                }
+            } catch (IllegalArgumentException e) {
+                // Also covers NumberFormatException from the parse calls
+                System.err.println("Invalid value for " + arg + ": " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /*
+    Builds the filter settings from the command line options
+    
+    Every path that filters images starts from these, so a flag reaches
+    
+    single files, folders, archives, the server and raw images alike.
+    
+    @return New settings with the parsed mode, passes, window, shape, centre weight and border
+     */
+    private static FilterOptions buildFilterOptions() {
+        FilterOptions options = new FilterOptions();
+        options.setMode(filterMode);
+        options.setMaxPasses(maxPasses);
+        options.setWindowSize(windowSize);
+        options.setShape(kernelShape);
+        options.setCentreWeight(centreWeight);
+        options.setBorderMode(borderMode);
+        return options;
+    }
+    
+    /*
+    Rejects filter options that the chosen way of filtering cannot honour
+    
+    The raw-sample paths (--pipe, --raw-image and --jpeg-planes) run one
+    
+    full median pass and copy the border, and --sequence always uses its
+    
+    own 3x3xT window.
+    
+    @return false if a problem was reported
+     */
+    private static boolean checkFilterOptions() {
+        String rawPath = pipeFrameSize != null ? "--pipe" : rawImageSize != null ? "--raw-image"
+            : useJpegPlanes ? "--jpeg-planes" : null;
+        if (sequenceDepth > 0 && (filterMode != FilterMode.FULL || maxPasses > 1 || windowSize != 3
+            || kernelShape != KernelShape.SQUARE || centreWeight > 1 || borderMode != BorderMode.COPY)) {
+            System.err.println("--sequence always uses a 3x3xT window; it cannot be combined with --mode,"
+                + " --passes, --window, --kernel, --centre-weight or --border");
+            return false;
+        }
+        if (rawPath != null && (filterMode != FilterMode.FULL || maxPasses > 1 || borderMode != BorderMode.COPY)) {
+            System.err.println(rawPath + " runs a single full median pass and copies the border; it cannot be"
+                + " combined with --mode, --passes or --border");
+            return false;
+        }
+        return true;
+    }
+    
+    /*
+    Gets the value that follows an option
+    
+    @param args Command line arguments
+    
+    @param index Position of the value
+    
+    @param option Option name, for the error message
+    
+    @return The value
+     */
+    private static String valueOf(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("missing value after " + option);
+        }
+        return args[index];
+    }
+    
+    /*
+    Filters every image inside an archive into a new archive
+    
+    @param inputPath Path to the input archive
+    
+    @param outputPath Path for the output archive
+     */
+    private static void processArchive(String inputPath, String outputPath) {
+        System.out.println("Input archive: " + inputPath);
+        System.out.println("Output archive: " + outputPath);
+        if (!ArchiveProcessor.isArchivePath(outputPath)) {
+            System.err.println("Output must also be a .zip, .tar, .tar.gz or .tgz archive");
+            return;
+        }
+        
+        ArchiveProcessor archive = new ArchiveProcessor(threads, buildFilterOptions(), outputOptions);
+        long startTime = System.currentTimeMillis();
+        try {
+            archive.process(Paths.get(inputPath), Paths.get(outputPath));
+            System.out.println("Processing time: " + (System.currentTimeMillis() - startTime) + " ms");
+            System.out.println("Images: " + archive.getImageCount() + " (" + archive.getChangedCount()
+                + " changed), other entries copied: " + archive.getCopiedCount());
+            System.out.println("Success! Cleaned archive saved as: " + outputPath);
+        } catch (IOException e) {
+            System.err.println("Failed to process the archive: " + e.getMessage());
+        }
+    }
+    
+    /*
+    Applies the spatio-temporal median to a folder of frames
+    
+    @param inputFolder Folder of frames, processed in name order
+    
+    @param outputFolder Folder for the filtered frames
+     */
+    private static void processSequence(String inputFolder, String outputFolder) {
+        System.out.println("Processing frame sequence (3x3x" + sequenceDepth + "):");
+        System.out.println("Input folder: " + inputFolder);
+        System.out.println("Output folder: " + outputFolder);
+        try {
+            TemporalMedianFilter filter = new TemporalMedianFilter(sequenceDepth, threads, outputOptions);
+            long startTime = System.currentTimeMillis();
+            int frames = filter.process(new File(inputFolder), new File(outputFolder));
+            long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+            System.out.println("Processing time: " + elapsed + " ms for " + frames + " frames ("
+                + String.format("%.1f", frames * 1000.0 / elapsed) + " fps)");
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid sequence settings: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Failed to process the sequence: " + e.getMessage());
+        }
+    }
+    
+    /*
+    Filters every image in a folder into another folder
+    
+    The images are run by a BatchScheduler, so a mix of small and very
+    
+    large images is processed as fast as the heap budget allows.
+    
+    @param inputPath Folder with the images (not searched recursively)
+    
+    @param outputPath Folder for the results, created if needed; files keep their names
+     */
+    private static void processFolder(String inputPath, String outputPath) {
+        File outputDir = new File(outputPath);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("Cannot create output folder: " + outputPath);
+            return;
+        }
+        File[] files = new File(inputPath).listFiles();
+        if (files == null) {
+            System.err.println("Cannot list input folder: " + inputPath);
+            return;
+        }
+        
+        BatchScheduler scheduler = new BatchScheduler(threads, heapBudget());
+        int submitted = 0;
+        for (File file : files) {
+            String name = file.getName();
+            int dot = name.lastIndexOf('.');
+            if (file.isFile() && dot > 0 && ImageIO.getImageReadersBySuffix(name.substring(dot + 1)).hasNext()) {
+                scheduler.submit(file.getPath(), new File(outputDir, name).getPath());
+                submitted++;
+            }
+        }
+        
+        long startTime = System.currentTimeMillis();
+        int written = scheduler.runAll(new BatchScheduler.JobRunner() {
+            @Override
+            public boolean process(String input, String output) {
+                System.out.println("\n--- Processing " + input + " ---");
+                return processImage(input, output);
+            }
+        });
+        System.out.println("\n=== Folder Summary ===");
+        System.out.println(written + " of " + submitted + " images written to " + outputPath + " in "
+            + (System.currentTimeMillis() - startTime) + " ms");
+        System.out.println("Scheduler: " + scheduler.getStatistics());
+        printCacheSummary();
+    }
+    
+    /*
+    Gets the batch heap budget from --heap-budget, or the scheduler's default
+    
+    @return Budget in bytes
+     */
+    private static long heapBudget() {
+        return heapBudgetMegabytes > 0 ? heapBudgetMegabytes * 1024 * 1024 : BatchScheduler.defaultBudget();
+    }
+    
+    /*
+    Filters a raw image file through memory-mapped off-heap stores
+    
+    @param inputPath Raw input file (width x height x channels bytes)
+    
+    @param outputPath Raw output file (created or replaced)
+     */
+    private static void processRawImage(String inputPath, String outputPath) {
+        System.out.println("Processing raw image " + rawImageSize + " (" + pipePixelFormat + "):");
+        System.out.println("Input file: " + inputPath);
+        System.out.println("Output file: " + outputPath);
+        
+        int separator = rawImageSize.toLowerCase().indexOf('x');
+        int channels = pipePixelFormat.equalsIgnoreCase("gray8") ? 1 : 3;
+        try {
+            if (separator <= 0 || (channels == 3 && !pipePixelFormat.equalsIgnoreCase("rgb24"))) {
+                throw new IllegalArgumentException("expected a size like 200000x150000 and rgb24 or gray8");
+            }
+            long width = Long.parseLong(rawImageSize.substring(0, separator));
+            long height = Long.parseLong(rawImageSize.substring(separator + 1));
+            
+            FilterOptions options = EngineTuner.getShared().tune(buildFilterOptions(),
+                channels == 1 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR, width, height);
+            
+            long startTime = System.currentTimeMillis();
+            try (LargeImageStore source = LargeImageStore.map(Paths.get(inputPath), width, height, channels, false);
+                 LargeImageStore result = LargeImageStore.map(Paths.get(outputPath), width, height, channels, true)) {
+                long changed = shardCoordinator != null && options.isSquareKernel()
+                        ? shardCoordinator.apply(source, result, options).getChangedPixels()
+                        : MedianFilterEngine.getShared().applyLarge(source, result, options);
+                System.out.println("Processing time: " + (System.currentTimeMillis() - startTime) + " ms");
+                System.out.println("Changes: " + changed + " pixels changed");
+            }
+            System.out.println("Success! Noise-free image saved as: " + outputPath);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid raw image settings: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Failed to process the raw image: " + e.getMessage());
+        }
+    }
+    
+    /*
+    Makes the default output name for an archive ("scans.zip" -> "scans cleaned.zip")
+    
+    @param inputPath Path to the input archive
+    
+    @return Output archive path next to the input
+     */
+    private static String archiveOutputPath(String inputPath) {
+        String lower = inputPath.toLowerCase();
+        int extension = lower.endsWith(".tar.gz") ? inputPath.length() - 7 : inputPath.lastIndexOf('.');
+        return inputPath.substring(0, extension) + " cleaned" + inputPath.substring(extension);
+    }
+    
+    /*
+    Process a single image, serving it from the result cache when possible
+    
+    @param inputPath Path to input image file
+    
+    @param outputPath Path for output image file
+    
+    @return true if the output file was written
+     */
+    private static boolean processImage(String inputPath, String outputPath) {
+        if (resultCache == null) {
+            return processUncached(inputPath, outputPath);
+        }
+        
+        long startTime = System.currentTimeMillis();
+        String cacheKey;
+        try {
+            cacheKey = ResultCache.keyFor(Paths.get(inputPath), describeSettings(inputPath, outputPath));
+            if (resultCache.fetch(cacheKey, Paths.get(outputPath))) {
+                System.out.println("Cache hit - stored result copied to: " + outputPath);
+                return true;
+            }
+        } catch (IOException e) {
+            // Missing or unreadable input; the normal path reports it properly
+            return processUncached(inputPath, outputPath);
+        }
+        
+        boolean written = processUncached(inputPath, outputPath);
+        if (written) {
+            try {
+                resultCache.store(cacheKey, Paths.get(outputPath), System.currentTimeMillis() - startTime);
+            } catch (IOException e) {
+                System.err.println("Could not store the result in the cache: " + e.getMessage());
+            }
+        }
+        return written;
+    }
+    
+    /*
+    Describes every setting besides the input contents that affects an output file
+    
+    @param inputPath Path to input image file
+    
+    @param outputPath Path for output image file
+    
+    @return Description used in the result cache key
+     */
+    private static String describeSettings(String inputPath, String outputPath) {
+        boolean planes = useJpegPlanes && JpegPlaneFilter.isJpegPath(inputPath)
+            && JpegPlaneFilter.isJpegPath(outputPath);
+        return "filter=" + buildFilterOptions() + " output=" + ImageWriters.formatFor(outputPath, outputOptions)
+            + " " + outputOptions + " jpegPlanes=" + planes;
+    }
+    
+    /*
+    Prints the result cache statistics, if a cache is in use
+     */
+    private static void printCacheSummary() {
+        if (resultCache != null) {
+            System.out.println("Result cache: " + resultCache.getStatistics());
+        }
+    }
+    
     /*
     Process a single image for noise removal
      
@@ -123,26 +927,68 @@ public class NoiseRemoving {
     3. Save the processed image
     
     4. Provide timing and status information
-     
     
-    @param processor The ImageProcess instance to use for operations
+    Each call uses its own ImageProcess, which only holds the images for this
+    
+    file; the filter engine behind it is shared and stateless.
+     
     
     @param inputPath Path to input image file
     
     @param outputPath Path for output image file
+    
+    @return true if the output file was written
      */
-    private static void processImage(ImageProcess processor, String inputPath, String outputPath) {
+    private static boolean processUncached(String inputPath, String outputPath) {
+        // Per-file processor; cheap to create because the engine is shared
+        ImageProcess processor = new ImageProcess();
+        processor.setOutputOptions(outputOptions);
+        processor.setShardCoordinator(shardCoordinator);
+        processor.setSplitLargeImages(true);
+        processor.setOptions(buildFilterOptions());
+        
         // Display the file paths being processed
         System.out.println("Input image: " + inputPath);   // Show source file
         System.out.println("Output image: " + outputPath); // Show destination file
         
+        // JPEG to JPEG jobs can skip both colour conversions
+        if (useJpegPlanes && JpegPlaneFilter.isJpegPath(inputPath) && JpegPlaneFilter.isJpegPath(outputPath)) {
+            long startTime = System.currentTimeMillis();
+            try {
+                FilterResult result = JpegPlaneFilter.process(inputPath, outputPath, processor.getOptions(),
+                    outputOptions);
+                if (result != null) {
+                    System.out.println("Processing time: " + (System.currentTimeMillis() - startTime) + " ms");
+                    if (!result.isChanged()) {
+                        copyUnchanged(inputPath, outputPath);
+                    } else {
+                        System.out.println("Success! Noise-free image saved as: " + outputPath);
+                    }
+                    return true;
+                }
+                System.out.println("JPEG is not YCbCr/gray; using the RGB path instead");
+            } catch (IOException e) {
+                System.err.println("Error processing JPEG planes: " + e.getMessage());
+                return false;
+            }
+        }
+        
+        // Animated GIFs and multi-page TIFFs keep all their frames when the output can
+        if (MultiFrameProcessor.isMultiFrame(new File(inputPath))
+            && MultiFrameProcessor.canWriteSequence(ImageWriters.formatFor(outputPath, outputOptions))) {
+            long startTime = System.currentTimeMillis();
+            boolean written = processor.cleanAllFrames(inputPath, outputPath) >= 0;
+            System.out.println("Processing time: " + (System.currentTimeMillis() - startTime) + " ms");
+            return written;
+        }
+        
         // Attempt to load the input image
         if (!processor.loadImage(inputPath)) {
             // If loading failed, provide detailed error information
             System.err.println("Failed to load image: " + inputPath);
             System.err.println("Please check if the file exists and is a valid image format.");
             System.err.println("Make sure test images are placed in the project root directory.");
-            return; // Exit this method early - no point continuing without an image
+            return false; // Exit this method early - no point continuing without an image
         }
         
         // Process the image to remove noise and measure processing time
@@ -152,15 +998,85 @@ public class NoiseRemoving {
         
         // Calculate and display processing time for performance monitoring
         System.out.println("Processing time: " + (endTime - startTime) + " ms");
+        System.out.println("Changes: " + processor.getLastResult());
         
-        // Attempt to save the processed image
-        if (processor.saveImage(outputPath)) {
+        // An already clean image in the same format is copied, not re-encoded
+        boolean written = false;
+        if (!processor.getLastResult().isChanged() && sameFormat(inputPath, outputPath)) {
+            try {
+                copyUnchanged(inputPath, outputPath);
+                written = true;
+            } catch (IOException e) {
+                System.err.println("Failed to copy the unchanged image: " + e.getMessage());
+            }
+        } else if (processor.saveImage(outputPath)) {
             // If saving succeeded, confirm success to user
             System.out.println("Success! Noise-free image saved as: " + outputPath);
             System.out.println("Cleaned image location: Project root directory");
+            written = true;
         } else {
             // If saving failed, notify user of the error
             System.err.println("Failed to save the processed image: " + outputPath);
         }
+        
+        // Hand both images back to the pool for the next file
+        processor.release();
+        return written;
+    }
+    
+    /*
+    Copies an input file that the filter did not change
+    
+    Writing the original bytes is much cheaper than encoding the image again,
+    
+    and for JPEG it avoids an extra round of compression loss.
+    
+    @param inputPath Original file
+    
+    @param outputPath Destination file (replaced if it exists)
+    
+    @throws IOException if the copy fails
+     */
+    private static void copyUnchanged(String inputPath, String outputPath) throws IOException {
+        Files.copy(Paths.get(inputPath), Paths.get(outputPath), StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("No noise found - original copied without re-encoding: " + outputPath);
+    }
+    
+    /*
+    Checks whether an input file is already in the format its output is written in
+    
+    @param inputPath Input file path
+    
+    @param outputPath Output file path
+    
+    @return true if the input's extension names the output format (jpg and jpeg match)
+     */
+    private static boolean sameFormat(String inputPath, String outputPath) {
+        String outputFormat = ImageWriters.formatFor(outputPath, outputOptions);
+        return outputFormat != null && formatOf(inputPath).equals(normaliseFormat(outputFormat));
+    }
+    
+    /*
+    Gets the normalised image format of a path from its extension
+    
+    @param path File path
+    
+    @return Lower-case extension, with "jpeg" reported as "jpg"
+     */
+    private static String formatOf(String path) {
+        int dotIndex = path.lastIndexOf('.');
+        return normaliseFormat(dotIndex >= 0 ? path.substring(dotIndex + 1) : "");
+    }
+    
+    /*
+    Normalises an image format name
+    
+    @param format Format name or extension, such as "JPEG" or "png"
+    
+    @return Lower-case name, with "jpeg" reported as "jpg"
+     */
+    private static String normaliseFormat(String format) {
+        String lower = format.toLowerCase();
+        return lower.equals("jpeg") ? "jpg" : lower;
     }
-}
\ No newline at end of file
+}
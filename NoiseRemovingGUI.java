@@ -29,6 +29,8 @@ import java.awt.image.BufferedImage;          // For image manipulation and disp
 // Import file I/O classes
 import java.io.File;                          // For file system operations
 
+import java.util.List;                        // Edited regions from ImageProcess.reloadEdits()
+
 /*
 NoiseRemovingGUI - Graphical User Interface for Salt-and-Pepper Noise Removal
 
@@ -38,6 +40,9 @@ This class creates a comprehensive Swing-based GUI application that provides:
 3. Progress indication during processing operations
 4. Error handling with user-friendly dialog messages
 5. Background processing to maintain UI responsiveness
+6. Interactive refresh after retouching: when the loaded file changes on
+   disk (or "Refresh Edits" is clicked) only the edited areas are filtered
+   again
 
 The GUI is designed with modern usability principles:
 - Clear visual feedback for all operations
@@ -68,6 +73,8 @@ public class NoiseRemovingGUI extends JFrame {
     
     private JButton saveButton;     // Button to save processed image to file
     
+    private JButton refreshButton;  // Button to refilter the areas edited since processing
+    
     private JButton exitButton;     // Button to exit the application
     
     // Status and progress components
@@ -83,10 +90,19 @@ public class NoiseRemovingGUI extends JFrame {
     private JButton test3Button;   // Load test image 3 (JPG format)
     
     // Image processing backend
-    private ImageProcess processor; // Instance of ImageProcess class for actual processing
+    private volatile ImageProcess processor; // Instance of ImageProcess class for actual processing
     
     private String currentImagePath; // Stores path of currently loaded image
     
+    private volatile BufferedImage previewImage; // Display-sized preview (set by background loads)
+    
+    // Watching the loaded file for edits made in another program
+    private Timer editWatcher;       // Checks the file's modification time once a second
+    
+    private long watchedModified;    // Modification time when the file was last processed
+    
+    private boolean busy;            // A background operation is running (buttons disabled)
+    
     // Image display configuration constants
     private final int MAX_IMAGE_WIDTH = 400;  // Maximum width for displayed images
     
@@ -118,6 +134,8 @@ public class NoiseRemovingGUI extends JFrame {
         initializeGUI();               // Set up all GUI components and layout
         
         setupEventHandlers();          // Connect buttons to their action methods
+        
+        startEditWatcher();            // Refresh edited areas when the file changes
     }
     
     /*
@@ -245,6 +263,10 @@ public class NoiseRemovingGUI extends JFrame {
         saveButton = new JButton("Save Image");
         saveButton.setToolTipText("Save the processed image to file");
         
+        // Create and configure refresh button
+        refreshButton = new JButton("Refresh Edits");
+        refreshButton.setToolTipText("Reload the retouched image file and refilter only the edited areas");
+        
         // Create and configure exit button
         exitButton = new JButton("Exit");
         exitButton.setToolTipText("Exit the application");
@@ -252,6 +274,7 @@ public class NoiseRemovingGUI extends JFrame {
         // Add main buttons to the main buttons panel
         mainButtons.add(loadButton);
         mainButtons.add(processButton);
+        mainButtons.add(refreshButton);
         mainButtons.add(saveButton);
         mainButtons.add(new JSeparator(SwingConstants.VERTICAL)); // Visual separator
         mainButtons.add(exitButton);
@@ -347,6 +370,14 @@ public class NoiseRemovingGUI extends JFrame {
             }
         });
         
+        // Refresh button handler - refilters the areas edited since processing
+        refreshButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                refreshEdits(); // Call method to reload and refilter edits
+            }
+        });
+        
         // Exit button handler - terminates the application
         exitButton.addActionListener(new ActionListener() {
             @Override
@@ -408,8 +439,9 @@ public class NoiseRemovingGUI extends JFrame {
         SwingWorker<Boolean, Void> worker = new SwingWorker<Boolean, Void>() {
             @Override
             protected Boolean doInBackground() throws Exception {
-                // This runs in background thread - perform file I/O operation
-                return processor.loadImage(currentImagePath);
+                // This runs in background thread - only a display-sized preview is
+                // decoded here; the full image is decoded when the filter runs
+                return loadPreview(currentImagePath);
             }
             
             @Override
@@ -480,8 +512,8 @@ public class NoiseRemovingGUI extends JFrame {
             SwingWorker<Boolean, Void> worker = new SwingWorker<Boolean, Void>() {
                 @Override
                 protected Boolean doInBackground() throws Exception {
-                    // Background task - load the image file
-                    return processor.loadImage(currentImagePath);
+                    // Background task - load a quick preview of the image file
+                    return loadPreview(currentImagePath);
                 }
                 
                 @Override
@@ -514,6 +546,46 @@ public class NoiseRemovingGUI extends JFrame {
         }
     }
     
+    /*
+    Load a display-sized preview of an image file
+    
+    This runs on a background thread. Only a subsampled image (or an
+    
+    embedded thumbnail) is decoded, so large files show up quickly. A new
+    
+    ImageProcess is created so the full decode of the new file happens
+    
+    when the user clicks "Remove Noise".
+    
+    @param imagePath Path to the image file
+    
+    @return true if a preview was loaded, false otherwise
+     */
+    private boolean loadPreview(String imagePath) {
+        try {
+            BufferedImage preview = ImagePreviewLoader.loadPreview(
+                new File(imagePath), MAX_IMAGE_WIDTH, MAX_IMAGE_HEIGHT);
+            if (preview == null) {
+                return false; // Not an image format ImageIO understands
+            }
+            previewImage = preview;
+            processor = new ImageProcess(); // Forget the previous image
+            return true;
+        } catch (java.io.IOException e) {
+            System.err.println("Error loading preview: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /*
+    Checks whether an image has been chosen (previewed or fully loaded)
+    
+    @return true if the filter can be run
+     */
+    private boolean hasLoadedImage() {
+        return previewImage != null || processor.hasImage();
+    }
+    
     /*
     Process the loaded image to remove noise
      
@@ -525,7 +597,7 @@ public class NoiseRemovingGUI extends JFrame {
      */
     private void processImage() {
         // Check if image is loaded before processing
-        if (!processor.hasImage()) {
+        if (!hasLoadedImage()) {
             JOptionPane.showMessageDialog(this,
                 "Please load an image first.",
                 "No Image", JOptionPane.WARNING_MESSAGE);
@@ -544,6 +616,11 @@ public class NoiseRemovingGUI extends JFrame {
         SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
             @Override
             protected Void doInBackground() throws Exception {
+                // The full-resolution decode was deferred until now
+                if (!processor.hasImage() && !processor.loadImage(currentImagePath)) {
+                    throw new IllegalStateException("Failed to load image: " + currentImagePath);
+                }
+                
                 // Background task - apply noise removal algorithm
                 processor.cleanNoise(); // This calls the median filter implementation
                 return null;
@@ -553,12 +630,15 @@ public class NoiseRemovingGUI extends JFrame {
             protected void done() {
                 // UI thread - handle completion and update interface
                 try {
+                    get(); // Rethrows any error from the background task
                     displayProcessedImage(); // Show the processed result
                     statusLabel.setText("Noise removal completed successfully");
+                    watchedModified = new File(currentImagePath).lastModified(); // Edits count from now
                     progressBar.setVisible(false); // Hide progress bar
                 } catch (Exception ex) {
                     // Handle any processing errors
                     statusLabel.setText("Error processing image");
+                    progressBar.setVisible(false);
                     ex.printStackTrace();
                     JOptionPane.showMessageDialog(NoiseRemovingGUI.this,
                         "An error occurred while processing the image.",
@@ -573,6 +653,96 @@ public class NoiseRemovingGUI extends JFrame {
         worker.execute(); // Start background processing
     }
     
+    /*
+    Starts watching the loaded image file for edits
+    
+    Once a second (on the event dispatch thread) the file's modification
+    
+    time is compared with the one recorded when it was processed. When an
+    
+    operator saves a touched-up version from another program, the edited
+    
+    areas are refreshed automatically without clicking anything.
+     */
+    private void startEditWatcher() {
+        editWatcher = new Timer(1000, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (busy || currentImagePath == null || !processor.isProcessed()) {
+                    return; // Nothing processed yet, or already working
+                }
+                long modified = new File(currentImagePath).lastModified();
+                if (modified != 0 && modified != watchedModified) {
+                    refreshEdits();
+                }
+            }
+        });
+        editWatcher.start();
+    }
+    
+    /*
+    Reload the edited image file and refilter only what changed
+    
+    The file is decoded again in the background and compared with the
+    
+    image that was processed; only the edited areas (grown by the filter
+    
+    window) are filtered again, so small touch-ups update almost at once.
+     */
+    private void refreshEdits() {
+        if (!processor.isProcessed()) {
+            JOptionPane.showMessageDialog(this,
+                "Please process an image first.",
+                "No Processed Image", JOptionPane.WARNING_MESSAGE);
+            return; // Exit if there is no result to update
+        }
+        
+        statusLabel.setText("Refreshing edited areas...");
+        watchedModified = new File(currentImagePath).lastModified(); // Don't trigger again for this save
+        setButtonsEnabled(false);
+        
+        SwingWorker<List<Rectangle>, Void> worker = new SwingWorker<List<Rectangle>, Void>() {
+            private long elapsed; // Milliseconds the refresh took
+            
+            @Override
+            protected List<Rectangle> doInBackground() throws Exception {
+                long start = System.currentTimeMillis();
+                List<Rectangle> edited = processor.reloadEdits(currentImagePath);
+                elapsed = System.currentTimeMillis() - start;
+                return edited;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    List<Rectangle> edited = get();
+                    if (edited == null) {
+                        statusLabel.setText("Could not reload " + new File(currentImagePath).getName());
+                    } else if (edited.isEmpty()) {
+                        statusLabel.setText("No edits found - processed image is up to date");
+                    } else {
+                        previewImage = processor.getOriginalImage(); // Show the edited original
+                        displayOriginalImage();
+                        displayProcessedImage();
+                        long pixels = 0;
+                        for (Rectangle r : edited) {
+                            pixels += (long) r.width * r.height;
+                        }
+                        statusLabel.setText("Refreshed " + edited.size() + " edited area(s), "
+                            + pixels + " pixels, in " + elapsed + " ms");
+                    }
+                } catch (Exception ex) {
+                    statusLabel.setText("Error refreshing edits");
+                    ex.printStackTrace();
+                } finally {
+                    setButtonsEnabled(true);
+                    updateButtonStates();
+                }
+            }
+        };
+        worker.execute(); // Start background refresh
+    }
+    
     /*
     Save the processed image to file
     
@@ -679,7 +849,7 @@ public class NoiseRemovingGUI extends JFrame {
     in the left panel with appropriate scaling to fit the display area.
      */
     private void displayOriginalImage() {
-        BufferedImage image = processor.getOriginalImage(); // Get original image
+        BufferedImage image = previewImage; // Get the display-sized preview
         if (image != null) {
             ImageIcon icon = createScaledImageIcon(image); // Scale image for display
             originalLabel.setIcon(icon); // Set image as label icon
@@ -750,11 +920,14 @@ public class NoiseRemovingGUI extends JFrame {
      */
     private void updateButtonStates() {
         // Process button: enabled only if image is loaded
-        processButton.setEnabled(processor.hasImage());
+        processButton.setEnabled(hasLoadedImage());
         
         // Save button: enabled only if image has been processed  
         saveButton.setEnabled(processor.isProcessed());
         
+        // Refresh button: edits can only be refreshed on a processed image
+        refreshButton.setEnabled(processor.isProcessed());
+        
         // Load and exit buttons are always available (not controlled here)
         // Test buttons are always available (not controlled here)
     }
@@ -771,14 +944,17 @@ public class NoiseRemovingGUI extends JFrame {
     private void setButtonsEnabled(boolean enabled) {
         // Main functionality buttons
         loadButton.setEnabled(enabled);    // Always follows enabled parameter
-        processButton.setEnabled(enabled && processor.hasImage());    // Enabled if parameter true AND image loaded
+        processButton.setEnabled(enabled && hasLoadedImage());        // Enabled if parameter true AND image loaded
         saveButton.setEnabled(enabled && processor.isProcessed());    // Enabled if parameter true AND image processed
+        refreshButton.setEnabled(enabled && processor.isProcessed()); // Same condition as save
         exitButton.setEnabled(enabled);    // Always follows enabled parameter
         
         // Test image buttons
         test1Button.setEnabled(enabled);   // Always follows enabled parameter
         test2Button.setEnabled(enabled);   // Always follows enabled parameter  
         test3Button.setEnabled(enabled);   // Always follows enabled parameter
+        
+        busy = !enabled; // The edit watcher waits while buttons are disabled
     }
     
     /*
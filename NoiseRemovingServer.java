@@ -0,0 +1,352 @@
+package noiseremoving;
+
+import com.sun.net.httpserver.HttpExchange; // One HTTP request/response
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;   // The JDK's built-in HTTP server
+import java.awt.image.BufferedImage;        // Decoded and filtered images
+import java.io.ByteArrayInputStream;        // Request body as an image stream
+import java.io.ByteArrayOutputStream;       // Encoded response image
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;          // Address the server listens on
+import java.nio.charset.StandardCharsets;   // For text responses
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;      // Admission control
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+NoiseRemovingServer Class - Local HTTP service for the median filter
+
+Lets other programs use the filter without starting a JVM per image.
+
+Endpoints:
+
+POST /denoise[?format=png|jpg|...]
+    Request body: an encoded image (any format ImageIO can read)
+    Response: the cleaned image, PNG unless another format is asked for
+
+GET /metrics
+    Plain-text counters, latency percentiles and throughput
+
+Backpressure: filtering runs on a fixed pool of worker threads. At most
+workers + queueCapacity requests are admitted at once; anything beyond
+that is answered straight away with 503 and a Retry-After header, before
+its body is even read, so a burst cannot pile up unbounded work or memory.
+ */
+public class NoiseRemovingServer {
+
+    // Largest request body accepted (protects the heap from huge uploads)
+    private static final int MAX_REQUEST_BYTES = 256 * 1024 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService filterPool;     // Fixed pool that runs the filter
+    private final ExecutorService handlerPool;    // Threads that serve HTTP exchanges
+    private final Semaphore admission;            // Free slots (workers + queue)
+
+    private final int workers;
+    private final int queueCapacity;
+
+    private final FilterOptions filterOptions;
+    private final OutputOptions outputOptions;
+
+    // Metrics
+    private final LatencyRecorder latency = new LatencyRecorder(4096);
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /*
+    Constructor - binds the port but does not start serving yet
+
+    @param port Port to listen on (0 picks a free port)
+
+    @param workers Number of filter worker threads
+
+    @param queueCapacity Number of requests allowed to wait for a worker
+
+    @param filterOptions Filter settings for every request
+
+    @param outputOptions Encoder settings for responses
+
+    @throws IOException if the port cannot be bound
+     */
+    public NoiseRemovingServer(int port, int workers, int queueCapacity, FilterOptions filterOptions,
+                               OutputOptions outputOptions) throws IOException {
+        if (workers < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Need at least one worker and a non-negative queue");
+        }
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.filterOptions = filterOptions;
+        this.outputOptions = outputOptions;
+        this.admission = new Semaphore(workers + queueCapacity);
+        this.filterPool = Executors.newFixedThreadPool(workers);
+        this.handlerPool = Executors.newCachedThreadPool();
+
+        // Loopback only: this is a local service, not a public one
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.server.setExecutor(handlerPool);
+        this.server.createContext("/denoise", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleDenoise(exchange);
+            }
+        });
+        this.server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleMetrics(exchange);
+            }
+        });
+    }
+
+    /*
+    Starts accepting requests
+     */
+    public void start() {
+        server.start();
+        System.out.println("Noise removal service listening on http://127.0.0.1:" + getPort()
+                + " (" + workers + " workers, queue " + queueCapacity + ")");
+    }
+
+    /*
+    Stops the server and its thread pools
+
+    @param delaySeconds Time allowed for in-flight exchanges to finish
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        filterPool.shutdown();
+        handlerPool.shutdown();
+    }
+
+    /*
+    Gets the port the server is bound to
+
+    @return Port number (useful when 0 was requested)
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /*
+    Handles POST /denoise
+
+    @param exchange The HTTP exchange
+     */
+    private void handleDenoise(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Use POST with the image as the request body\n");
+                return;
+            }
+
+            // Admission control happens before the body is read
+            if (!admission.tryAcquire()) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendText(exchange, 503, "Server busy, try again later\n");
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                final byte[] body = readBody(exchange.getRequestBody());
+                if (body == null) {
+                    sendText(exchange, 413, "Image larger than " + MAX_REQUEST_BYTES + " bytes\n");
+                    return;
+                }
+                final String format = queryParameter(exchange, "format", "png");
+
+                Future<byte[]> result = filterPool.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return denoise(body, format);
+                    }
+                });
+                byte[] image = result.get();
+                if (image == null) {
+                    sendText(exchange, 400, "Request body is not an image this server can decode"
+                            + " or the format '" + format + "' cannot be written\n");
+                    return;
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", contentType(format));
+                exchange.sendResponseHeaders(200, image.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(image);
+                }
+                latency.record(System.nanoTime() - start);
+            } finally {
+                admission.release();
+            }
+        } catch (ExecutionException e) {
+            failed.incrementAndGet();
+            sendText(exchange, 500, "Filtering failed: " + e.getCause() + "\n");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.incrementAndGet();
+            sendText(exchange, 500, "Interrupted\n");
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            throw e;
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /*
+    Decodes, filters and re-encodes one image (runs on a filter worker)
+
+    @param body Encoded input image
+
+    @param format Output format name
+
+    @return Encoded output image, or null if decoding or encoding is not possible
+     */
+    private byte[] denoise(byte[] body, String format) throws IOException {
+        ImagePool pool = ImagePool.getShared();
+        MedianFilterEngine engine = MedianFilterEngine.getShared();
+
+        BufferedImage source;
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(body))) {
+            source = input == null ? null : pool.decode(input);
+        }
+        if (source == null) {
+            return null;
+        }
+
+        BufferedImage cleaned = ImagePool.isPoolableType(source.getType())
+                ? pool.acquire(source.getWidth(), source.getHeight(), source.getType())
+                : engine.createDestination(source);
+        try {
+            engine.applyAll(source, cleaned, filterOptions);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length);
+            if (!ImageWriters.write(cleaned, format, out, outputOptions)) {
+                return null;
+            }
+            return out.toByteArray();
+        } finally {
+            pool.release(source);
+            pool.release(cleaned);
+        }
+    }
+
+    /*
+    Handles GET /metrics
+
+    @param exchange The HTTP exchange
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder text = new StringBuilder();
+            text.append("requests_completed ").append(latency.getCompleted()).append('\n');
+            text.append("requests_rejected ").append(rejected.get()).append('\n');
+            text.append("requests_failed ").append(failed.get()).append('\n');
+            text.append("requests_in_flight ")
+                    .append(workers + queueCapacity - admission.availablePermits()).append('\n');
+            text.append(String.format("latency_p50_ms %.2f%n", latency.getPercentileMillis(50)));
+            text.append(String.format("latency_p95_ms %.2f%n", latency.getPercentileMillis(95)));
+            text.append(String.format("latency_p99_ms %.2f%n", latency.getPercentileMillis(99)));
+            text.append(String.format("latency_max_ms %.2f%n", latency.getPercentileMillis(100)));
+            text.append(String.format("throughput_recent_per_s %.2f%n", latency.getRecentThroughput()));
+            text.append(String.format("throughput_overall_per_s %.2f%n", latency.getOverallThroughput()));
+            text.append("image_pool ").append(ImagePool.getShared().getStatistics()).append('\n');
+            sendText(exchange, 200, text.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /*
+    Reads a request body into memory
+
+    @param in Request body stream
+
+    @return The body bytes, or null if it is larger than MAX_REQUEST_BYTES
+     */
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (body.size() + read > MAX_REQUEST_BYTES) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    /*
+    Gets a query string parameter
+
+    @param exchange The HTTP exchange
+
+    @param name Parameter name
+
+    @param defaultValue Value used when the parameter is missing
+
+    @return The parameter value
+     */
+    private static String queryParameter(HttpExchange exchange, String name, String defaultValue) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) {
+            return defaultValue;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                return pair.substring(equals + 1);
+            }
+        }
+        return defaultValue;
+    }
+
+    /*
+    Gets the MIME type for an image format name
+
+    @param format Format name
+
+    @return MIME type
+     */
+    private static String contentType(String format) {
+        String lower = format.toLowerCase();
+        if (lower.equals("jpg") || lower.equals("jpeg")) {
+            return "image/jpeg";
+        }
+        return "image/" + lower;
+    }
+
+    /*
+    Sends a plain-text response
+
+    @param exchange The HTTP exchange
+
+    @param status HTTP status code
+
+    @param text Response body
+     */
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
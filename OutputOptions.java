@@ -0,0 +1,153 @@
+package noiseremoving;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+OutputOptions Class - Encoder settings used when saving processed images
+
+Lets a deployment trade file size against encode time instead of always
+using the ImageIO defaults:
+
+- JPEG quality, progressive scans and optimised Huffman tables
+- PNG compression (deflate) level
+- An explicit output format for paths without an extension
+
+A value of -1 for a number means "use the encoder's own default".
+
+The JDK's PNG encoder picks its row filters adaptively and has no setting
+for them, so there is no PNG filter option here.
+ */
+public class OutputOptions {
+
+    private String format;              // Explicit format name, or null to use the file extension
+    private float jpegQuality;          // 0.0 (smallest) to 1.0 (best), -1 for the default
+    private boolean progressive;        // Write progressive JPEG scans
+    private boolean optimizeHuffman;    // Compute optimal JPEG Huffman tables (slower, smaller)
+    private int pngCompressionLevel;    // 0 (fastest) to 9 (smallest), -1 for the default
+
+    /*
+    Default constructor
+
+    Uses the encoders' default settings, like ImageIO.write()
+     */
+    public OutputOptions() {
+        this.format = null;
+        this.jpegQuality = -1f;
+        this.progressive = false;
+        this.optimizeHuffman = false;
+        this.pngCompressionLevel = -1;
+    }
+
+    /*
+    Gets the explicit output format
+
+    @return Format name such as "png", or null to use the file extension
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /*
+    Sets the explicit output format
+
+    @param format Format name such as "png", or null to use the file extension
+     */
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    /*
+    Gets the JPEG quality
+
+    @return Quality from 0.0 to 1.0, or -1 for the encoder default
+     */
+    public float getJpegQuality() {
+        return jpegQuality;
+    }
+
+    /*
+    Sets the JPEG quality
+
+    @param jpegQuality Quality from 0.0 to 1.0, or -1 for the encoder default
+     */
+    public void setJpegQuality(float jpegQuality) {
+        if (jpegQuality != -1f && (jpegQuality < 0f || jpegQuality > 1f)) {
+            throw new IllegalArgumentException("JPEG quality must be between 0.0 and 1.0: " + jpegQuality);
+        }
+        this.jpegQuality = jpegQuality;
+    }
+
+    /*
+    Checks whether JPEGs are written as progressive scans
+
+    @return true for progressive JPEG output
+     */
+    public boolean isProgressive() {
+        return progressive;
+    }
+
+    /*
+    Sets whether JPEGs are written as progressive scans
+
+    @param progressive true for progressive JPEG output
+     */
+    public void setProgressive(boolean progressive) {
+        this.progressive = progressive;
+    }
+
+    /*
+    Checks whether optimised JPEG Huffman tables are computed
+
+    @return true if the encoder builds image-specific Huffman tables
+     */
+    public boolean isOptimizeHuffman() {
+        return optimizeHuffman;
+    }
+
+    /*
+    Sets whether optimised JPEG Huffman tables are computed
+
+    @param optimizeHuffman true to build image-specific Huffman tables
+     */
+    public void setOptimizeHuffman(boolean optimizeHuffman) {
+        this.optimizeHuffman = optimizeHuffman;
+    }
+
+    /*
+    Gets the PNG compression level
+
+    @return Deflate level from 0 to 9, or -1 for the encoder default
+     */
+    public int getPngCompressionLevel() {
+        return pngCompressionLevel;
+    }
+
+    /*
+    Sets the PNG compression level
+
+    @param pngCompressionLevel Deflate level from 0 to 9, or -1 for the encoder default
+     */
+    public void setPngCompressionLevel(int pngCompressionLevel) {
+        if (pngCompressionLevel < -1 || pngCompressionLevel > 9) {
+            throw new IllegalArgumentException("PNG compression level must be between 0 and 9: " + pngCompressionLevel);
+        }
+        this.pngCompressionLevel = pngCompressionLevel;
+    }
+
+    /*
+    Describes the settings, including every value that affects the output
+
+    @return Text listing each setting
+     */
+    @Override
+    public String toString() {
+        return "format=" + format + " quality=" + jpegQuality + " progressive=" + progressive
+                + " optimizeHuffman=" + optimizeHuffman + " pngLevel=" + pngCompressionLevel;
+    }
+}
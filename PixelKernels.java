@@ -0,0 +1,561 @@
+package noiseremoving;
+
+import java.util.Arrays;   // Clearing the sliding histograms
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+PixelKernels Class - Median kernels that work on raw raster sample arrays
+
+The general path in MedianFilterEngine unpacks every pixel to an ARGB int
+through getRGB(). For the common raster layouts that is unnecessary: the
+samples are already sitting in a byte[] or int[] inside the image. These
+kernels read and write those arrays directly.
+
+- filterBytes:  interleaved 8-bit samples, used for TYPE_BYTE_GRAY (one
+                channel) and TYPE_3BYTE_BGR (three channels)
+- filterPacked: one packed int per pixel, used for TYPE_INT_RGB and
+                TYPE_INT_ARGB; the centre pixel's alpha is kept
+- filterLuma:   raw JPEG YCbCr samples; the median runs on Y everywhere
+                but on Cb/Cr only where Y shows an impulse
+
+Because the median is taken separately for every channel, the order of the
+channels inside a pixel (BGR or RGB) does not matter to these kernels.
+
+How each median is found is chosen by a MedianStrategy; every strategy
+gives the same output. Which pixels each median takes comes from a
+KernelTable: the gathering loops walk its offset table and the histogram
+kernels slide its row spans, so every kernel shape runs through the same
+loops as the square window.
+
+As in the rest of the engine, pixels without a complete window (the border)
+are copied unchanged.
+ */
+final class PixelKernels {
+
+    private PixelKernels() {
+        // Static helpers only
+    }
+
+    /*
+    Median filter over interleaved 8-bit samples
+
+    @param src Source samples (not modified)
+
+    @param dst Destination samples, same layout as src
+
+    @param width Image width in pixels
+
+    @param height Image height in pixels
+
+    @param stride Number of array elements from one row to the next
+
+    @param channels Number of samples per pixel (1 for gray, 3 for BGR)
+
+    @param kernel Compiled window shape
+
+    @param strategy How each median is found
+
+    @param scratch Per-thread sample buffers (holding at least kernel.size samples)
+
+    @param result Receives the changed rows
+     */
+    static void filterBytes(byte[] src, byte[] dst, int width, int height, int stride, int channels,
+                            KernelTable kernel, MedianStrategy strategy, FilterScratch scratch,
+                            FilterResult result) {
+        int radius = kernel.radius;
+        int rowBytes = width * channels;
+
+        // Top and bottom border rows
+        for (int y = 0; y < radius; y++) {
+            System.arraycopy(src, y * stride, dst, y * stride, rowBytes);
+            int bottom = (height - 1 - y) * stride;
+            System.arraycopy(src, bottom, dst, bottom, rowBytes);
+        }
+
+        if (strategy == MedianStrategy.HISTOGRAM) {
+            filterBytesHistogram(src, dst, width, height, stride, channels, kernel, scratch, result);
+            return;
+        }
+        boolean network = strategy == MedianStrategy.NETWORK && kernel.size == 9;
+
+        int[][] samples = scratch.samples;
+        int[] offsets = kernel.offsets(stride, channels);
+        int count = kernel.size;
+        int edgeBytes = radius * channels;
+
+        for (int y = radius; y < height - radius; y++) {
+            int rowStart = y * stride;
+
+            // Left and right border columns
+            System.arraycopy(src, rowStart, dst, rowStart, edgeBytes);
+            System.arraycopy(src, rowStart + rowBytes - edgeBytes, dst, rowStart + rowBytes - edgeBytes, edgeBytes);
+
+            int changed = 0;
+            int firstChanged = 0;
+            int lastChanged = 0;
+
+            for (int x = radius; x < width - radius; x++) {
+                int out = rowStart + x * channels;
+
+                // Collect each channel of every sample in the kernel's offset table
+                for (int c = 0; c < channels; c++) {
+                    int[] channel = samples[c];
+                    int centre = out + c;
+                    for (int i = 0; i < count; i++) {
+                        channel[i] = src[centre + offsets[i]] & 0xFF;
+                    }
+                }
+
+                boolean pixelChanged = false;
+                for (int c = 0; c < channels; c++) {
+                    byte median = (byte) (network ? median9(samples[c])
+                            : MedianFilterEngine.medianOf(samples[c], count));
+                    pixelChanged |= median != src[out + c];
+                    dst[out + c] = median;
+                }
+                if (pixelChanged) {
+                    if (changed++ == 0) {
+                        firstChanged = x;
+                    }
+                    lastChanged = x;
+                }
+            }
+            result.addRow(y, firstChanged, lastChanged, changed);
+        }
+    }
+
+    /*
+    Median filter over packed 0xAARRGGBB ints
+
+    The alpha byte of the centre pixel is copied to the output untouched,
+    so transparent areas stay transparent.
+
+    @param src Source pixels (not modified)
+
+    @param dst Destination pixels, same layout as src
+
+    @param width Image width in pixels
+
+    @param height Image height in pixels
+
+    @param stride Number of array elements from one row to the next
+
+    @param kernel Compiled window shape
+
+    @param strategy How each median is found
+
+    @param scratch Per-thread sample buffers (holding at least kernel.size samples)
+
+    @param result Receives the changed rows
+     */
+    static void filterPacked(int[] src, int[] dst, int width, int height, int stride,
+                             KernelTable kernel, MedianStrategy strategy, FilterScratch scratch,
+                             FilterResult result) {
+        int radius = kernel.radius;
+
+        // Top and bottom border rows
+        for (int y = 0; y < radius; y++) {
+            System.arraycopy(src, y * stride, dst, y * stride, width);
+            int bottom = (height - 1 - y) * stride;
+            System.arraycopy(src, bottom, dst, bottom, width);
+        }
+
+        if (strategy == MedianStrategy.HISTOGRAM) {
+            filterPackedHistogram(src, dst, width, height, stride, kernel, scratch, result);
+            return;
+        }
+        boolean network = strategy == MedianStrategy.NETWORK && kernel.size == 9;
+
+        int[] red = scratch.samples[0];
+        int[] green = scratch.samples[1];
+        int[] blue = scratch.samples[2];
+        int[] offsets = kernel.offsets(stride, 1);
+        int count = kernel.size;
+
+        for (int y = radius; y < height - radius; y++) {
+            int rowStart = y * stride;
+
+            // Left and right border columns
+            System.arraycopy(src, rowStart, dst, rowStart, radius);
+            System.arraycopy(src, rowStart + width - radius, dst, rowStart + width - radius, radius);
+
+            int changed = 0;
+            int firstChanged = 0;
+            int lastChanged = 0;
+
+            for (int x = radius; x < width - radius; x++) {
+                int index = rowStart + x;
+                for (int i = 0; i < count; i++) {
+                    int rgb = src[index + offsets[i]];
+                    red[i] = (rgb >> 16) & 0xFF;
+                    green[i] = (rgb >> 8) & 0xFF;
+                    blue[i] = rgb & 0xFF;
+                }
+
+                int centre = src[index];
+                int value = network
+                        ? (centre & 0xFF000000) | (median9(red) << 16) | (median9(green) << 8) | median9(blue)
+                        : (centre & 0xFF000000)
+                        | (MedianFilterEngine.medianOf(red, count) << 16)
+                        | (MedianFilterEngine.medianOf(green, count) << 8)
+                        | MedianFilterEngine.medianOf(blue, count);
+                dst[rowStart + x] = value;
+                if (value != centre) {
+                    if (changed++ == 0) {
+                        firstChanged = x;
+                    }
+                    lastChanged = x;
+                }
+            }
+            result.addRow(y, firstChanged, lastChanged, changed);
+        }
+    }
+
+    /*
+    filterBytes() with the HISTOGRAM strategy (rows below the top border only)
+
+    Each row starts with one 256-bin histogram per channel holding the
+    first window. Moving one pixel right removes the first pixel of every
+    row span and adds the pixel after its end, and the median is found by
+    walking from the previous median while counting the samples below it.
+    Extra centre copies of a weighted kernel are added just for the lookup.
+     */
+    private static void filterBytesHistogram(byte[] src, byte[] dst, int width, int height, int stride,
+                                             int channels, KernelTable kernel, FilterScratch scratch,
+                                             FilterResult result) {
+        int radius = kernel.radius;
+        int[] spanFrom = kernel.spanFrom;
+        int[] spanTo = kernel.spanTo;
+        int extra = kernel.centreExtra;
+        int rowBytes = width * channels;
+        int edgeBytes = radius * channels;
+        int half = kernel.size / 2;         // Sorted position of the median
+        int[][] histograms = scratch.histograms;
+        int[] medians = new int[channels];
+        int[] below = new int[channels];    // Samples smaller than each median
+
+        for (int y = radius; y < height - radius; y++) {
+            int rowStart = y * stride;
+
+            // Left and right border columns
+            System.arraycopy(src, rowStart, dst, rowStart, edgeBytes);
+            System.arraycopy(src, rowStart + rowBytes - edgeBytes, dst, rowStart + rowBytes - edgeBytes, edgeBytes);
+
+            for (int c = 0; c < channels; c++) {
+                Arrays.fill(histograms[c], 0);
+                medians[c] = 0;
+                below[c] = 0;
+            }
+            for (int dy = -radius; dy <= radius; dy++) {
+                int index = (y + dy) * stride + (radius + spanFrom[dy + radius]) * channels;
+                int length = (spanTo[dy + radius] - spanFrom[dy + radius] + 1) * channels;
+                for (int i = 0; i < length; i++) {
+                    histograms[i % channels][src[index + i] & 0xFF]++;
+                }
+            }
+
+            int changed = 0;
+            int firstChanged = 0;
+            int lastChanged = 0;
+
+            for (int x = radius; x < width - radius; x++) {
+                if (x > radius) {
+                    for (int dy = -radius; dy <= radius; dy++) {
+                        int row = (y + dy) * stride;
+                        int leaving = row + (x - 1 + spanFrom[dy + radius]) * channels;
+                        int entering = row + (x + spanTo[dy + radius]) * channels;
+                        for (int c = 0; c < channels; c++) {
+                            int old = src[leaving + c] & 0xFF;
+                            histograms[c][old]--;
+                            if (old < medians[c]) {
+                                below[c]--;
+                            }
+                            int added = src[entering + c] & 0xFF;
+                            histograms[c][added]++;
+                            if (added < medians[c]) {
+                                below[c]++;
+                            }
+                        }
+                    }
+                }
+
+                int out = rowStart + x * channels;
+                boolean pixelChanged = false;
+                for (int c = 0; c < channels; c++) {
+                    int centre = src[out + c] & 0xFF;
+                    histograms[c][centre] += extra;
+                    if (centre < medians[c]) {
+                        below[c] += extra;
+                    }
+                    byte median = (byte) slideMedian(histograms[c], medians, below, c, half);
+                    histograms[c][centre] -= extra;
+                    if (centre < medians[c]) {
+                        below[c] -= extra;
+                    }
+                    pixelChanged |= median != src[out + c];
+                    dst[out + c] = median;
+                }
+                if (pixelChanged) {
+                    if (changed++ == 0) {
+                        firstChanged = x;
+                    }
+                    lastChanged = x;
+                }
+            }
+            result.addRow(y, firstChanged, lastChanged, changed);
+        }
+    }
+
+    /*
+    filterPacked() with the HISTOGRAM strategy (rows below the top border only)
+
+    Same as filterBytesHistogram() with the red, green and blue bytes taken
+    out of each packed pixel; the centre pixel's alpha is kept.
+     */
+    private static void filterPackedHistogram(int[] src, int[] dst, int width, int height, int stride,
+                                              KernelTable kernel, FilterScratch scratch, FilterResult result) {
+        int radius = kernel.radius;
+        int[] spanFrom = kernel.spanFrom;
+        int[] spanTo = kernel.spanTo;
+        int extra = kernel.centreExtra;
+        int half = kernel.size / 2;
+        int[][] histograms = scratch.histograms;
+        int[] medians = new int[3];
+        int[] below = new int[3];
+
+        for (int y = radius; y < height - radius; y++) {
+            int rowStart = y * stride;
+
+            // Left and right border columns
+            System.arraycopy(src, rowStart, dst, rowStart, radius);
+            System.arraycopy(src, rowStart + width - radius, dst, rowStart + width - radius, radius);
+
+            for (int c = 0; c < 3; c++) {
+                Arrays.fill(histograms[c], 0);
+                medians[c] = 0;
+                below[c] = 0;
+            }
+            for (int dy = -radius; dy <= radius; dy++) {
+                int index = (y + dy) * stride + radius;
+                for (int dx = spanFrom[dy + radius]; dx <= spanTo[dy + radius]; dx++) {
+                    int rgb = src[index + dx];
+                    histograms[0][(rgb >> 16) & 0xFF]++;
+                    histograms[1][(rgb >> 8) & 0xFF]++;
+                    histograms[2][rgb & 0xFF]++;
+                }
+            }
+
+            int changed = 0;
+            int firstChanged = 0;
+            int lastChanged = 0;
+
+            for (int x = radius; x < width - radius; x++) {
+                if (x > radius) {
+                    for (int dy = -radius; dy <= radius; dy++) {
+                        int row = (y + dy) * stride;
+                        int old = src[row + x - 1 + spanFrom[dy + radius]];
+                        int added = src[row + x + spanTo[dy + radius]];
+                        for (int c = 0, shift = 16; c < 3; c++, shift -= 8) {
+                            int oldValue = (old >> shift) & 0xFF;
+                            histograms[c][oldValue]--;
+                            if (oldValue < medians[c]) {
+                                below[c]--;
+                            }
+                            int addedValue = (added >> shift) & 0xFF;
+                            histograms[c][addedValue]++;
+                            if (addedValue < medians[c]) {
+                                below[c]++;
+                            }
+                        }
+                    }
+                }
+
+                int centre = src[rowStart + x];
+                int value = centre & 0xFF000000;
+                for (int c = 0, shift = 16; c < 3; c++, shift -= 8) {
+                    int centreValue = (centre >> shift) & 0xFF;
+                    histograms[c][centreValue] += extra;
+                    if (centreValue < medians[c]) {
+                        below[c] += extra;
+                    }
+                    value |= slideMedian(histograms[c], medians, below, c, half) << shift;
+                    histograms[c][centreValue] -= extra;
+                    if (centreValue < medians[c]) {
+                        below[c] -= extra;
+                    }
+                }
+                dst[rowStart + x] = value;
+                if (value != centre) {
+                    if (changed++ == 0) {
+                        firstChanged = x;
+                    }
+                    lastChanged = x;
+                }
+            }
+            result.addRow(y, firstChanged, lastChanged, changed);
+        }
+    }
+
+    /*
+    Moves a channel's median to the histogram's current median
+
+    The median is the value m with fewer than half+1 samples below it and
+    at least half+1 samples at or below it.
+
+    @param histogram Sample counts of the window
+
+    @param medians Current median of each channel (updated)
+
+    @param below Samples below each channel's median (updated)
+
+    @param c Channel
+
+    @param half Sorted position of the median (kernel size / 2)
+
+    @return The median
+     */
+    private static int slideMedian(int[] histogram, int[] medians, int[] below, int c, int half) {
+        int median = medians[c];
+        int count = below[c];
+        while (count > half) {
+            median--;
+            count -= histogram[median];
+        }
+        while (count + histogram[median] <= half) {
+            count += histogram[median];
+            median++;
+        }
+        medians[c] = median;
+        below[c] = count;
+        return median;
+    }
+
+    /*
+    Median of the first nine values with a fixed exchange network
+
+    19 compare-exchanges and no branches on the data, which suits 3x3
+    windows better than a general sort. The array is not modified.
+
+    @param p Array holding at least nine samples
+
+    @return The fifth smallest value
+     */
+    static int median9(int[] p) {
+        int p0 = p[0], p1 = p[1], p2 = p[2], p3 = p[3], p4 = p[4], p5 = p[5], p6 = p[6], p7 = p[7], p8 = p[8];
+        int t;
+        t = Math.min(p1, p2); p2 = Math.max(p1, p2); p1 = t;
+        t = Math.min(p4, p5); p5 = Math.max(p4, p5); p4 = t;
+        t = Math.min(p7, p8); p8 = Math.max(p7, p8); p7 = t;
+        t = Math.min(p0, p1); p1 = Math.max(p0, p1); p0 = t;
+        t = Math.min(p3, p4); p4 = Math.max(p3, p4); p3 = t;
+        t = Math.min(p6, p7); p7 = Math.max(p6, p7); p6 = t;
+        t = Math.min(p1, p2); p2 = Math.max(p1, p2); p1 = t;
+        t = Math.min(p4, p5); p5 = Math.max(p4, p5); p4 = t;
+        t = Math.min(p7, p8); p8 = Math.max(p7, p8); p7 = t;
+        p3 = Math.max(p0, p3);                        // p0 is never needed again
+        p5 = Math.min(p5, p8);                        // nor is p8
+        t = Math.min(p4, p7); p7 = Math.max(p4, p7); p4 = t;
+        p6 = Math.max(p3, p6);
+        p4 = Math.max(p1, p4);
+        p2 = Math.min(p2, p5);
+        p4 = Math.min(p4, p7);
+        t = Math.min(p4, p2); p2 = Math.max(p4, p2); p4 = t;
+        p4 = Math.max(p6, p4);
+        return Math.min(p4, p2);
+    }
+
+    /*
+    Median filter over a raw YCbCr (or gray) raster straight from a JPEG
+
+    Salt-and-pepper impulses are extreme in brightness, so they show up in
+    the Y band. Y gets the full median everywhere. A pixel whose Y changes
+    by more than the threshold is flagged as an impulse, and only flagged
+    pixels get their chroma bands (Cb, Cr) replaced by the window median.
+
+    dst must already hold a copy of src; unflagged chroma and the border
+    are left as they are.
+
+    @param src Source samples (not modified)
+
+    @param dst Destination samples, same layout as src and pre-filled with it
+
+    @param width Image width in pixels
+
+    @param height Image height in pixels
+
+    @param stride Number of array elements from one row to the next
+
+    @param pixelStride Number of array elements from one pixel to the next
+
+    @param bandOffsets Offset of each band inside a pixel (Y first)
+
+    @param kernel Compiled window shape
+
+    @param threshold Smallest Y change that marks a pixel as an impulse
+
+    @param scratch Per-thread sample buffers (holding at least kernel.size samples)
+
+    @param result Receives the changed rows (a pixel counts as changed if its Y changed)
+
+    @return Number of pixels flagged as impulses
+     */
+    static int filterLuma(byte[] src, byte[] dst, int width, int height, int stride, int pixelStride,
+                          int[] bandOffsets, KernelTable kernel, int threshold, FilterScratch scratch,
+                          FilterResult result) {
+        int radius = kernel.radius;
+        int[] offsets = kernel.offsets(stride, pixelStride);
+        int count = kernel.size;
+        int[][] samples = scratch.samples;
+        int bands = bandOffsets.length;
+        int lumaOffset = bandOffsets[0];
+        int flagged = 0;
+
+        for (int y = radius; y < height - radius; y++) {
+            int changed = 0;
+            int firstChanged = 0;
+            int lastChanged = 0;
+
+            for (int x = radius; x < width - radius; x++) {
+                int centre = y * stride + x * pixelStride;
+
+                // Median of the Y band for every pixel
+                int index = centre + lumaOffset;
+                for (int i = 0; i < count; i++) {
+                    samples[0][i] = src[index + offsets[i]] & 0xFF;
+                }
+
+                int luma = src[centre + lumaOffset] & 0xFF;
+                int median = MedianFilterEngine.medianOf(samples[0], count);
+                dst[centre + lumaOffset] = (byte) median;
+                if (median != luma) {
+                    if (changed++ == 0) {
+                        firstChanged = x;
+                    }
+                    lastChanged = x;
+                }
+
+                // Chroma is only touched where the luma shows an impulse
+                if (Math.abs(luma - median) < threshold) {
+                    continue;
+                }
+                flagged++;
+                for (int b = 1; b < bands; b++) {
+                    index = centre + bandOffsets[b];
+                    for (int i = 0; i < count; i++) {
+                        samples[b][i] = src[index + offsets[i]] & 0xFF;
+                    }
+                    dst[centre + bandOffsets[b]] = (byte) MedianFilterEngine.medianOf(samples[b], count);
+                }
+            }
+            result.addRow(y, firstChanged, lastChanged, changed);
+        }
+        return flagged;
+    }
+}
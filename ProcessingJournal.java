@@ -0,0 +1,214 @@
+package noiseremoving;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;     // Latest entry for each input path
+import java.util.Map;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+ProcessingJournal Class - Persistent record of files already processed
+
+Each completed file is appended to a text file as one line:
+
+    size <TAB> modified-millis <TAB> sha256 <TAB> path
+
+and the line is flushed straight away, so a crash loses at most the file
+being worked on. On start-up the journal is read back into a map and
+rewritten with only the latest line per path, which keeps it from growing
+without bound.
+
+A file counts as done when its size and modification time match the
+journal, which needs no reading at all. When only those differ (the file
+was touched or copied again) the content hash decides.
+ */
+public class ProcessingJournal {
+
+    private final Path journalFile;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private BufferedWriter writer;   // Open in append mode while the journal is in use
+
+    /*
+    One journal line
+     */
+    private static final class Entry {
+        final long size;
+        final long modified;
+        final String sha256;
+
+        Entry(long size, long modified, String sha256) {
+            this.size = size;
+            this.modified = modified;
+            this.sha256 = sha256;
+        }
+    }
+
+    /*
+    Opens a journal, creating it if it does not exist yet
+
+    @param journalFile File the journal is kept in
+
+    @throws IOException if the journal cannot be read or written
+     */
+    public ProcessingJournal(Path journalFile) throws IOException {
+        this.journalFile = journalFile;
+        load();
+        compact();
+        this.writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /*
+    Checks whether a file has already been processed in its current state
+
+    @param file Input file
+
+    @return true if the journal holds this file with the same contents
+
+    @throws IOException if the file has to be hashed and cannot be read
+     */
+    public synchronized boolean isDone(Path file) throws IOException {
+        Entry entry = entries.get(key(file));
+        if (entry == null) {
+            return false;
+        }
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        if (entry.size == size && entry.modified == modified) {
+            return true;
+        }
+        if (entry.size != size || !entry.sha256.equals(FileDigests.sha256(file))) {
+            return false;
+        }
+        // Same contents with a new timestamp: remember it so the next check is cheap
+        append(file, new Entry(size, modified, entry.sha256));
+        return true;
+    }
+
+    /*
+    Records a file as processed
+
+    @param file Input file
+
+    @param size Size of the file when it was processed
+
+    @param modified Modification time (milliseconds) when it was processed
+
+    @param sha256 Hash of the contents that were processed
+
+    @throws IOException if the journal cannot be written
+     */
+    public synchronized void record(Path file, long size, long modified, String sha256) throws IOException {
+        append(file, new Entry(size, modified, sha256));
+    }
+
+    /*
+    Gets the number of files in the journal
+
+    @return Number of distinct paths recorded
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /*
+    Closes the journal file
+     */
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /*
+    Adds an entry to the map and appends it to the file
+
+    @param file Input file
+
+    @param entry Entry to add
+     */
+    private void append(Path file, Entry entry) throws IOException {
+        String key = key(file);
+        entries.put(key, entry);
+        writer.write(format(key, entry));
+        writer.newLine();
+        writer.flush();
+    }
+
+    /*
+    Reads the journal file, keeping the last line for each path
+     */
+    private void load() throws IOException {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // The path is last, so it may itself contain tabs
+                String[] fields = line.split("\t", 4);
+                if (fields.length < 4) {
+                    continue; // Torn line from a crash mid-write
+                }
+                try {
+                    entries.put(fields[3], new Entry(Long.parseLong(fields[0]),
+                            Long.parseLong(fields[1]), fields[2]));
+                } catch (NumberFormatException e) {
+                    // Skip damaged lines rather than refusing to start
+                }
+            }
+        }
+    }
+
+    /*
+    Rewrites the journal with one line per path
+
+    The new journal is written next to the old one and then moved over it,
+    so an interrupted compaction never loses the journal.
+     */
+    private void compact() throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Path temporary = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.write(format(entry.getKey(), entry.getValue()));
+                out.newLine();
+            }
+        }
+        Files.move(temporary, journalFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /*
+    Gets the map key for a file
+
+    @param file Input file
+
+    @return Absolute, normalised path
+     */
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    /*
+    Formats one journal line (without the line break)
+     */
+    private static String format(String key, Entry entry) {
+        return entry.size + "\t" + entry.modified + "\t" + entry.sha256 + "\t" + key;
+    }
+}
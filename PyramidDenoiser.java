@@ -0,0 +1,291 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+PyramidDenoiser Class - Coarse-to-fine reconstruction for extreme noise densities
+
+At 60-80% impulse density most 3x3 windows are mostly noise, so repeated
+3x3 passes creep inwards a pixel at a time, and windows large enough to
+hold clean samples are expensive at full resolution. This filter (the
+PYRAMID mode of FilterMode) rebuilds the corrupted pixels instead:
+
+1. Every pixel whose channels are all near black or all near white is
+   marked as an impulse; everything else is a clean sample.
+2. A pyramid is built by halving the image repeatedly. Each coarse cell
+   is the mean of the clean samples among its (up to) four children and
+   is clean itself if at least one child was. Noise never enters a level,
+   and after a few levels every cell is clean.
+3. Coarse to fine, every cell that had no clean child takes a bilinear
+   blend of the four nearest parent cells, so each hole is filled smoothly
+   from the nearest level that saw real data.
+4. At full resolution, an impulse keeps this coarse estimate when its 2x2
+   parent cell had clean samples that agree. Where the parent had no clean
+   sample, or its clean samples span an edge, the pixel instead gets the
+   per-channel median of the clean samples in the smallest window (3x3 up
+   to 7x7) that holds at least three of them.
+
+Clean pixels are never changed. Genuinely black or white pixels look like
+impulses to step 1 and are rebuilt from their neighbourhood, which is the
+usual trade-off of decision-based filters at these densities.
+ */
+final class PyramidDenoiser {
+
+    // Channel values at or below LOW (or at or above HIGH) in every channel mark an impulse
+    static final int LOW = 16;
+    static final int HIGH = 239;
+
+    // Brightness range among a cell's clean samples above which the cell spans an edge
+    private static final int EDGE_RANGE = 48;
+
+    // Largest window searched for clean samples at full resolution
+    private static final int MAX_RADIUS = 3;
+
+    // Clean samples a full-resolution window needs before its median is used
+    private static final int MIN_SAMPLES = 3;
+
+    private PyramidDenoiser() {
+        // Static helpers only
+    }
+
+    /*
+    Rebuilds the impulse pixels of an image
+
+    @param src Image to filter (not modified)
+
+    @param dst Destination of the same size
+
+    @return Which pixels changed
+     */
+    static FilterResult apply(BufferedImage src, BufferedImage dst) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int[] pixels = src.getRGB(0, 0, width, height, null, 0, width);
+        FilterResult result = new FilterResult();
+
+        boolean[] clean = new boolean[pixels.length];
+        boolean anyClean = false;
+        boolean anyNoise = false;
+        for (int i = 0; i < pixels.length; i++) {
+            clean[i] = !isImpulse(pixels[i]);
+            anyClean |= clean[i];
+            anyNoise |= !clean[i];
+        }
+        if (!anyClean || !anyNoise) {
+            dst.setRGB(0, 0, width, height, pixels, 0, width); // Nothing to rebuild from, or nothing to rebuild
+            return result;
+        }
+
+        // Level 0 is the image itself; each further level halves both sides
+        Level base = new Level(width, height, pixels, clean);
+        Level[] levels = new Level[32];
+        levels[0] = base;
+        int top = 0;
+        while (levels[top].hasHoles() && (levels[top].width > 1 || levels[top].height > 1)) {
+            levels[top + 1] = levels[top].reduce();
+            top++;
+        }
+
+        // Coarse to fine: holes take their parent's value (level 0's holes are handled below)
+        for (int k = top - 1; k >= 1; k--) {
+            levels[k].fillFrom(levels[k + 1]);
+        }
+
+        Level parents = top >= 1 ? levels[1] : null;
+        int[] out = new int[width];
+        int[][] samples = new int[3][(2 * MAX_RADIUS + 1) * (2 * MAX_RADIUS + 1)];
+        for (int y = 0; y < height; y++) {
+            int changed = 0;
+            int firstChanged = 0;
+            int lastChanged = 0;
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                int pixel = pixels[i];
+                int value = pixel;
+                if (!clean[i]) {
+                    int parent = (y / 2) * parents.width + x / 2;
+                    int coarse = parents.upsample(x, y);
+                    value = parents.reliable[parent] ? coarse
+                            : localMedian(pixels, clean, width, height, x, y, samples, coarse);
+                    value = (pixel & 0xFF000000) | (value & 0xFFFFFF);
+                }
+                out[x] = value;
+                if (value != pixel) {
+                    if (changed++ == 0) {
+                        firstChanged = x;
+                    }
+                    lastChanged = x;
+                }
+            }
+            dst.setRGB(0, y, width, 1, out, 0, width);
+            result.addRow(y, firstChanged, lastChanged, changed);
+        }
+        return result;
+    }
+
+    /*
+    Checks whether a pixel is near black or near white in every channel
+     */
+    static boolean isImpulse(int rgb) {
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        return (red <= LOW && green <= LOW && blue <= LOW) || (red >= HIGH && green >= HIGH && blue >= HIGH);
+    }
+
+    /*
+    Per-channel median of the clean samples around a pixel
+
+    @param fallback Value to use when no window up to MAX_RADIUS has MIN_SAMPLES clean samples
+
+    @return The median colour
+     */
+    private static int localMedian(int[] pixels, boolean[] clean, int width, int height, int x, int y,
+                                   int[][] samples, int fallback) {
+        for (int radius = 1; radius <= MAX_RADIUS; radius++) {
+            int count = 0;
+            for (int yy = Math.max(0, y - radius); yy <= Math.min(height - 1, y + radius); yy++) {
+                for (int xx = Math.max(0, x - radius); xx <= Math.min(width - 1, x + radius); xx++) {
+                    int i = yy * width + xx;
+                    if (clean[i]) {
+                        samples[0][count] = (pixels[i] >> 16) & 0xFF;
+                        samples[1][count] = (pixels[i] >> 8) & 0xFF;
+                        samples[2][count] = pixels[i] & 0xFF;
+                        count++;
+                    }
+                }
+            }
+            if (count >= MIN_SAMPLES) {
+                return (MedianFilterEngine.medianOf(samples[0], count) << 16)
+                        | (MedianFilterEngine.medianOf(samples[1], count) << 8)
+                        | MedianFilterEngine.medianOf(samples[2], count);
+            }
+        }
+        return fallback;
+    }
+
+    /*
+    One level of the pyramid: an RGB value per cell and whether it came from clean samples
+     */
+    private static final class Level {
+        final int width;
+        final int height;
+        final int[] values;
+        final boolean[] clean;       // Cell had at least one clean sample
+        boolean[] reliable;          // Clean samples agreed (set on reduced levels only)
+
+        Level(int width, int height, int[] values, boolean[] clean) {
+            this.width = width;
+            this.height = height;
+            this.values = values;
+            this.clean = clean;
+        }
+
+        boolean hasHoles() {
+            for (boolean c : clean) {
+                if (!c) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /*
+        Builds the next coarser level from the clean cells of this one
+         */
+        Level reduce() {
+            int coarseWidth = (width + 1) / 2;
+            int coarseHeight = (height + 1) / 2;
+            int[] coarseValues = new int[coarseWidth * coarseHeight];
+            boolean[] coarseClean = new boolean[coarseValues.length];
+            boolean[] coarseReliable = new boolean[coarseValues.length];
+
+            for (int cy = 0; cy < coarseHeight; cy++) {
+                for (int cx = 0; cx < coarseWidth; cx++) {
+                    int red = 0;
+                    int green = 0;
+                    int blue = 0;
+                    int count = 0;
+                    int minLuma = 255;
+                    int maxLuma = 0;
+                    for (int y = 2 * cy; y < Math.min(height, 2 * cy + 2); y++) {
+                        for (int x = 2 * cx; x < Math.min(width, 2 * cx + 2); x++) {
+                            int i = y * width + x;
+                            if (clean[i]) {
+                                int rgb = values[i];
+                                red += (rgb >> 16) & 0xFF;
+                                green += (rgb >> 8) & 0xFF;
+                                blue += rgb & 0xFF;
+                                int luma = ImpulseFilters.luma(rgb);
+                                minLuma = Math.min(minLuma, luma);
+                                maxLuma = Math.max(maxLuma, luma);
+                                count++;
+                            }
+                        }
+                    }
+                    int c = cy * coarseWidth + cx;
+                    if (count > 0) {
+                        coarseValues[c] = ((red / count) << 16) | ((green / count) << 8) | (blue / count);
+                        coarseClean[c] = true;
+                        coarseReliable[c] = maxLuma - minLuma < EDGE_RANGE;
+                    }
+                }
+            }
+            Level coarse = new Level(coarseWidth, coarseHeight, coarseValues, coarseClean);
+            coarse.reliable = coarseReliable;
+            return coarse;
+        }
+
+        /*
+        Fills every hole of this level from the next coarser one
+         */
+        void fillFrom(Level parent) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int i = y * width + x;
+                    if (!clean[i]) {
+                        values[i] = parent.upsample(x, y);
+                    }
+                }
+            }
+        }
+
+        /*
+        Bilinear value of this level at a cell of the next finer one
+
+        The finer cell lies between four cells of this level, weighted
+        9, 3, 3 and 1 sixteenths; cells past the edge repeat the edge.
+
+        @param x Column on the finer level
+
+        @param y Row on the finer level
+
+        @return The blended RGB value
+         */
+        int upsample(int x, int y) {
+            int nearX = x / 2;
+            int nearY = y / 2;
+            int farX = Math.max(0, Math.min(width - 1, (x & 1) == 0 ? nearX - 1 : nearX + 1));
+            int farY = Math.max(0, Math.min(height - 1, (y & 1) == 0 ? nearY - 1 : nearY + 1));
+            int a = values[nearY * width + nearX];
+            int b = values[nearY * width + farX];
+            int c = values[farY * width + nearX];
+            int d = values[farY * width + farX];
+            int value = 0;
+            for (int shift = 16; shift >= 0; shift -= 8) {
+                int blend = 9 * ((a >> shift) & 0xFF) + 3 * ((b >> shift) & 0xFF)
+                        + 3 * ((c >> shift) & 0xFF) + ((d >> shift) & 0xFF);
+                value |= ((blend + 8) >> 4) << shift;
+            }
+            return value;
+        }
+    }
+}
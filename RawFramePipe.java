@@ -0,0 +1,262 @@
+package noiseremoving;
+
+import java.io.EOFException;               // Stream ended in the middle of a frame
+import java.io.IOException;
+import java.nio.ByteBuffer;                // Direct I/O buffers
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue; // Hand-off between pipeline stages
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+RawFramePipe Class - Streams raw video frames through the median filter
+
+Reads fixed-size raw frames (RGB24 or GRAY8, like ffmpeg's rawvideo
+format) from one channel, filters them and writes raw frames of the same
+size to another. A single long-lived JVM handles a whole video, with no
+ImageIO encode or decode per frame.
+
+The work is split into three stages on three threads:
+
+    reader  -->  filter  -->  writer
+
+so frame n+1 is being read while frame n is filtered and frame n-1 is
+written. A small fixed set of frame slots circulates between the stages;
+each slot owns one direct ByteBuffer for channel I/O and two sample arrays
+for the filter, all allocated once at start-up. With no free slot the
+reader waits, which keeps memory bounded when the consumer is slow.
+ */
+public class RawFramePipe {
+
+    // Frame slots in circulation: one per stage lets all three overlap
+    private static final int SLOTS = 3;
+
+    private final int width;     // Frame width in pixels
+    private final int height;    // Frame height in pixels
+    private final int channels;  // 3 for RGB24, 1 for GRAY8
+    private final int frameBytes;
+    private final FilterOptions options;
+
+    /*
+    One frame's worth of reusable memory
+     */
+    private static final class Slot {
+        final ByteBuffer io;   // Direct buffer used for reading and writing
+        final byte[] input;    // Samples handed to the filter
+        final byte[] output;   // Filtered samples
+
+        Slot(int frameBytes) {
+            io = ByteBuffer.allocateDirect(frameBytes);
+            input = new byte[frameBytes];
+            output = new byte[frameBytes];
+        }
+    }
+
+    // Marks the end of the stream in the stage queues
+    private static final Slot END = new Slot(0);
+
+    /*
+    Constructor
+
+    @param width Frame width in pixels
+
+    @param height Frame height in pixels
+
+    @param pixelFormat "rgb24" or "gray8"
+
+    @param options Filter settings
+     */
+    public RawFramePipe(int width, int height, String pixelFormat, FilterOptions options) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Frame size must be positive: " + width + " x " + height);
+        }
+        if (pixelFormat.equalsIgnoreCase("rgb24")) {
+            this.channels = 3;
+        } else if (pixelFormat.equalsIgnoreCase("gray8") || pixelFormat.equalsIgnoreCase("gray")) {
+            this.channels = 1;
+        } else {
+            throw new IllegalArgumentException("Unsupported pixel format: " + pixelFormat + " (use rgb24 or gray8)");
+        }
+        long bytes = (long) width * height * channels;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Frame too large: " + width + " x " + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.frameBytes = (int) bytes;
+        this.options = options;
+    }
+
+    /*
+    Filters every frame from in and writes it to out, until in is exhausted
+
+    @param in Source of raw frames
+
+    @param out Destination for filtered frames
+
+    @return Number of frames processed
+
+    @throws IOException if reading or writing fails, or the input ends mid-frame
+     */
+    public long run(final ReadableByteChannel in, final WritableByteChannel out) throws IOException {
+        // Every queue has room for all slots plus the END marker, so puts never block
+        final BlockingQueue<Slot> free = new ArrayBlockingQueue<>(SLOTS + 1);
+        final BlockingQueue<Slot> toFilter = new ArrayBlockingQueue<>(SLOTS + 1);
+        final BlockingQueue<Slot> toWrite = new ArrayBlockingQueue<>(SLOTS + 1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final long[] frames = new long[1];
+
+        for (int i = 0; i < SLOTS; i++) {
+            free.add(new Slot(frameBytes));
+        }
+
+        Thread filter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    MedianFilterEngine engine = MedianFilterEngine.getShared();
+                    Slot slot;
+                    while ((slot = toFilter.take()) != END) {
+                        engine.applyBytes(slot.input, slot.output, width, height, channels, options);
+                        toWrite.put(slot);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    putQuietly(toWrite, END);
+                }
+            }
+        }, "pipe-filter");
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Slot slot;
+                    while ((slot = toWrite.take()) != END) {
+                        slot.io.clear();
+                        slot.io.put(slot.output);
+                        slot.io.flip();
+                        while (slot.io.hasRemaining()) {
+                            out.write(slot.io);
+                        }
+                        frames[0]++;
+                        free.put(slot);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    // Unblock the reader if it is still waiting for a free slot
+                    putQuietly(free, END);
+                }
+            }
+        }, "pipe-writer");
+
+        filter.start();
+        writer.start();
+
+        // The calling thread is the reader stage
+        try {
+            while (failure.get() == null) {
+                Slot slot = free.take();
+                if (slot == END) {
+                    break;
+                }
+                slot.io.clear();
+                if (!readFully(in, slot.io)) {
+                    break; // Clean end of stream
+                }
+                slot.io.flip();
+                slot.io.get(slot.input);
+                toFilter.put(slot);
+            }
+        } catch (IOException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            putQuietly(toFilter, END);
+        }
+
+        joinQuietly(filter);
+        joinQuietly(writer);
+
+        Throwable problem = failure.get();
+        if (problem instanceof IOException) {
+            throw (IOException) problem;
+        }
+        if (problem != null) {
+            throw new IOException("Frame pipe failed: " + problem, problem);
+        }
+        return frames[0];
+    }
+
+    /*
+    Reads until the buffer is full
+
+    @param in Channel to read from
+
+    @param buffer Buffer to fill
+
+    @return false if the stream ended cleanly before the first byte
+
+    @throws EOFException if the stream ended part way through a frame
+     */
+    private boolean readFully(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                if (buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Input ended part way through a frame ("
+                        + buffer.position() + " of " + frameBytes + " bytes)");
+            }
+        }
+        return true;
+    }
+
+    /*
+    Puts an item on a queue, ignoring interruption (used for end markers)
+     */
+    private static void putQuietly(BlockingQueue<Slot> queue, Slot slot) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(slot);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+    Waits for a stage thread to finish, ignoring interruption
+     */
+    private static void joinQuietly(Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
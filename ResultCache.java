@@ -0,0 +1,245 @@
+package noiseremoving;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;   // Last-use time kept on each entry
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;            // Entries in least-recently-used order
+import java.util.List;
+import java.util.Map;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+ResultCache Class - On-disk cache of finished output files
+
+Re-running a batch with the same inputs and settings should not decode,
+filter and encode every image again. Each result is stored under a key
+made from the SHA-256 of the input file's contents and a description of
+everything else that affects the output (filter settings, encoder
+settings, output format and MedianFilterEngine.VERSION). A hit is served
+by copying the stored file, which is far cheaper than recomputing it.
+
+Entries are files named "<key>_<cost>.cache", where cost is how many
+milliseconds the result took to produce; that is what a hit saves. The
+modification time of an entry is its last-use time, so the
+least-recently-used order survives restarts. When the cache grows past
+its size limit the least recently used entries are deleted.
+
+All public methods are synchronized; one cache is shared by the batch threads.
+ */
+public class ResultCache {
+
+    private static final String SUFFIX = ".cache";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    // Key -> entry, iterated from least to most recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    // Statistics for this run
+    private int hits;
+    private int misses;
+    private long savedMillis;
+
+    /*
+    One stored result
+     */
+    private static final class Entry {
+        final Path file;
+        final long bytes;
+        final long costMillis;
+
+        Entry(Path file, long bytes, long costMillis) {
+            this.file = file;
+            this.bytes = bytes;
+            this.costMillis = costMillis;
+        }
+    }
+
+    /*
+    Opens a cache directory, creating it if needed
+
+    @param directory Folder the cached results are kept in
+
+    @param maxBytes Size limit for all entries together
+
+    @throws IOException if the folder cannot be created or read
+     */
+    public ResultCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxBytes);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        load();
+        evict();
+    }
+
+    /*
+    Builds the cache key for one job
+
+    @param input Input file (its contents are hashed)
+
+    @param settings Everything else that affects the output
+
+    @return Cache key
+
+    @throws IOException if the input cannot be read
+     */
+    public static String keyFor(Path input, String settings) throws IOException {
+        return FileDigests.sha256(FileDigests.sha256(input) + "\n" + settings
+                + "\nengine=" + MedianFilterEngine.VERSION);
+    }
+
+    /*
+    Copies a cached result to the output path if there is one
+
+    @param key Cache key from keyFor()
+
+    @param output Where the result should go (replaced if it exists)
+
+    @return true on a hit, false if the result has to be computed
+
+    @throws IOException if the copy fails
+     */
+    public synchronized boolean fetch(String key, Path output) throws IOException {
+        Entry entry = entries.get(key);   // Also marks the entry as recently used
+        if (entry == null || !Files.exists(entry.file)) {
+            if (entry != null) {
+                remove(key); // Deleted behind our back
+            }
+            misses++;
+            return false;
+        }
+
+        long startTime = System.currentTimeMillis();
+        Files.copy(entry.file, output, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(entry.file, FileTime.fromMillis(System.currentTimeMillis()));
+        hits++;
+        savedMillis += Math.max(0, entry.costMillis - (System.currentTimeMillis() - startTime));
+        return true;
+    }
+
+    /*
+    Stores a freshly produced result
+
+    @param key Cache key from keyFor()
+
+    @param output The output file that was just written
+
+    @param costMillis How long producing it took
+
+    @throws IOException if the copy into the cache fails
+     */
+    public synchronized void store(String key, Path output, long costMillis) throws IOException {
+        long bytes = Files.size(output);
+        if (bytes > maxBytes) {
+            return; // Would only push everything else out
+        }
+        if (entries.containsKey(key)) {
+            remove(key);
+        }
+
+        // Copy under a temporary name first, so a crash never leaves a half entry
+        Path file = directory.resolve(key + "_" + costMillis + SUFFIX);
+        Path temporary = directory.resolve(key + ".tmp");
+        Files.copy(output, temporary, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+
+        entries.put(key, new Entry(file, bytes, costMillis));
+        totalBytes += bytes;
+        evict();
+    }
+
+    /*
+    Describes the cache use in this run
+
+    @return Hits, misses, hit rate and time saved
+     */
+    public synchronized String getStatistics() {
+        int lookups = hits + misses;
+        double hitRate = lookups == 0 ? 0.0 : 100.0 * hits / lookups;
+        return String.format("%d hits, %d misses (%.1f%% hit rate), about %d ms saved, %d entries using %d KB",
+                hits, misses, hitRate, savedMillis, entries.size(), totalBytes / 1024);
+    }
+
+    /*
+    Reads the existing entries, oldest use first
+     */
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        final Map<Path, Long> lastUse = new LinkedHashMap<>();
+        for (Path file : files) {
+            lastUse.put(file, Files.getLastModifiedTime(file).toMillis());
+        }
+        Collections.sort(files, new Comparator<Path>() {
+            @Override
+            public int compare(Path a, Path b) {
+                return Long.compare(lastUse.get(a), lastUse.get(b));
+            }
+        });
+
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            int separator = name.lastIndexOf('_');
+            if (separator <= 0) {
+                continue;
+            }
+            try {
+                long cost = Long.parseLong(name.substring(separator + 1, name.length() - SUFFIX.length()));
+                long bytes = Files.size(file);
+                entries.put(name.substring(0, separator), new Entry(file, bytes, cost));
+                totalBytes += bytes;
+            } catch (NumberFormatException e) {
+                // Not one of our entries
+            }
+        }
+    }
+
+    /*
+    Deletes least recently used entries until the cache fits its limit
+     */
+    private void evict() throws IOException {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            iterator.remove();
+            totalBytes -= entry.bytes;
+            Files.deleteIfExists(entry.file);
+        }
+    }
+
+    /*
+    Removes one entry and its file
+
+    @param key Cache key
+     */
+    private void remove(String key) throws IOException {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.bytes;
+            Files.deleteIfExists(entry.file);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package noiseremoving;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;   // Waits for every shard of a job
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+ShardCoordinator Class - Splits images into tile shards for worker processes
+
+One JVM filtering a huge image needs a huge heap, and a huge heap means
+long garbage collection pauses. The coordinator instead keeps the image
+off-heap in a LargeImageStore, cuts it into square tiles and sends each
+tile, with a halo of window-radius pixels on every side, to one of N
+worker JVMs over a ShardTransport. Only the tile's interior comes back
+into the result, so the halos make the seams invisible; the output is
+identical to filtering the whole image in one go.
+
+There is one dispatcher thread per worker. All dispatchers take shards
+from one shared queue, so a fast worker simply takes more of them, and
+several images (a batch) can be in the queue at the same time.
+
+When a worker fails (crashes, is killed, the pipe breaks) its transport is
+closed, a replacement is started on the next shard, and the failed shard
+goes back into the queue; after maxAttempts failures of one shard the job
+fails. Workers are created by a TransportFactory, so remote nodes can be
+added by returning socket-based transports from it.
+ */
+public class ShardCoordinator implements Closeable {
+
+    /*
+    Creates worker connections
+     */
+    public interface TransportFactory {
+        /*
+        @param index Dispatcher number (0 to workers - 1)
+
+        @return A new connection to a worker
+         */
+        ShardTransport create(int index) throws IOException;
+    }
+
+    /*
+    One image being filtered
+     */
+    private static final class Job {
+        final LargeImageStore src;
+        final LargeImageStore dst;
+        final int windowSize;
+        final int radius;
+        final FilterResult result = new FilterResult();
+        final CountDownLatch remaining;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Job(LargeImageStore src, LargeImageStore dst, FilterOptions options, int shards) {
+            this.src = src;
+            this.dst = dst;
+            this.windowSize = options.getWindowSize();
+            this.radius = options.getRadius();
+            this.remaining = new CountDownLatch(shards);
+        }
+    }
+
+    /*
+    One tile of a job
+     */
+    private static final class Shard {
+        final Job job;
+        final long x;        // Interior of the tile
+        final long y;
+        final int width;
+        final int height;
+        int attempts;
+
+        Shard(Job job, long x, long y, int width, int height) {
+            this.job = job;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    // Tells a dispatcher to exit
+    private static final Shard STOP = new Shard(null, 0, 0, 0, 0);
+
+    private final int tileSize;
+    private final int maxAttempts;
+    private final TransportFactory factory;
+    private final BlockingQueue<Shard> queue = new LinkedBlockingQueue<>();
+    private final Thread[] dispatchers;
+
+    /*
+    Constructor - starts one dispatcher per worker (workers start on first use)
+
+    @param workers Number of workers
+
+    @param tileSize Width and height of a tile's interior in pixels
+
+    @param maxAttempts Times a shard is tried before its job fails
+
+    @param factory Creates the worker connections
+     */
+    public ShardCoordinator(int workers, int tileSize, int maxAttempts, TransportFactory factory) {
+        if (workers < 1 || tileSize < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Workers, tile size and attempts must be positive");
+        }
+        this.tileSize = tileSize;
+        this.maxAttempts = maxAttempts;
+        this.factory = factory;
+        this.dispatchers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            final int index = i;
+            dispatchers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch(index);
+                }
+            }, "shard-dispatcher-" + i);
+            dispatchers[i].setDaemon(true);
+            dispatchers[i].start();
+        }
+    }
+
+    /*
+    Creates a coordinator whose workers are JVMs on this machine
+
+    @param workers Number of worker processes
+
+    @param tileSize Width and height of a tile's interior in pixels
+
+    @return The coordinator
+     */
+    public static ShardCoordinator local(int workers, int tileSize) {
+        return new ShardCoordinator(workers, tileSize, 3, new TransportFactory() {
+            @Override
+            public ShardTransport create(int index) throws IOException {
+                return StreamShardTransport.launchLocal();
+            }
+        });
+    }
+
+    /*
+    Filters one store into another on the workers
+
+    Safe to call from several threads at once; the shards of all calls
+    share the workers.
+
+    @param src Store to filter (not modified)
+
+    @param dst Store for the result, same size and channels
+
+    @param options Filter settings
+
+    @return What changed
+
+    @throws IOException if a shard failed on every attempt
+     */
+    public FilterResult apply(LargeImageStore src, LargeImageStore dst, FilterOptions options) throws IOException {
+        if (src.getWidth() != dst.getWidth() || src.getHeight() != dst.getHeight()
+                || src.getChannels() != dst.getChannels()) {
+            throw new IllegalArgumentException("Source and destination stores must have the same size and channels");
+        }
+        long columns = (src.getWidth() + tileSize - 1) / tileSize;
+        long rows = (src.getHeight() + tileSize - 1) / tileSize;
+        if (columns * rows > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many tiles; use a larger tile size");
+        }
+
+        Job job = new Job(src, dst, options, (int) (columns * rows));
+        for (long y = 0; y < src.getHeight(); y += tileSize) {
+            for (long x = 0; x < src.getWidth(); x += tileSize) {
+                int width = (int) Math.min(tileSize, src.getWidth() - x);
+                int height = (int) Math.min(tileSize, src.getHeight() - y);
+                queue.add(new Shard(job, x, y, width, height));
+            }
+        }
+
+        try {
+            job.remaining.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.failure.compareAndSet(null, e);
+        }
+        Throwable problem = job.failure.get();
+        if (problem != null) {
+            throw problem instanceof IOException ? (IOException) problem
+                    : new IOException("Sharded filtering failed: " + problem, problem);
+        }
+        return job.result;
+    }
+
+    /*
+    Checks whether a BufferedImage can be filtered on the workers
+
+    Tiles travel as 8-bit RGB samples, so only opaque RGB images survive the
+    trip unchanged; everything else should use the local engine.
+
+    @param image Image to check
+
+    @return true for INT_RGB, INT_BGR and 3BYTE_BGR images
+     */
+    public static boolean canShard(BufferedImage image) {
+        int type = image.getType();
+        return type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_BGR
+                || type == BufferedImage.TYPE_3BYTE_BGR;
+    }
+
+    /*
+    Filters a BufferedImage on the workers
+
+    @param src Image to filter (see canShard())
+
+    @param dst Destination of the same size and type
+
+    @param options Filter settings
+
+    @return What changed
+     */
+    public FilterResult apply(BufferedImage src, BufferedImage dst, FilterOptions options) throws IOException {
+        if (!canShard(src)) {
+            throw new IllegalArgumentException("Only opaque RGB images can be sharded");
+        }
+        LargeImageStore source = LargeImageStore.fromImage(src, 3);
+        LargeImageStore result = LargeImageStore.allocate(src.getWidth(), src.getHeight(), 3);
+        FilterResult changes = apply(source, result, options);
+
+        Graphics2D graphics = dst.createGraphics();
+        try {
+            graphics.drawImage(result.readTile(0, 0, src.getWidth(), src.getHeight()), 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return changes;
+    }
+
+    /*
+    Stops the dispatchers and their workers
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < dispatchers.length; i++) {
+            queue.add(STOP);
+        }
+        for (Thread dispatcher : dispatchers) {
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /*
+    Dispatcher loop: runs shards on one worker until STOP arrives
+
+    @param index Dispatcher number
+     */
+    private void dispatch(int index) {
+        ShardTransport transport = null;
+        try {
+            while (true) {
+                Shard shard;
+                try {
+                    shard = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (shard == STOP) {
+                    return;
+                }
+                if (shard.job.failure.get() != null) {
+                    shard.job.remaining.countDown(); // Job already failed, skip the rest
+                    continue;
+                }
+
+                try {
+                    if (transport == null) {
+                        transport = factory.create(index);
+                    }
+                    runShard(transport, shard);
+                    shard.job.remaining.countDown();
+                } catch (IOException e) {
+                    // The worker is gone: replace it and give the shard another go
+                    closeQuietly(transport);
+                    transport = null;
+                    if (++shard.attempts < maxAttempts) {
+                        System.err.println("Worker " + index + " failed (" + e.getMessage() + "), retrying shard at ("
+                                + shard.x + ", " + shard.y + ")");
+                        queue.add(shard);
+                    } else {
+                        shard.job.failure.compareAndSet(null, e);
+                        shard.job.remaining.countDown();
+                    }
+                } catch (RuntimeException e) {
+                    shard.job.failure.compareAndSet(null, e);
+                    shard.job.remaining.countDown();
+                }
+            }
+        } finally {
+            closeQuietly(transport);
+        }
+    }
+
+    /*
+    Sends one tile with its halo to a worker and stores the interior of the answer
+
+    @param transport Worker connection
+
+    @param shard The tile
+     */
+    private static void runShard(ShardTransport transport, Shard shard) throws IOException {
+        Job job = shard.job;
+        int channels = job.src.getChannels();
+
+        // Grow the tile by the window radius, but not past the image edges
+        long left = Math.max(0, shard.x - job.radius);
+        long top = Math.max(0, shard.y - job.radius);
+        long right = Math.min(job.src.getWidth(), shard.x + shard.width + job.radius);
+        long bottom = Math.min(job.src.getHeight(), shard.y + shard.height + job.radius);
+        int paddedWidth = (int) (right - left);
+        int paddedHeight = (int) (bottom - top);
+        int rowBytes = paddedWidth * channels;
+
+        byte[] samples = new byte[rowBytes * paddedHeight];
+        for (int row = 0; row < paddedHeight; row++) {
+            job.src.readRow(top + row, left, paddedWidth, samples, row * rowBytes);
+        }
+
+        byte[] filtered = transport.filter(samples, paddedWidth, paddedHeight, channels, job.windowSize);
+
+        int offsetX = (int) (shard.x - left);
+        for (int row = 0; row < shard.height; row++) {
+            int rowStart = (int) (shard.y - top + row) * rowBytes + offsetX * channels;
+            job.dst.writeRow(shard.y + row, shard.x, shard.width, filtered, rowStart);
+
+            // Record which interior pixels changed
+            int changed = 0;
+            int first = 0;
+            int last = 0;
+            for (int i = 0; i < shard.width; i++) {
+                int index = rowStart + i * channels;
+                boolean differs = false;
+                for (int c = 0; c < channels; c++) {
+                    differs |= filtered[index + c] != samples[index + c];
+                }
+                if (differs) {
+                    if (changed++ == 0) {
+                        first = i;
+                    }
+                    last = i;
+                }
+            }
+            if (changed > 0) {
+                synchronized (job.result) {
+                    job.result.addRow((int) (shard.y + row), (int) shard.x + first, (int) shard.x + last, changed);
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(ShardTransport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (IOException e) {
+                // Nothing more to do with a dead worker
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package noiseremoving;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+ShardTransport Interface - A connection to one shard worker
+
+The ShardCoordinator only talks to workers through this interface, so it
+does not care where a worker runs. StreamShardTransport implements it
+over any pair of streams: the pipes of a local worker JVM today, or a
+socket to a worker on another machine later.
+
+A transport handles one request at a time. If filter() throws an
+IOException the worker is treated as dead: the coordinator closes the
+transport, starts a new one and retries the shard.
+ */
+public interface ShardTransport extends Closeable {
+
+    /*
+    Filters one tile on the worker
+
+    @param samples Interleaved 8-bit samples of the tile, halo included
+
+    @param width Tile width in pixels
+
+    @param height Tile height in pixels
+
+    @param channels Samples per pixel (1 or 3)
+
+    @param windowSize Median window size
+
+    @return Filtered samples, same layout as the input
+
+    @throws IOException if the worker failed or the connection broke
+     */
+    byte[] filter(byte[] samples, int width, int height, int channels, int windowSize) throws IOException;
+}
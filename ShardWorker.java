@@ -0,0 +1,97 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;      // Binary request/response protocol
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+ShardWorker Class - Worker side of the shard protocol
+
+A worker JVM ("NoiseRemoving --shard-worker") reads tile requests from its
+input stream and answers each one on its output stream:
+
+    request:  int MAGIC, int width, int height, int channels, int window,
+              width x height x channels sample bytes
+    response: byte 0 followed by the filtered sample bytes, or
+              byte 1 followed by an error message (writeUTF)
+
+A request with a width of 0 asks the worker to exit. Each worker only ever
+holds one tile, so its heap can stay small no matter how big the image is.
+ */
+public final class ShardWorker {
+
+    // First int of every request, to catch a worker that is out of step
+    static final int MAGIC = 0x4D454431;
+
+    static final byte OK = 0;
+    static final byte FAILED = 1;
+
+    private ShardWorker() {
+        // Static helpers only
+    }
+
+    /*
+    Serves requests until the stream ends or a stop request arrives
+
+    @param in Request stream (stdin for a local worker)
+
+    @param out Response stream (stdout for a local worker)
+
+    @throws IOException if the streams fail or a request is malformed
+     */
+    public static void serve(InputStream in, OutputStream out) throws IOException {
+        DataInputStream requests = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        DataOutputStream responses = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        MedianFilterEngine engine = MedianFilterEngine.getShared();
+
+        while (true) {
+            int magic;
+            try {
+                magic = requests.readInt();
+            } catch (EOFException e) {
+                return; // Coordinator went away
+            }
+            if (magic != MAGIC) {
+                throw new IOException("Unexpected data from the coordinator");
+            }
+            int width = requests.readInt();
+            int height = requests.readInt();
+            int channels = requests.readInt();
+            int window = requests.readInt();
+            if (width == 0) {
+                return; // Stop request
+            }
+
+            byte[] samples = new byte[width * height * channels];
+            requests.readFully(samples);
+            try {
+                FilterOptions options = new FilterOptions();
+                options.setWindowSize(window);
+                options = EngineTuner.getShared().tune(options,
+                        channels == 1 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR, width, height);
+                byte[] result = new byte[samples.length];
+                engine.applyBytes(samples, result, width, height, channels, options);
+                responses.writeByte(OK);
+                responses.write(result);
+            } catch (RuntimeException e) {
+                responses.writeByte(FAILED);
+                responses.writeUTF(String.valueOf(e.getMessage()));
+            }
+            responses.flush();
+        }
+    }
+}
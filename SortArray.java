@@ -44,6 +44,9 @@ Data structures and algorithms
 
 public class SortArray<T extends Comparable<T>> {
     
+    // Ranges shorter than this are insertion sorted by select() instead of partitioned
+    private static final int SMALL_RANGE = 16;
+    
     /**
      * Array field to store reference to the array being sorted
      */
@@ -185,4 +188,238 @@ public class SortArray<T extends Comparable<T>> {
         quickSort();
         return getMedian();
     }
+    
+    /*
+    Finds the k-th smallest element without sorting the whole array
+    
+    Introselect: quickselect with a median-of-three pivot and a three-way
+    partition, so runs of equal values (flat image regions) are settled in
+    a single pass. If the partitions stop shrinking fast enough, the pivot
+    switches to the median of medians, which guarantees linear time. The
+    loop is iterative, so large arrays cannot overflow the stack.
+    
+    Afterwards array[k] holds the answer, everything before it is no
+    larger and everything after it is no smaller.
+    
+    @param k Position in sorted order (0 is the smallest)
+    
+    @return The k-th smallest element
+     */
+    public T select(int k) {
+        if (array == null || k < 0 || k >= array.length) {
+            throw new IllegalArgumentException("No element " + k + " in an array of "
+                    + (array == null ? 0 : array.length));
+        }
+        return select(0, array.length, k);
+    }
+    
+    /*
+    select() over the range [from, to) of the array
+     */
+    private T select(int from, int to, int k) {
+        int low = from;
+        int high = to - 1;
+        int budget = 2 * (32 - Integer.numberOfLeadingZeros(to - from)); // Rounds before median of medians
+        while (high - low >= SMALL_RANGE) {
+            T pivot = budget-- > 0 ? medianOfThree(low, (low + high) >>> 1, high) : medianOfMedians(low, high);
+            
+            // Three-way partition: [low, lt) < pivot, [lt, gt] == pivot, (gt, high] > pivot
+            int lt = low;
+            int gt = high;
+            int i = low;
+            while (i <= gt) {
+                int order = array[i].compareTo(pivot);
+                if (order < 0) {
+                    swap(lt++, i++);
+                } else if (order > 0) {
+                    swap(i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                high = lt - 1;
+            } else if (k > gt) {
+                low = gt + 1;
+            } else {
+                return array[k];
+            }
+        }
+        insertionSort(low, high);
+        return array[k];
+    }
+    
+    /*
+    Finds the median without sorting the whole array
+    
+    Uses the same position as getMedian() (length / 2), but in linear time.
+    
+    @return The median value, or null for an empty array
+     */
+    public T median() {
+        if (array == null || array.length == 0) {
+            return null;
+        }
+        return select(array.length / 2);
+    }
+    
+    /*
+    Sorts array[low..high] by insertion
+     */
+    private void insertionSort(int low, int high) {
+        for (int i = low + 1; i <= high; i++) {
+            T value = array[i];
+            int j = i - 1;
+            while (j >= low && array[j].compareTo(value) > 0) {
+                array[j + 1] = array[j];
+                j--;
+            }
+            array[j + 1] = value;
+        }
+    }
+    
+    /*
+    Middle value of three elements, used as a cheap pivot
+     */
+    private T medianOfThree(int a, int b, int c) {
+        T x = array[a];
+        T y = array[b];
+        T z = array[c];
+        if (x.compareTo(y) > 0) {
+            T t = x;
+            x = y;
+            y = t;
+        }
+        return z.compareTo(x) <= 0 ? x : z.compareTo(y) >= 0 ? y : z;
+    }
+    
+    /*
+    Pivot that is guaranteed to lie between the 30th and 70th percentiles
+    
+    The median of each group of five is moved to the front of the range,
+    and the median of those medians is found by selecting within the front.
+    
+    @param low Starting index of the range
+    
+    @param high Ending index of the range
+    
+    @return The median of medians
+     */
+    private T medianOfMedians(int low, int high) {
+        int groups = 0;
+        for (int start = low; start <= high; start += 5) {
+            int end = Math.min(start + 4, high);
+            insertionSort(start, end);
+            swap(low + groups++, (start + end) >>> 1);
+        }
+        return select(low, low + groups, low + groups / 2);
+    }
+    
+    /*
+    Finds the k-th smallest of part of an int array without sorting it
+    
+    The primitive version of select(), for callers such as the median
+    kernels that hold their samples in int arrays. values[k] holds the
+    answer afterwards, with no larger value before it and no smaller one
+    after it (within [from, to)).
+    
+    @param values Array holding the samples (reordered in place)
+    
+    @param from First index of the range
+    
+    @param to Index after the last one in the range
+    
+    @param k Index in [from, to) whose sorted value is wanted
+    
+    @return The value that belongs at index k once the range is sorted
+     */
+    public static int select(int[] values, int from, int to, int k) {
+        if (from < 0 || to > values.length || k < from || k >= to) {
+            throw new IllegalArgumentException("Index " + k + " is outside the range " + from + " to " + to);
+        }
+        int low = from;
+        int high = to - 1;
+        int budget = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        while (high - low >= SMALL_RANGE) {
+            int pivot = budget-- > 0 ? middleOf(values[low], values[(low + high) >>> 1], values[high])
+                    : medianOfMedians(values, low, high);
+            
+            int lt = low;
+            int gt = high;
+            int i = low;
+            while (i <= gt) {
+                int value = values[i];
+                if (value < pivot) {
+                    values[i++] = values[lt];
+                    values[lt++] = value;
+                } else if (value > pivot) {
+                    values[i] = values[gt];
+                    values[gt--] = value;
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                high = lt - 1;
+            } else if (k > gt) {
+                low = gt + 1;
+            } else {
+                return pivot;
+            }
+        }
+        insertionSort(values, low, high);
+        return values[k];
+    }
+    
+    /*
+    Finds the median of the first n values of an int array in linear time
+    
+    @param values Array holding the samples (reordered in place)
+    
+    @param n Number of samples to use, at least 1
+    
+    @return The value at position n / 2 in sorted order
+     */
+    public static int median(int[] values, int n) {
+        return select(values, 0, n, n / 2);
+    }
+    
+    /*
+    Sorts values[low..high] by insertion
+     */
+    private static void insertionSort(int[] values, int low, int high) {
+        for (int i = low + 1; i <= high; i++) {
+            int value = values[i];
+            int j = i - 1;
+            while (j >= low && values[j] > value) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+    
+    /*
+    Middle value of three ints
+     */
+    private static int middleOf(int a, int b, int c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+    
+    /*
+    int version of medianOfMedians(); the medians are gathered at the front of the range
+     */
+    private static int medianOfMedians(int[] values, int low, int high) {
+        int groups = 0;
+        for (int start = low; start <= high; start += 5) {
+            int end = Math.min(start + 4, high);
+            insertionSort(values, start, end);
+            int median = (start + end) >>> 1;
+            int t = values[low + groups];
+            values[low + groups] = values[median];
+            values[median] = t;
+            groups++;
+        }
+        return select(values, low, low + groups, low + groups / 2);
+    }
 }
\ No newline at end of file
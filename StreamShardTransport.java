@@ -0,0 +1,128 @@
+package noiseremoving;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+StreamShardTransport Class - Shard protocol over a pair of streams
+
+Speaks the ShardWorker protocol over any input/output stream pair.
+launchLocal() starts a worker JVM and talks to it over its stdin/stdout
+pipes; a worker on another machine only needs its streams to come from a
+Socket instead.
+ */
+public class StreamShardTransport implements ShardTransport {
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Process process;   // Local worker process, or null
+
+    /*
+    Constructor
+
+    @param in Responses from the worker
+
+    @param out Requests to the worker
+     */
+    public StreamShardTransport(InputStream in, OutputStream out) {
+        this(in, out, null);
+    }
+
+    private StreamShardTransport(InputStream in, OutputStream out, Process process) {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.process = process;
+    }
+
+    /*
+    Starts a worker JVM on this machine with the same class path
+
+    The worker's heap can be set with -Dnoiseremoving.workerHeap=512m; its
+    error output goes to this process's stderr.
+
+    @return Transport connected to the new worker
+
+    @throws IOException if the process cannot be started
+     */
+    public static StreamShardTransport launchLocal() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        String heap = System.getProperty("noiseremoving.workerHeap");
+        if (heap != null) {
+            command.add("-Xmx" + heap);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(NoiseRemoving.class.getName());
+        command.add("--shard-worker");
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = builder.start();
+        return new StreamShardTransport(process.getInputStream(), process.getOutputStream(), process);
+    }
+
+    @Override
+    public byte[] filter(byte[] samples, int width, int height, int channels, int windowSize) throws IOException {
+        out.writeInt(ShardWorker.MAGIC);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(channels);
+        out.writeInt(windowSize);
+        out.write(samples, 0, width * height * channels);
+        out.flush();
+
+        byte status = in.readByte();
+        if (status != ShardWorker.OK) {
+            // The worker is fine, the tile was not: don't retry it elsewhere
+            throw new IllegalArgumentException("Worker rejected the tile: " + in.readUTF());
+        }
+        byte[] result = new byte[width * height * channels];
+        in.readFully(result);
+        return result;
+    }
+
+    /*
+    Asks the worker to stop and releases the connection
+     */
+    @Override
+    public void close() {
+        try {
+            out.writeInt(ShardWorker.MAGIC);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.flush();
+        } catch (IOException e) {
+            // Already gone
+        } finally {
+            try {
+                out.close();
+                in.close();
+            } catch (IOException e) {
+                // Nothing more to do with a broken connection
+            } finally {
+                if (process != null) {
+                    process.destroy();
+                }
+            }
+        }
+    }
+}
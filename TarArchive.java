@@ -0,0 +1,486 @@
+package noiseremoving;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+TarArchive Class - Minimal streaming TAR reader and writer
+
+The JDK has ZIP streams but nothing for TAR, and the archives we get are
+plain POSIX (ustar) or GNU tar files, so this class reads and writes just
+enough of the format for a batch of images:
+
+- Regular files and directories
+- Long names through the ustar prefix field, GNU "././@LongLink" entries
+  and pax "path" records
+- Base-256 sizes written by GNU tar for entries over 8 GB (reading only)
+
+Links, devices and other special entries are skipped when reading.
+
+Both classes work strictly front to back on a stream, so an archive is
+never extracted to disk.
+ */
+public final class TarArchive {
+
+    // TAR files are made of 512-byte blocks
+    private static final int BLOCK = 512;
+
+    // Largest size the 11 octal digits of a ustar header can hold
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+    private TarArchive() {
+        // Only the nested reader and writer are used
+    }
+
+    /*
+    Header details of one archive entry
+     */
+    public static final class Entry {
+        private final String name;
+        private final long size;
+        private final long modified;
+        private final boolean directory;
+
+        Entry(String name, long size, long modified, boolean directory) {
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+            this.directory = directory;
+        }
+
+        /*
+        @return Path of the entry inside the archive
+         */
+        public String getName() {
+            return name;
+        }
+
+        /*
+        @return Number of data bytes (0 for directories)
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /*
+        @return Modification time in milliseconds since 1970
+         */
+        public long getModified() {
+            return modified;
+        }
+
+        /*
+        @return true if the entry is a directory
+         */
+        public boolean isDirectory() {
+            return directory;
+        }
+    }
+
+    /*
+    Reads entries one after another from a TAR stream
+     */
+    public static final class Reader implements Closeable {
+        private final InputStream in;
+        private final byte[] header = new byte[BLOCK];
+        private long remaining;   // Unread data bytes of the current entry
+        private long padding;     // Bytes after the data up to the next block
+
+        /*
+        @param in Archive stream (ideally buffered)
+         */
+        public Reader(InputStream in) {
+            this.in = in;
+        }
+
+        /*
+        Moves to the next file or directory entry
+
+        Any unread data of the current entry is skipped.
+
+        @return The entry, or null at the end of the archive
+
+        @throws IOException if the stream is not a valid TAR archive
+         */
+        public Entry next() throws IOException {
+            String longName = null;
+            while (true) {
+                skipFully(remaining + padding);
+                remaining = 0;
+                padding = 0;
+
+                if (!readBlock(header)) {
+                    return null; // Stream ended without the zero blocks, accept it
+                }
+                if (isZeroBlock(header)) {
+                    return null; // End-of-archive marker
+                }
+                checkChecksum(header);
+
+                long size = parseNumber(header, 124, 12);
+                long modified = parseNumber(header, 136, 12) * 1000L;
+                byte type = header[156];
+                remaining = size;
+                padding = (BLOCK - size % BLOCK) % BLOCK;
+
+                if (type == 'L') {
+                    // GNU long name: the data is the name of the next entry
+                    longName = cString(readData(), 0, (int) size);
+                    continue;
+                }
+                if (type == 'x') {
+                    // pax extended header: only the path is of interest
+                    String path = paxPath(readData());
+                    if (path != null) {
+                        longName = path;
+                    }
+                    continue;
+                }
+
+                String name = longName != null ? longName : headerName(header);
+                longName = null;
+                if (type == '5') {
+                    return new Entry(name, 0, modified, true);
+                }
+                if (type == '0' || type == 0 || type == '7') {
+                    return new Entry(name, size, modified, false);
+                }
+                // Links, devices, global pax headers, ...: skip
+            }
+        }
+
+        /*
+        Reads the whole data of the current entry
+
+        @return Entry contents
+
+        @throws IOException if the entry is too large for an array or the stream ends early
+         */
+        public byte[] readData() throws IOException {
+            if (remaining > Integer.MAX_VALUE - 8) {
+                throw new IOException("Entry too large to hold in memory: " + remaining + " bytes");
+            }
+            byte[] data = new byte[(int) remaining];
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read < 0) {
+                    throw new EOFException("Archive ended inside an entry");
+                }
+                offset += read;
+            }
+            remaining = 0;
+            return data;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private boolean readBlock(byte[] block) throws IOException {
+            int offset = 0;
+            while (offset < BLOCK) {
+                int read = in.read(block, offset, BLOCK - offset);
+                if (read < 0) {
+                    if (offset == 0) {
+                        return false;
+                    }
+                    throw new EOFException("Archive ended inside a header");
+                }
+                offset += read;
+            }
+            return true;
+        }
+
+        private void skipFully(long count) throws IOException {
+            byte[] buffer = null;
+            while (count > 0) {
+                long skipped = in.skip(count);
+                if (skipped <= 0) {
+                    // skip() may refuse; fall back to reading
+                    if (buffer == null) {
+                        buffer = new byte[BLOCK * 16];
+                    }
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, count));
+                    if (read < 0) {
+                        throw new EOFException("Archive ended inside an entry");
+                    }
+                    skipped = read;
+                }
+                count -= skipped;
+            }
+        }
+    }
+
+    /*
+    Writes entries one after another to a TAR stream (ustar format)
+     */
+    public static final class Writer implements Closeable {
+        private final OutputStream out;
+        private boolean finished;
+
+        /*
+        @param out Destination stream (ideally buffered)
+         */
+        public Writer(OutputStream out) {
+            this.out = out;
+        }
+
+        /*
+        Writes a file entry
+
+        @param name Path inside the archive
+
+        @param data File contents
+
+        @param modified Modification time in milliseconds since 1970
+         */
+        public void putFile(String name, byte[] data, long modified) throws IOException {
+            writeHeader(name, data.length, modified, (byte) '0', 0644);
+            out.write(data);
+            writePadding(data.length);
+        }
+
+        /*
+        Writes a directory entry
+
+        @param name Path inside the archive
+
+        @param modified Modification time in milliseconds since 1970
+         */
+        public void putDirectory(String name, long modified) throws IOException {
+            writeHeader(name.endsWith("/") ? name : name + "/", 0, modified, (byte) '5', 0755);
+        }
+
+        /*
+        Writes the end-of-archive marker (two zero blocks)
+         */
+        public void finish() throws IOException {
+            if (!finished) {
+                out.write(new byte[BLOCK * 2]);
+                out.flush();
+                finished = true;
+            }
+        }
+
+        /*
+        Finishes the archive and closes the stream
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+
+        private void writeHeader(String name, long size, long modified, byte type, int mode) throws IOException {
+            if (size > MAX_OCTAL_SIZE) {
+                throw new IOException("Entry too large for a ustar header: " + name);
+            }
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            byte[] prefixBytes = new byte[0];
+
+            if (nameBytes.length > 100) {
+                // Try to split at a '/' into the 155-byte prefix and 100-byte name
+                int split = splitPoint(nameBytes);
+                if (split > 0) {
+                    prefixBytes = Arrays.copyOfRange(nameBytes, 0, split);
+                    nameBytes = Arrays.copyOfRange(nameBytes, split + 1, nameBytes.length);
+                } else {
+                    // Otherwise use a GNU long-name entry, which every common tar reads
+                    byte[] longName = Arrays.copyOf(nameBytes, nameBytes.length + 1);
+                    writeHeader("././@LongLink", longName.length, 0, (byte) 'L', 0644);
+                    out.write(longName);
+                    writePadding(longName.length);
+                    nameBytes = Arrays.copyOf(nameBytes, 100);
+                }
+            }
+
+            byte[] block = new byte[BLOCK];
+            System.arraycopy(nameBytes, 0, block, 0, Math.min(100, nameBytes.length));
+            putOctal(block, 100, 8, mode);
+            putOctal(block, 108, 8, 0);                 // uid
+            putOctal(block, 116, 8, 0);                 // gid
+            putOctal(block, 124, 12, size);
+            putOctal(block, 136, 12, Math.max(0, modified / 1000L));
+            block[156] = type;
+            System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, block, 257, 6);
+            block[263] = '0';
+            block[264] = '0';
+            System.arraycopy(prefixBytes, 0, block, 345, prefixBytes.length);
+
+            // The checksum is computed with its own field filled with spaces
+            for (int i = 148; i < 156; i++) {
+                block[i] = ' ';
+            }
+            putOctal(block, 148, 7, checksum(block));
+            out.write(block);
+        }
+
+        private void writePadding(long size) throws IOException {
+            int padding = (int) ((BLOCK - size % BLOCK) % BLOCK);
+            if (padding > 0) {
+                out.write(new byte[padding]);
+            }
+        }
+
+        private static int splitPoint(byte[] name) {
+            for (int i = Math.min(155, name.length - 1); i > 0; i--) {
+                if (name[i] == '/' && name.length - i - 1 <= 100 && name.length - i - 1 > 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /*
+    Gets the name from a header, joining the ustar prefix if present
+     */
+    private static String headerName(byte[] header) {
+        String name = cString(header, 0, 100);
+        boolean ustar = header[257] == 'u' && header[258] == 's' && header[259] == 't'
+                && header[260] == 'a' && header[261] == 'r';
+        if (ustar) {
+            String prefix = cString(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    /*
+    Reads a NUL-terminated UTF-8 string from a fixed-size field
+     */
+    private static String cString(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /*
+    Parses a numeric header field: octal text, or GNU base-256 binary
+     */
+    private static long parseNumber(byte[] header, int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7F;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (header[offset + i] & 0xFF);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value != 0) {
+                    break; // Trailing terminator
+                }
+                continue;  // Leading padding
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Not a TAR archive (bad number in header)");
+            }
+            value = value * 8 + (b - '0');
+        }
+        return value;
+    }
+
+    /*
+    Writes an octal number into a header field, zero padded and NUL terminated
+     */
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int start = offset + length - 1 - digits.length();
+        for (int i = offset; i < start; i++) {
+            header[i] = '0';
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            header[start + i] = (byte) digits.charAt(i);
+        }
+        header[offset + length - 1] = 0;
+    }
+
+    /*
+    Sums the header bytes as unsigned values
+     */
+    private static long checksum(byte[] header) {
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xFF;
+        }
+        return sum;
+    }
+
+    /*
+    Verifies a header checksum
+     */
+    private static void checkChecksum(byte[] header) throws IOException {
+        long stored = parseNumber(header, 148, 8);
+        long sum = 0;
+        for (int i = 0; i < BLOCK; i++) {
+            sum += (i >= 148 && i < 156) ? ' ' : (header[i] & 0xFF);
+        }
+        if (sum != stored) {
+            throw new IOException("Not a TAR archive or damaged header (checksum mismatch)");
+        }
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+    Finds the "path" record in pax extended header data
+
+    Records look like "<length> <key>=<value>\n".
+     */
+    private static String paxPath(byte[] data) {
+        int position = 0;
+        while (position < data.length) {
+            int space = position;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, position, space - position, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (length <= 0 || position + length > data.length) {
+                return null;
+            }
+            String record = new String(data, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                return record.substring(5);
+            }
+            position += length;
+        }
+        return null;
+    }
+}
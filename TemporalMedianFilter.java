@@ -0,0 +1,332 @@
+package noiseremoving;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;   // Direct access to the output pixels
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;           // Rolling window of decoded frames
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+TemporalMedianFilter Class - 3x3xT spatio-temporal median for frame sequences
+
+For frames taken from a video, an impulse in one frame is usually absent
+in the frames around it, so the median over a 3x3 block in each of T
+consecutive frames removes the noise while keeping more fine detail than
+a purely spatial median would blur away.
+
+Frames are read from a folder in name order. Each one is decoded exactly
+once into a rolling window of T frames; when the window moves on, the
+oldest frame is dropped and the next one decoded.
+
+The median itself uses a 256-bin histogram per channel that slides along
+each row (Huang's algorithm in three dimensions): moving one pixel to the
+right removes the 3 x T samples of the column that leaves the box and
+adds the 3 x T samples of the column that enters it, and the median is
+found by walking from the previous median instead of sorting 9 x T
+values. Rows are split into bands that are filtered in parallel.
+
+At the start and end of the sequence the window is shortened to the
+frames that exist. Border pixels without a complete 3x3 block are copied
+from the centre frame, as the spatial filter does.
+ */
+public class TemporalMedianFilter {
+
+    private final int depth;     // T, the number of frames in the window (odd)
+    private final int threads;
+    private final OutputOptions outputOptions;
+
+    /*
+    One decoded frame
+     */
+    private static final class Frame {
+        final File file;
+        final int[] pixels;   // Packed ARGB, row by row
+
+        Frame(File file, int[] pixels) {
+            this.file = file;
+            this.pixels = pixels;
+        }
+    }
+
+    /*
+    Constructor
+
+    @param depth Number of consecutive frames in the window (odd, at least 1)
+
+    @param threads Number of row bands filtered at the same time
+
+    @param outputOptions Encoder settings for the output frames
+     */
+    public TemporalMedianFilter(int depth, int threads, OutputOptions outputOptions) {
+        if (depth < 1 || depth % 2 == 0) {
+            throw new IllegalArgumentException("Frame window must be an odd number >= 1: " + depth);
+        }
+        this.depth = depth;
+        this.threads = Math.max(1, threads);
+        this.outputOptions = outputOptions;
+    }
+
+    /*
+    Filters every frame in a folder into another folder
+
+    @param inputDir Folder of frames (all the same size), processed in name order
+
+    @param outputDir Folder for the results, which keep their file names and formats
+
+    @return Number of frames written
+
+    @throws IOException if a frame cannot be read or written
+     */
+    public int process(File inputDir, File outputDir) throws IOException {
+        List<File> files = listFrames(inputDir);
+        if (files.isEmpty()) {
+            throw new IOException("No image files in " + inputDir);
+        }
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Cannot create output folder: " + outputDir);
+        }
+
+        int radius = depth / 2;
+        ArrayDeque<Frame> window = new ArrayDeque<>();
+        int width = -1;
+        int height = -1;
+        boolean alpha = false;
+        int firstInWindow = 0;   // Index of the oldest frame in the window
+        int nextToLoad = 0;      // Index of the next frame to decode
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int centre = 0; centre < files.size(); centre++) {
+                // Decode the frames entering the window, once each
+                while (nextToLoad < files.size() && nextToLoad <= centre + radius) {
+                    File file = files.get(nextToLoad++);
+                    BufferedImage image = ImageIO.read(file);
+                    if (image == null) {
+                        throw new IOException("Not a readable image: " + file);
+                    }
+                    if (width < 0) {
+                        width = image.getWidth();
+                        height = image.getHeight();
+                        alpha = image.getColorModel().hasAlpha();
+                    } else if (image.getWidth() != width || image.getHeight() != height) {
+                        throw new IOException("Frame " + file.getName() + " is " + image.getWidth() + " x "
+                                + image.getHeight() + ", expected " + width + " x " + height);
+                    }
+                    window.addLast(new Frame(file, image.getRGB(0, 0, width, height, null, 0, width)));
+                }
+                // Drop the frames leaving it
+                while (firstInWindow < centre - radius) {
+                    window.removeFirst();
+                    firstInWindow++;
+                }
+
+                Frame[] frames = window.toArray(new Frame[0]);
+                Frame current = frames[centre - firstInWindow];
+                BufferedImage result = filterFrame(pool, frames, current, width, height, alpha);
+
+                File output = new File(outputDir, current.file.getName());
+                String format = ImageWriters.formatFor(output.getPath(), null);
+                if (!ImageWriters.write(result, format, output, outputOptions)) {
+                    throw new IOException("No writer for " + output);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return files.size();
+    }
+
+    /*
+    Filters the centre frame of a window
+
+    @param pool Worker threads
+
+    @param frames Frames in the window, oldest first
+
+    @param current The frame being filtered (one of frames)
+
+    @param width Frame width
+
+    @param height Frame height
+
+    @param alpha Whether the frames have an alpha channel (kept from the centre frame)
+
+    @return Filtered frame
+     */
+    private BufferedImage filterFrame(ExecutorService pool, final Frame[] frames, final Frame current,
+                                      final int width, final int height, boolean alpha) throws IOException {
+        final BufferedImage result = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        final int[] out = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        System.arraycopy(current.pixels, 0, out, 0, out.length); // Borders stay as they are
+
+        if (width < 3 || height < 3) {
+            return result;
+        }
+
+        List<Future<?>> bands = new ArrayList<>();
+        int rows = height - 2;
+        int bandCount = Math.min(threads, rows);
+        for (int band = 0; band < bandCount; band++) {
+            final int firstRow = 1 + rows * band / bandCount;
+            final int endRow = 1 + rows * (band + 1) / bandCount;
+            bands.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    int[][] histograms = new int[3][256];
+                    for (int y = firstRow; y < endRow; y++) {
+                        filterRow(frames, out, width, y, histograms);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> band : bands) {
+            try {
+                band.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Filtering a frame failed: " + e.getCause(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while filtering frames", e);
+            }
+        }
+        return result;
+    }
+
+    /*
+    Filters one row with histograms that slide along x
+
+    @param frames Frames in the window
+
+    @param out Output pixels (border pixels already copied)
+
+    @param width Frame width
+
+    @param y Row to filter (has a row above and below)
+
+    @param histograms Scratch histograms, one per channel
+     */
+    private static void filterRow(Frame[] frames, int[] out, int width, int y, int[][] histograms) {
+        int count = 9 * frames.length;
+        int k = count / 2;   // Index of the median in sorted order
+        int[] medians = new int[3];
+        int[] below = new int[3];   // Samples smaller than the current median, per channel
+
+        for (int[] histogram : histograms) {
+            Arrays.fill(histogram, 0);
+        }
+        // Fill the box around x = 1 (columns 0..2); the median search starts at 0
+        for (int x = 0; x < 3; x++) {
+            updateColumn(frames, width, x, y, histograms, medians, below, 1);
+        }
+
+        for (int x = 1; x < width - 1; x++) {
+            if (x > 1) {
+                // Slide right: drop column x-2, add column x+1
+                updateColumn(frames, width, x - 2, y, histograms, medians, below, -1);
+                updateColumn(frames, width, x + 1, y, histograms, medians, below, 1);
+            }
+            int pixel = 0;
+            for (int c = 0; c < 3; c++) {
+                int[] histogram = histograms[c];
+                int median = medians[c];
+                int smaller = below[c];
+                // Walk from the previous median until below <= k < below + count(median)
+                while (smaller > k) {
+                    median--;
+                    smaller -= histogram[median];
+                }
+                while (smaller + histogram[median] <= k) {
+                    smaller += histogram[median];
+                    median++;
+                }
+                medians[c] = median;
+                below[c] = smaller;
+                pixel |= median << (16 - 8 * c);
+            }
+            int index = y * width + x;
+            out[index] = (out[index] & 0xFF000000) | pixel;
+        }
+    }
+
+    /*
+    Adds or removes the 3 x T samples of one column of the box
+
+    @param frames Frames in the window
+
+    @param width Frame width
+
+    @param x Column
+
+    @param y Centre row of the box
+
+    @param histograms Histograms to update, one per channel
+
+    @param medians Current median per channel
+
+    @param below Count of samples below the current median per channel (kept in step)
+
+    @param delta 1 to add, -1 to remove
+     */
+    private static void updateColumn(Frame[] frames, int width, int x, int y, int[][] histograms,
+                                     int[] medians, int[] below, int delta) {
+        for (Frame frame : frames) {
+            int[] pixels = frame.pixels;
+            for (int row = y - 1; row <= y + 1; row++) {
+                int rgb = pixels[row * width + x];
+                for (int c = 0; c < 3; c++) {
+                    int value = (rgb >> (16 - 8 * c)) & 0xFF;
+                    histograms[c][value] += delta;
+                    if (value < medians[c]) {
+                        below[c] += delta;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+    Lists the image files in a folder in name order
+
+    @param folder Folder to list
+
+    @return Image files, sorted by name
+     */
+    private static List<File> listFrames(File folder) throws IOException {
+        File[] entries = folder.listFiles();
+        if (entries == null) {
+            throw new IOException("Not a folder: " + folder);
+        }
+        Arrays.sort(entries);
+        List<String> suffixes = Arrays.asList(ImageIO.getReaderFileSuffixes());
+        List<File> frames = new ArrayList<>();
+        for (File entry : entries) {
+            String name = entry.getName();
+            int dotIndex = name.lastIndexOf('.');
+            if (entry.isFile() && dotIndex > 0
+                    && suffixes.contains(name.substring(dotIndex + 1).toLowerCase(Locale.ROOT))) {
+                frames.add(entry);
+            }
+        }
+        return frames;
+    }
+}
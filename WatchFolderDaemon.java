@@ -0,0 +1,315 @@
+package noiseremoving;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;   // Start-up and overflow rescans
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;      // Change notifications for the input folder
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;           // Which file extensions are images
+
+/*
+Name: Suemon Kwok
+
+Student ID: 14883335
+
+Data structures and algorithms
+*/
+
+/*
+WatchFolderDaemon Class - Processes images as they land in a drop folder
+
+The input folder is watched with a WatchService. A new or changed file is
+not processed straight away, because scanners and network copies write
+files in pieces; instead it waits in a pending list until its size and
+modification time have stayed the same for a quiet period.
+
+Settled files are handed to a pool of worker threads. Every finished file
+goes into a ProcessingJournal kept in the output folder, so after a
+restart the start-up scan skips everything that was already done instead
+of reprocessing the whole folder.
+ */
+public class WatchFolderDaemon {
+
+    // How long a file must stay unchanged before it is processed
+    private static final long QUIET_MILLIS = 2000;
+
+    // How often pending files are checked
+    private static final long POLL_MILLIS = 500;
+
+    // Name of the journal file inside the output folder
+    public static final String JOURNAL_NAME = ".noiseremoving-journal";
+
+    /*
+    Does the actual work for one file
+     */
+    public interface FileHandler {
+        /*
+        Processes one input file
+
+        @param input File that arrived in the input folder
+
+        @param output Where the result should be written
+
+        @return true if the file was processed and should be journalled
+         */
+        boolean process(Path input, Path output);
+    }
+
+    /*
+    A file that changed recently and is waiting to settle
+     */
+    private static final class Pending {
+        long size;
+        long modified;
+        long stableSince;   // System.currentTimeMillis() when size/time last changed
+
+        Pending(long size, long modified, long stableSince) {
+            this.size = size;
+            this.modified = modified;
+            this.stableSince = stableSince;
+        }
+    }
+
+    private final Path inputDir;
+    private final Path outputDir;
+    private final FileHandler handler;
+    private final ProcessingJournal journal;
+    private final ExecutorService workers;
+    private final Set<String> imageSuffixes = new HashSet<>();
+
+    // Only used by the watching thread
+    private final Map<Path, Pending> pending = new HashMap<>();
+
+    // Files currently with a worker (shared with the workers)
+    private final Set<Path> inProgress = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running = true;
+
+    /*
+    Constructor
+
+    @param inputDir Folder to watch
+
+    @param outputDir Folder results are written to (must not be the input folder)
+
+    @param threads Number of files processed at the same time
+
+    @param handler Processes each settled file
+
+    @throws IOException if the folders or the journal cannot be used
+     */
+    public WatchFolderDaemon(Path inputDir, Path outputDir, int threads, FileHandler handler) throws IOException {
+        this.inputDir = inputDir.toAbsolutePath().normalize();
+        this.outputDir = outputDir.toAbsolutePath().normalize();
+        if (!Files.isDirectory(this.inputDir)) {
+            throw new IOException("Input folder does not exist: " + inputDir);
+        }
+        if (this.inputDir.equals(this.outputDir)) {
+            // Results would land in the watched folder and be processed again
+            throw new IOException("Output folder must be different from the input folder");
+        }
+        Files.createDirectories(this.outputDir);
+
+        this.handler = handler;
+        this.journal = new ProcessingJournal(this.outputDir.resolve(JOURNAL_NAME));
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads));
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            imageSuffixes.add(suffix.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /*
+    Watches the input folder until stop() is called
+
+    Files already in the folder are picked up first, so anything that
+    arrived while the daemon was not running is processed too.
+
+    @throws IOException if the folder cannot be watched
+     */
+    public void run() throws IOException {
+        System.out.println("Watching " + inputDir + " -> " + outputDir
+                + " (" + journal.size() + " files in journal)");
+        try (WatchService watcher = inputDir.getFileSystem().newWatchService()) {
+            inputDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            scanFolder();
+
+            while (running) {
+                WatchKey key;
+                try {
+                    key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            scanFolder(); // Events were lost, look at everything again
+                        } else {
+                            noteChange(inputDir.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        System.err.println("Input folder is no longer accessible: " + inputDir);
+                        break;
+                    }
+                }
+                submitSettledFiles();
+            }
+        } finally {
+            // Let files already with a worker finish, then close the journal
+            workers.shutdown();
+            try {
+                workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            journal.close();
+        }
+    }
+
+    /*
+    Asks run() to return after the files currently being processed
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /*
+    Adds every image already in the input folder to the pending list
+     */
+    private void scanFolder() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inputDir)) {
+            for (Path file : files) {
+                noteChange(file);
+            }
+        }
+    }
+
+    /*
+    Records that a file was created or changed
+
+    @param file The file
+     */
+    private void noteChange(Path file) {
+        if (!isImage(file) || !Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            long size = Files.size(file);
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            Pending entry = pending.get(file);
+            if (entry == null) {
+                pending.put(file, new Pending(size, modified, System.currentTimeMillis()));
+            } else if (entry.size != size || entry.modified != modified) {
+                entry.size = size;
+                entry.modified = modified;
+                entry.stableSince = System.currentTimeMillis();
+            }
+        } catch (IOException e) {
+            // The file vanished again (a temporary file, for example)
+        }
+    }
+
+    /*
+    Hands every file that has been quiet long enough to a worker
+     */
+    private void submitSettledFiles() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Pending>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Pending> item = iterator.next();
+            final Path file = item.getKey();
+            Pending entry = item.getValue();
+
+            long size;
+            long modified;
+            try {
+                size = Files.size(file);
+                modified = Files.getLastModifiedTime(file).toMillis();
+            } catch (IOException e) {
+                iterator.remove(); // Deleted before it settled
+                continue;
+            }
+
+            // Still being written: restart the quiet period
+            if (size != entry.size || modified != entry.modified) {
+                entry.size = size;
+                entry.modified = modified;
+                entry.stableSince = now;
+                continue;
+            }
+            // Not quiet long enough yet, or an older version is still being processed
+            if (now - entry.stableSince < QUIET_MILLIS || inProgress.contains(file)) {
+                continue;
+            }
+
+            iterator.remove();
+            inProgress.add(file);
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        processSettled(file);
+                    } finally {
+                        inProgress.remove(file);
+                    }
+                }
+            });
+        }
+    }
+
+    /*
+    Processes one settled file unless the journal says it is already done
+
+    Runs on a worker thread.
+
+    @param file Input file
+     */
+    private void processSettled(Path file) {
+        Path output = outputDir.resolve(file.getFileName());
+        try {
+            if (Files.exists(output) && journal.isDone(file)) {
+                return; // Done before a restart, or touched without changing
+            }
+
+            // Take the journal details before processing, from the bytes processed
+            long size = Files.size(file);
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            String hash = FileDigests.sha256(file);
+
+            if (handler.process(file, output)) {
+                journal.record(file, size, modified, hash);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not process " + file + ": " + e.getMessage());
+        }
+    }
+
+    /*
+    Checks whether a file has an image extension ImageIO can read
+
+    @param file The file
+
+    @return true for image files
+     */
+    private boolean isImage(Path file) {
+        String name = file.getFileName().toString();
+        int dotIndex = name.lastIndexOf('.');
+        return dotIndex > 0 && imageSuffixes.contains(name.substring(dotIndex + 1).toLowerCase(Locale.ROOT));
+    }
+}